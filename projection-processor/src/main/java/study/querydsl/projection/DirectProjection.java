@@ -0,0 +1,19 @@
+package study.querydsl.projection;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * DTO 에 붙이면 같은 패키지에 {DTO 이름}Projection 클래스가 생성된다.
+ * - of(...) 의 인자는 DTO 필드 선언 순서와 같고, 이름이 아니라 위치로 매칭하므로 alias 가 필요 없다.
+ * - private 필드는 setter 로, 그 외 필드는 직접 대입으로 값을 채운다. (Projections.bean/fields 와 달리 reflection 없음)
+ * - DTO 에는 기본 생성자가 있어야 한다.
+ * */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface DirectProjection {
+}
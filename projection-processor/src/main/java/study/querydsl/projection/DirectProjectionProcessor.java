@@ -0,0 +1,186 @@
+package study.querydsl.projection;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link DirectProjection} 이 붙은 DTO 마다 FactoryExpressionBase 를 상속한 {DTO 이름}Projection 을 생성한다.
+ * */
+@SupportedAnnotationTypes("study.querydsl.projection.DirectProjection")
+public class DirectProjectionProcessor extends AbstractProcessor {
+
+    private static final String SUFFIX = "Projection";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(DirectProjection.class)) {
+            if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+                error(element, "@DirectProjection 은 abstract 가 아닌 class 에만 붙일 수 있습니다.");
+                continue;
+            }
+
+            TypeElement dto = (TypeElement) element;
+            if (dto.getNestingKind().isNested()) {
+                error(element, "@DirectProjection 은 top level class 에만 붙일 수 있습니다.");
+                continue;
+            }
+
+            List<VariableElement> fields = new ArrayList<>();
+            for (VariableElement field : ElementFilter.fieldsIn(dto.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                if (modifiers.contains(Modifier.FINAL)) {
+                    error(field, "@DirectProjection DTO 의 필드는 final 일 수 없습니다.");
+                    continue;
+                }
+                fields.add(field);
+            }
+
+            try {
+                write(dto, fields);
+            } catch (IOException e) {
+                error(element, "Projection 클래스 생성 실패: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void write(TypeElement dto, List<VariableElement> fields) throws IOException {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(dto);
+        String packageName = packageElement.getQualifiedName().toString();
+        String dtoName = dto.getSimpleName().toString();
+        String className = dtoName + SUFFIX;
+
+        JavaFileObject file = processingEnv.getFiler()
+                .createSourceFile(packageName.isEmpty() ? className : packageName + "." + className, dto);
+
+        try (PrintWriter out = new PrintWriter(file.openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("import com.querydsl.core.types.Expression;");
+            out.println("import com.querydsl.core.types.FactoryExpressionBase;");
+            out.println("import com.querydsl.core.types.Visitor;");
+            out.println();
+            out.println("import java.util.Arrays;");
+            out.println("import java.util.Collections;");
+            out.println("import java.util.List;");
+            out.println();
+            out.println("/**");
+            out.println(" * Generated by " + DirectProjectionProcessor.class.getName() + " for " + dtoName + ". Do not edit.");
+            out.println(" * */");
+            out.println("public final class " + className + " extends FactoryExpressionBase<" + dtoName + "> {");
+            out.println();
+            out.println("    private static final long serialVersionUID = 1L;");
+            out.println();
+            out.println("    private final List<Expression<?>> args;");
+            out.println();
+
+            String parameters = parameters(fields);
+            out.println("    private " + className + "(" + parameters + ") {");
+            out.println("        super(" + dtoName + ".class);");
+            out.println("        this.args = Collections.unmodifiableList(Arrays.<Expression<?>>asList(" + names(fields) + "));");
+            out.println("    }");
+            out.println();
+            out.println("    public static " + className + " of(" + parameters + ") {");
+            out.println("        return new " + className + "(" + names(fields) + ");");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public List<Expression<?>> getArgs() {");
+            out.println("        return args;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + dtoName + " newInstance(Object... a) {");
+            out.println("        " + dtoName + " dto = new " + dtoName + "();");
+            for (int i = 0; i < fields.size(); i++) {
+                out.println("        " + assignment(fields.get(i), i));
+            }
+            out.println("        return dto;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public <R, C> R accept(Visitor<R, C> v, C context) {");
+            out.println("        return v.visit(this, context);");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private String parameters(List<VariableElement> fields) {
+        StringBuilder sb = new StringBuilder();
+        for (VariableElement field : fields) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append("Expression<? extends ").append(boxed(field.asType())).append("> ").append(field.getSimpleName());
+        }
+        return sb.toString();
+    }
+
+    private String names(List<VariableElement> fields) {
+        StringBuilder sb = new StringBuilder();
+        for (VariableElement field : fields) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(field.getSimpleName());
+        }
+        return sb.toString();
+    }
+
+    //private 필드는 setter, 나머지는 같은 패키지이므로 직접 대입. primitive 필드에 null 이 오면 기본값을 유지한다.
+    private String assignment(VariableElement field, int index) {
+        String name = field.getSimpleName().toString();
+        String value = "(" + erasure(boxed(field.asType())) + ") a[" + index + "]";
+
+        String statement = field.getModifiers().contains(Modifier.PRIVATE)
+                ? "dto.set" + Character.toUpperCase(name.charAt(0)) + name.substring(1) + "(" + value + ");"
+                : "dto." + name + " = " + value + ";";
+
+        return field.asType().getKind().isPrimitive()
+                ? "if (a[" + index + "] != null) " + statement
+                : statement;
+    }
+
+    private TypeMirror boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind())).asType();
+        }
+        return type;
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,70 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberOverviewDto;
+import study.querydsl.service.MemberOverviewService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 페이지 + 팀 통계 (MemberOverviewService)
+ * - blocking : 호출 스레드에서 두 쿼리를 순서대로 실행
+ * - async : AsyncQueryExecutor 로 두 쿼리를 동시에 실행하고 join
+ * - 16 개 스레드가 동시에 호출해서 처리량(ops/ms)과 지연 분포(SampleTime, p50/p99)를 본다.
+ *   maxConcurrency 를 커넥션 풀(기본 10)과 같게/작게 바꿔가며 비교한다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class AsyncQueryBenchmark {
+
+    @Param({"4", "10"})
+    int maxConcurrency;
+
+    private ConfigurableApplicationContext context;
+    private MemberOverviewService memberOverviewService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("asyncQuery" + maxConcurrency,
+                "querydsl.async.max-concurrency=" + maxConcurrency,
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        BenchmarkContext.seedMembers(context, 10_000, 100);
+
+        memberOverviewService = context.getBean(MemberOverviewService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MemberOverviewDto blocking() {
+        return memberOverviewService.overviewBlocking(null, 20);
+    }
+
+    @Benchmark
+    public MemberOverviewDto async() {
+        return memberOverviewService.overview(null, 20).join();
+    }
+}
@@ -0,0 +1,42 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberIngestRecord;
+import study.querydsl.service.MemberBulkIngestService;
+
+import java.util.stream.IntStream;
+
+/**
+ * jmh 벤치마크용 spring context
+ * - application.yml 의 H2 TCP 대신 trial 마다 독립된 in-memory H2 를 쓰고, sql 로그는 끈다.
+ * */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String databaseName, String... properties) {
+        return new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.format_sql=false",
+                        "logging.level.root=warn")
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * member0 ~ member{rows-1}, 나이는 0 ~ 99, 팀은 teams 개에 고르게 나눈다.
+     * */
+    public static void seedMembers(ConfigurableApplicationContext context, int rows, int teams) {
+        context.getBean(MemberBulkIngestService.class).ingest(IntStream.range(0, rows)
+                .mapToObj(i -> new MemberIngestRecord("member" + i, i % 100, "TEAM " + (i % teams))));
+    }
+}
@@ -0,0 +1,155 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.QueryCountScope;
+import study.querydsl.repository.FetchProfile;
+import study.querydsl.repository.FetchProfiles;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+/**
+ * FetchProfile 별로 한 페이지를 읽고 그래프 전체 (member.team.name, team.members.username) 를 건드린다.
+ * - lazy : profile 없이 읽고 lazy 로딩에 맡긴다. (N+1)
+ * - statements / entities (AuxCounters) 가 페이지 하나에 실행한 쿼리 수와 읽은 엔티티 수
+ * - 2차 캐시를 꺼서 lazy 로딩이 항상 DB 를 타게 한다.
+ * - ./gradlew jmh -Pjmh.includes=FetchProfileBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FetchProfileBenchmark {
+
+    @Param({"20", "100"})
+    int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private JPAQueryFactory jpaQueryFactory;
+    private FetchProfiles fetchProfiles;
+    private TransactionTemplate transactionTemplate;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Loaded {
+
+        public long statements;
+        public long entities;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("fetchProfile" + pageSize,
+                "querydsl.query-metrics.enabled=false",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        BenchmarkContext.seedMembers(context, 10_000, 100);
+
+        jpaQueryFactory = context.getBean(JPAQueryFactory.class);
+        fetchProfiles = context.getBean(FetchProfiles.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void membersLazy(Loaded loaded, Blackhole blackhole) {
+        measure(loaded, () -> touchMembers(memberPage().fetch(), blackhole));
+    }
+
+    @Benchmark
+    public void memberOnly(Loaded loaded, Blackhole blackhole) {
+        measure(loaded, () -> {
+            List<Member> members = fetchProfiles.fetchMembers(memberPage(), FetchProfile.MEMBER_ONLY);
+            for (Member m : members) {
+                blackhole.consume(m.getUsername());
+            }
+            return members.size();
+        });
+    }
+
+    @Benchmark
+    public void memberWithTeam(Loaded loaded, Blackhole blackhole) {
+        measure(loaded, () -> touchMembers(fetchProfiles.fetchMembers(memberPage(), FetchProfile.MEMBER_WITH_TEAM), blackhole));
+    }
+
+    @Benchmark
+    public void teamsLazy(Loaded loaded, Blackhole blackhole) {
+        measure(loaded, () -> touchTeams(teamPage().fetch(), blackhole));
+    }
+
+    @Benchmark
+    public void teamWithMembers(Loaded loaded, Blackhole blackhole) {
+        measure(loaded, () -> touchTeams(fetchProfiles.fetchTeams(teamPage(), FetchProfile.TEAM_WITH_MEMBERS), blackhole));
+    }
+
+    private JPAQuery<Member> memberPage() {
+        return jpaQueryFactory.selectFrom(member).orderBy(member.id.asc()).limit(pageSize);
+    }
+
+    private JPAQuery<Team> teamPage() {
+        return jpaQueryFactory.selectFrom(team).orderBy(team.id.asc()).limit(pageSize / 10);
+    }
+
+    private static int touchMembers(List<Member> members, Blackhole blackhole) {
+        Set<Long> teamIds = new HashSet<>();
+        for (Member m : members) {
+            blackhole.consume(m.getTeam().getName());
+            teamIds.add(m.getTeam().getId());
+        }
+        return members.size() + teamIds.size();
+    }
+
+    private static int touchTeams(List<Team> teams, Blackhole blackhole) {
+        int entities = teams.size();
+        for (Team t : teams) {
+            for (Member m : t.getMembers()) {
+                blackhole.consume(m.getUsername());
+                entities++;
+            }
+        }
+        return entities;
+    }
+
+    //트랜잭션 하나 안에서 읽고 건드린다. lazy 로딩까지 포함한 쿼리 수를 센다.
+    private void measure(Loaded loaded, IntSupplier page) {
+        try (QueryCountScope scope = QueryCountScope.open(Integer.MAX_VALUE, false)) {
+            Integer entities = transactionTemplate.execute(status -> page.getAsInt());
+            loaded.statements += scope.getStatementCount();
+            loaded.entities += entities != null ? entities : 0;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.analytics.MemberColumnStore;
+import study.querydsl.analytics.MemberColumns;
+import study.querydsl.dto.TeamAgeStatsDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+/**
+ * 팀별 나이 통계 (20 ~ 60세)
+ * - tupleStream : (team.name, member.age) Tuple 목록을 DB 에서 읽어서 boxed stream 으로 groupingBy (대시보드의 기존 방식)
+ * - tupleInMemory : 위 Tuple 목록을 미리 읽어두고 groupingBy 만 측정 (DB 비용 제외, boxing 비용만)
+ * - columnsSequential / columnsParallel : MemberColumns 스냅샷의 primitive 배열 집계
+ * - ./gradlew jmh -Pjmh.includes=MemberAnalyticsBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemberAnalyticsBenchmark {
+
+    private static final int MIN_AGE = 20;
+    private static final int MAX_AGE = 60;
+
+    @Param({"100000", "1000000"})
+    int rows;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager em;
+    private JPAQueryFactory jpaQueryFactory;
+    private List<Tuple> tuples;
+    private MemberColumns columns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("analytics" + rows, "querydsl.query-metrics.enabled=false");
+        BenchmarkContext.seedMembers(context, rows, 100);
+
+        em = context.getBean(EntityManagerFactory.class).createEntityManager();
+        jpaQueryFactory = new JPAQueryFactory(em);
+        tuples = fetchTuples();
+        columns = context.getBean(MemberColumnStore.class).refresh();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        context.close();
+    }
+
+    @Benchmark
+    public Map<String, IntSummaryStatistics> tupleStream() {
+        em.clear();
+        return groupByTeam(fetchTuples());
+    }
+
+    @Benchmark
+    public Map<String, IntSummaryStatistics> tupleInMemory() {
+        return groupByTeam(tuples);
+    }
+
+    @Benchmark
+    public List<TeamAgeStatsDto> columnsSequential() {
+        return columns.ageStatsByTeam(MIN_AGE, MAX_AGE, false);
+    }
+
+    @Benchmark
+    public List<TeamAgeStatsDto> columnsParallel() {
+        return columns.ageStatsByTeam(MIN_AGE, MAX_AGE, true);
+    }
+
+    private List<Tuple> fetchTuples() {
+        return jpaQueryFactory
+                .select(team.name, member.age)
+                .from(member)
+                .join(member.team, team)
+                .fetch();
+    }
+
+    private static Map<String, IntSummaryStatistics> groupByTeam(List<Tuple> rows) {
+        return rows.stream()
+                .filter(row -> {
+                    Integer age = row.get(member.age);
+                    return age != null && age >= MIN_AGE && age <= MAX_AGE;
+                })
+                .collect(Collectors.groupingBy(row -> row.get(team.name),
+                        Collectors.summarizingInt(row -> row.get(member.age))));
+    }
+}
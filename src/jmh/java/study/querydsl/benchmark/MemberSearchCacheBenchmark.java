@@ -0,0 +1,98 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberSearchRepository;
+import study.querydsl.search.MemberSearchCache;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 팀 이름 + 나이 구간 검색 1000 가지를 앞쪽 조건일수록 자주 나오게 (skew) 반복한다.
+ * - cached : MemberSearchCache (max-memory 가 작으면 자주 나오는 조건만 남는다.)
+ * - uncached : MemberSearchRepository.search
+ * - trial 이 끝나면 hit ratio 와 추정 메모리를 출력한다.
+ * - ./gradlew jmh -Pjmh.includes=MemberSearchCacheBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class MemberSearchCacheBenchmark {
+
+    private static final int TEAMS = 100;
+    private static final int AGE_WINDOWS = 10;
+    private static final int CONDITIONS = TEAMS * AGE_WINDOWS;
+
+    @Param({"1MB", "32MB"})
+    String maxMemory;
+
+    private ConfigurableApplicationContext context;
+    private MemberSearchCache memberSearchCache;
+    private MemberSearchRepository memberSearchRepository;
+    private MemberSearchCondition[] conditions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("memberSearchCache" + maxMemory,
+                "querydsl.query-metrics.enabled=false",
+                "querydsl.username-index.directory=",
+                "querydsl.search-cache.max-memory=" + maxMemory);
+        BenchmarkContext.seedMembers(context, 100_000, TEAMS);
+
+        memberSearchCache = context.getBean(MemberSearchCache.class);
+        memberSearchRepository = context.getBean(MemberSearchRepository.class);
+
+        conditions = new MemberSearchCondition[CONDITIONS];
+        for (int i = 0; i < CONDITIONS; i++) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setTeamName("TEAM " + (i % TEAMS));
+            condition.setAgeGoe((i / TEAMS) * 10);
+            condition.setAgeLoe((i / TEAMS) * 10 + 9);
+            conditions[i] = condition;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%nmaxMemory=%s hitRatio=%.3f entries=%d weight=%d bytes%n",
+                maxMemory, memberSearchCache.hitRatio(), memberSearchCache.size(), memberSearchCache.weightedSize());
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberDto> cached() {
+        return memberSearchCache.search(nextCondition());
+    }
+
+    @Benchmark
+    public List<MemberDto> uncached() {
+        return memberSearchRepository.search(nextCondition());
+    }
+
+    //u^3 : 앞쪽 10% 조건이 절반 가까이 나온다.
+    private MemberSearchCondition nextCondition() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        return conditions[(int) (u * u * u * CONDITIONS)];
+    }
+}
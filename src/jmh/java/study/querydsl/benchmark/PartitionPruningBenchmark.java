@@ -0,0 +1,99 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.partition.PartitionedMemberStore;
+import study.querydsl.repository.MemberSearchRepository;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 100 팀, 팀 하나의 회원 중 나이 구간 (10살) 검색. 팀당 1000 명 (10 만 건) 과 팀당 10 만 명 (1000 만 건)
+ * - pruned : PartitionedMemberStore.search (그 팀이 있는 partition 하나만 읽는다.)
+ * - fullScan : PartitionedMemberStore.scanAll (같은 조건으로 모든 partition 을 읽는다. 팀을 모를 때의 비용)
+ * - memberTable : MemberSearchRepository.searchMemberTable (member 테이블, team 조인)
+ * - 1000 만 건은 in-memory H2 (member + partition 테이블) 로 수 GB 를 쓰므로 fork 의 heap 을 8g 로 잡는다. 작은 쪽만 보려면 -p rows=100000
+ * - ./gradlew jmh -Pjmh.includes=PartitionPruningBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class PartitionPruningBenchmark {
+
+    private static final int TEAMS = 100;
+    private static final int PARTITIONS = 16;
+
+    @Param({"100000", "10000000"})
+    int rows;
+
+    @Param({"HASH", "RANGE"})
+    String strategy;
+
+    private ConfigurableApplicationContext context;
+    private PartitionedMemberStore partitionedMemberStore;
+    private MemberSearchRepository memberSearchRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("partitionPruning" + rows + strategy,
+                "querydsl.query-metrics.enabled=false",
+                "querydsl.username-index.directory=",
+                "querydsl.partitioning.enabled=true",
+                "querydsl.partitioning.strategy=" + strategy,
+                "querydsl.partitioning.partitions=" + PARTITIONS,
+                "querydsl.partitioning.range-width=" + (TEAMS + PARTITIONS - 1) / PARTITIONS);
+        BenchmarkContext.seedMembers(context, rows, TEAMS);
+
+        partitionedMemberStore = context.getBean(PartitionedMemberStore.class);
+        memberSearchRepository = context.getBean(MemberSearchRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberDto> pruned() {
+        return partitionedMemberStore.search(nextCondition());
+    }
+
+    @Benchmark
+    public List<MemberDto> fullScan() {
+        return partitionedMemberStore.scanAll(nextCondition());
+    }
+
+    @Benchmark
+    public List<MemberDto> memberTable() {
+        return memberSearchRepository.searchMemberTable(nextCondition());
+    }
+
+    private static MemberSearchCondition nextCondition() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("TEAM " + random.nextInt(TEAMS));
+        int ageFrom = random.nextInt(9) * 10;
+        condition.setAgeGoe(ageFrom);
+        condition.setAgeLoe(ageFrom + 9);
+        return condition;
+    }
+}
@@ -0,0 +1,117 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.QMember;
+import study.querydsl.repository.SubqueryRewriter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.querydsl.jpa.JPAExpressions.select;
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * QueryDslBasicTest / QueryDslAdvancedTest 의 서브쿼리를 그대로 실행할 때와 SubqueryRewriter 를 거칠 때 비교
+ * - *Subquery : 원래 쿼리, *Rewritten : 서브쿼리를 먼저 한 번 실행하고 값으로 바꾼 쿼리 (서브쿼리 실행 시간 포함)
+ * - ./gradlew jmh -Pjmh.includes=SubqueryRewriteBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubqueryRewriteBenchmark {
+
+    private static final QMember memberSub = new QMember("memberSub");
+
+    @Param({"10000", "100000"})
+    int rows;
+
+    private ConfigurableApplicationContext context;
+    private JPAQueryFactory jpaQueryFactory;
+    private SubqueryRewriter subqueryRewriter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("subquery" + rows, "querydsl.query-metrics.enabled=false");
+        BenchmarkContext.seedMembers(context, rows, 100);
+
+        jpaQueryFactory = context.getBean(JPAQueryFactory.class);
+        subqueryRewriter = context.getBean(SubqueryRewriter.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Member> avgSubquery() {
+        return avgQuery().fetch();
+    }
+
+    @Benchmark
+    public List<Member> avgRewritten() {
+        return subqueryRewriter.rewrite(avgQuery()).fetch();
+    }
+
+    @Benchmark
+    public List<Member> inSubquery() {
+        return inQuery().fetch();
+    }
+
+    @Benchmark
+    public List<Member> inRewritten() {
+        return subqueryRewriter.rewrite(inQuery()).fetch();
+    }
+
+    @Benchmark
+    public List<UserDto> selectSubquery() {
+        return selectQuery().fetch();
+    }
+
+    @Benchmark
+    public List<UserDto> selectRewritten() {
+        return subqueryRewriter.rewrite(selectQuery()).fetch();
+    }
+
+    private JPAQuery<Member> avgQuery() {
+        return jpaQueryFactory
+                .selectFrom(member)
+                .where(member.age.goe(select(memberSub.age.avg()).from(memberSub)));
+    }
+
+    private JPAQuery<Member> inQuery() {
+        return jpaQueryFactory
+                .selectFrom(member)
+                .where(member.age.in(select(memberSub.age).from(memberSub).where(memberSub.age.gt(90))));
+    }
+
+    private JPAQuery<UserDto> selectQuery() {
+        return jpaQueryFactory
+                .select(Projections.fields(UserDto.class,
+                        member.username.as("userDtoName"),
+                        ExpressionUtils.as(select(memberSub.age.max()).from(memberSub), "userDtoAge")))
+                .from(member);
+    }
+}
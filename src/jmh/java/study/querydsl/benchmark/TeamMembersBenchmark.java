@@ -0,0 +1,91 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.TeamWithMembersDto;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.repository.TeamQueryRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entities.QTeam.team;
+
+/**
+ * 팀 한 페이지 + 팀별 회원 읽기
+ * - lazyMembers : team.members 를 팀마다 lazy 로딩 (페이지 크기만큼 추가 select)
+ * - batchedMembers : TeamQueryRepository.findTeamsWithMembers (in 쿼리 한 번)
+ * - 2차 캐시를 끄고 매번 영속성 컨텍스트를 비워서 DB 를 읽는 비용만 비교한다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TeamMembersBenchmark {
+
+    @Param({"10", "50"})
+    int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager em;
+    private JPAQueryFactory jpaQueryFactory;
+    private TeamQueryRepository teamQueryRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("teamMembers" + pageSize,
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        BenchmarkContext.seedMembers(context, 10_000, 100);
+
+        em = context.getBean(EntityManagerFactory.class).createEntityManager();
+        jpaQueryFactory = new JPAQueryFactory(em);
+        teamQueryRepository = context.getBean(TeamQueryRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        context.close();
+    }
+
+    @Benchmark
+    public void lazyMembers(Blackhole blackhole) {
+        em.clear();
+        List<Team> teams = jpaQueryFactory
+                .selectFrom(team)
+                .orderBy(team.id.asc())
+                .limit(pageSize)
+                .fetch();
+
+        for (Team t : teams) {
+            for (Member m : t.getMembers()) {
+                blackhole.consume(m.getUsername());
+            }
+        }
+    }
+
+    @Benchmark
+    public List<TeamWithMembersDto> batchedMembers() {
+        return teamQueryRepository.findTeamsWithMembers(0, pageSize);
+    }
+}
@@ -0,0 +1,104 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import study.querydsl.dto.TransferResult;
+import study.querydsl.service.TeamTransferService;
+
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+/**
+ * 8 개 스레드가 동시에 회원의 팀을 옮길 때 처리량과 재시도 비율 (TeamTransferService)
+ * - hotMembers : 옮기는 회원 수. 1 이면 모든 스레드가 같은 회원을 두고 경쟁하고, 클수록 충돌이 드물다.
+ * - transfer 의 ops/s 가 초당 이동 수, retries / transfers (AuxCounters) 가 이동 한 번당 재시도 수, failures 는 max-attempts 를 넘긴 수
+ * - ./gradlew jmh -Pjmh.includes=TeamTransferBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class TeamTransferBenchmark {
+
+    @Param({"1", "16", "1024"})
+    int hotMembers;
+
+    private ConfigurableApplicationContext context;
+    private TeamTransferService teamTransferService;
+    private Long[] memberIds;
+    private Long[] teamIds;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Attempts {
+
+        public long transfers;
+        public long retries;
+        public long failures;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("teamTransfer" + hotMembers,
+                "querydsl.query-metrics.enabled=false",
+                "querydsl.transfer.max-attempts=10");
+        BenchmarkContext.seedMembers(context, 10_000, 100);
+
+        JPAQueryFactory jpaQueryFactory = context.getBean(JPAQueryFactory.class);
+        List<Long> members = jpaQueryFactory.select(member.id).from(member).orderBy(member.id.asc()).limit(hotMembers).fetch();
+        List<Long> teams = jpaQueryFactory.select(team.id).from(team).fetch();
+        memberIds = members.toArray(new Long[0]);
+        teamIds = teams.toArray(new Long[0]);
+
+        teamTransferService = context.getBean(TeamTransferService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TransferResult transfer(Attempts attempts) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long memberId = memberIds[random.nextInt(memberIds.length)];
+        Long teamId = teamIds[random.nextInt(teamIds.length)];
+        try {
+            TransferResult result = teamTransferService.transfer(memberId, teamId);
+            attempts.transfers++;
+            attempts.retries += result.getAttempts() - 1;
+            return result;
+        } catch (OptimisticLockingFailureException | OptimisticLockException
+                 | PessimisticLockingFailureException | PessimisticLockException | LockTimeoutException e) {
+            attempts.failures++;
+            return null;
+        }
+    }
+}
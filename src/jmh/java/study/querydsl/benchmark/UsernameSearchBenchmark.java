@@ -0,0 +1,94 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.search.UsernameSearch;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * username 자동완성 10 건
+ * - indexPrefix / indexSubstring : UsernameSearch (prefix 범위 조회 / trigram 교집합)
+ * - likePrefix / likeSubstring : DB 의 username like 'q%' (idx_member_username_id 범위 조회) / like '%q%' (full scan)
+ * - ./gradlew jmh -Pjmh.includes=UsernameSearchBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsernameSearchBenchmark {
+
+    private static final int LIMIT = 10;
+    private static final String PREFIX = "member1234";
+    private static final String SUBSTRING = "r12345";
+
+    @Param({"100000", "1000000"})
+    int rows;
+
+    private ConfigurableApplicationContext context;
+    private JPAQueryFactory jpaQueryFactory;
+    private UsernameSearch usernameSearch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("usernameSearch" + rows,
+                "querydsl.query-metrics.enabled=false",
+                "querydsl.username-index.directory=");
+        BenchmarkContext.seedMembers(context, rows, 100);
+
+        jpaQueryFactory = context.getBean(JPAQueryFactory.class);
+        usernameSearch = context.getBean(UsernameSearch.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<UsernameMatch> indexPrefix() {
+        return usernameSearch.search(PREFIX, LIMIT);
+    }
+
+    @Benchmark
+    public List<UsernameMatch> indexSubstring() {
+        return usernameSearch.search(SUBSTRING, LIMIT);
+    }
+
+    @Benchmark
+    public List<String> likePrefix() {
+        return jpaQueryFactory.select(member.username).from(member)
+                .where(member.username.startsWith(PREFIX))
+                .orderBy(member.username.asc())
+                .limit(LIMIT)
+                .fetch();
+    }
+
+    @Benchmark
+    public List<String> likeSubstring() {
+        return jpaQueryFactory.select(member.username).from(member)
+                .where(member.username.contains(SUBSTRING))
+                .orderBy(member.username.asc())
+                .limit(LIMIT)
+                .fetch();
+    }
+}
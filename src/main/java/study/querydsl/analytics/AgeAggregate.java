@@ -0,0 +1,42 @@
+package study.querydsl.analytics;
+
+import lombok.ToString;
+
+/**
+ * 나이 집계 (count, sum, min, max). 대상이 없으면 min/max 는 의미가 없으므로 count 를 먼저 확인한다.
+ * */
+@ToString
+public final class AgeAggregate {
+
+    private final long count;
+    private final long sum;
+    private final int min;
+    private final int max;
+
+    AgeAggregate(long count, long sum, int min, int max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public double getAvg() {
+        return count > 0 ? (double) sum / count : Double.NaN;
+    }
+}
@@ -0,0 +1,165 @@
+package study.querydsl.analytics;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+/**
+ * 회원 분석용 MemberColumns 스냅샷을 DB 에서 만들고 들고 있는다.
+ * - refresh() 는 cursor 로 한 번 읽으면서 primitive 배열을 채우고, 다 만들어진 뒤에 스냅샷을 통째로 교체한다.
+ *   (읽는 쪽은 항상 완성된 스냅샷 하나만 본다.)
+ * - 스냅샷은 refresh 시점의 데이터이므로 실시간 값이 필요하면 TeamStatsRepository 를 쓴다.
+ * */
+@Component
+public class MemberColumnStore {
+
+    private final JPAQueryFactory jpaQueryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+    private final int segmentSize;
+    private volatile MemberColumns snapshot;
+
+    public MemberColumnStore(JPAQueryFactory jpaQueryFactory,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${querydsl.export.fetch-size:1000}") int fetchSize,
+                             @Value("${querydsl.analytics.segment-size:65536}") int segmentSize) {
+        this.jpaQueryFactory = jpaQueryFactory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.fetchSize = fetchSize;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 아직 만든 적이 없으면 처음 한 번 DB 에서 읽는다.
+     * */
+    public MemberColumns current() {
+        MemberColumns current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = refresh();
+                }
+            }
+        }
+        return current;
+    }
+
+    //cursor 는 트랜잭션 안에서만 열 수 있으므로 current() 에서 호출돼도 트랜잭션이 걸리도록 TransactionTemplate 을 쓴다.
+    public synchronized MemberColumns refresh() {
+        MemberColumns built = readOnlyTransaction.execute(status -> load());
+        snapshot = built;
+        return built;
+    }
+
+    private MemberColumns load() {
+        Builder builder = new Builder();
+
+        try (CloseableIterator<Tuple> rows = jpaQueryFactory
+                .select(member.id, member.username, member.age, team.id, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .orderBy(member.id.asc())
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate()) {
+
+            while (rows.hasNext()) {
+                Tuple row = rows.next();
+                builder.add(row.get(member.id), row.get(member.username), row.get(member.age), row.get(team.id), row.get(team.name));
+            }
+        }
+
+        return builder.build(segmentSize);
+    }
+
+    //배열은 두 배씩 늘리고, 사전은 처음 나온 순서대로 코드를 붙인다.
+    private static final class Builder {
+
+        private long[] memberIds = new long[1024];
+        private int[] ages = new int[1024];
+        private int[] teamCodes = new int[1024];
+        private int[] usernameCodes = new int[1024];
+        private int size;
+
+        private final Map<Long, Integer> teamCodeById = new HashMap<>();
+        private long[] teamIds = new long[16];
+        private String[] teamNames = new String[16];
+
+        private final Map<String, Integer> usernameCodeByValue = new HashMap<>();
+        private String[] usernames = new String[1024];
+
+        private void add(Long memberId, String username, Integer age, Long teamId, String teamName) {
+            if (size == ages.length) {
+                int capacity = size * 2;
+                memberIds = Arrays.copyOf(memberIds, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                teamCodes = Arrays.copyOf(teamCodes, capacity);
+                usernameCodes = Arrays.copyOf(usernameCodes, capacity);
+            }
+
+            memberIds[size] = memberId;
+            ages[size] = age != null ? age : 0;
+            teamCodes[size] = teamId != null ? teamCode(teamId, teamName) : MemberColumns.NO_TEAM;
+            usernameCodes[size] = username != null ? usernameCode(username) : -1;
+            size++;
+        }
+
+        private int teamCode(long teamId, String teamName) {
+            Integer code = teamCodeById.get(teamId);
+            if (code != null) {
+                return code;
+            }
+            int next = teamCodeById.size();
+            if (next == teamIds.length) {
+                teamIds = Arrays.copyOf(teamIds, next * 2);
+                teamNames = Arrays.copyOf(teamNames, next * 2);
+            }
+            teamIds[next] = teamId;
+            teamNames[next] = teamName;
+            teamCodeById.put(teamId, next);
+            return next;
+        }
+
+        private int usernameCode(String username) {
+            Integer code = usernameCodeByValue.get(username);
+            if (code != null) {
+                return code;
+            }
+            int next = usernameCodeByValue.size();
+            if (next == usernames.length) {
+                usernames = Arrays.copyOf(usernames, next * 2);
+            }
+            usernames[next] = username;
+            usernameCodeByValue.put(username, next);
+            return next;
+        }
+
+        private MemberColumns build(int segmentSize) {
+            int teams = teamCodeById.size();
+            return new MemberColumns(
+                    Arrays.copyOf(memberIds, size),
+                    Arrays.copyOf(ages, size),
+                    Arrays.copyOf(teamCodes, size),
+                    Arrays.copyOf(usernameCodes, size),
+                    Arrays.copyOf(teamIds, teams),
+                    Arrays.copyOf(teamNames, teams),
+                    Arrays.copyOf(usernames, usernameCodeByValue.size()),
+                    size,
+                    segmentSize);
+        }
+    }
+}
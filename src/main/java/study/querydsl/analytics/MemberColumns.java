@@ -0,0 +1,224 @@
+package study.querydsl.analytics;
+
+import study.querydsl.dto.TeamAgeStatsDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Member 의 컬럼 단위 스냅샷 (읽기 전용)
+ * - 행 i 의 값은 memberIds[i], ages[i], teamCodes[i], usernameCodes[i] 에 있다.
+ * - team 과 username 은 사전(dictionary) 인코딩해서 int 코드만 들고 있고, 문자열은 사전에 한 번씩만 있다.
+ *   팀이 없는 회원의 teamCode 는 NO_TEAM.
+ * - 집계/필터는 primitive 배열만 순회하므로 Integer, Tuple 같은 boxing 이 없고,
+ *   행 수가 segmentSize 보다 많으면 segment 로 나눠서 fork-join 으로 병렬 실행한 뒤 합친다.
+ * */
+public final class MemberColumns {
+
+    public static final int NO_TEAM = -1;
+
+    private final long[] memberIds;
+    private final int[] ages;
+    private final int[] teamCodes;
+    private final int[] usernameCodes;
+    private final long[] teamIds;            //teamCode -> team_id
+    private final String[] teamNames;        //teamCode -> team.name
+    private final String[] usernames;        //usernameCode -> username
+    private final int size;
+    private final int segmentSize;
+
+    MemberColumns(long[] memberIds, int[] ages, int[] teamCodes, int[] usernameCodes,
+                  long[] teamIds, String[] teamNames, String[] usernames, int size, int segmentSize) {
+        this.memberIds = memberIds;
+        this.ages = ages;
+        this.teamCodes = teamCodes;
+        this.usernameCodes = usernameCodes;
+        this.teamIds = teamIds;
+        this.teamNames = teamNames;
+        this.usernames = usernames;
+        this.size = size;
+        this.segmentSize = segmentSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int teamCount() {
+        return teamNames.length;
+    }
+
+    public long memberId(int row) {
+        return memberIds[row];
+    }
+
+    public int age(int row) {
+        return ages[row];
+    }
+
+    public String username(int row) {
+        int code = usernameCodes[row];
+        return code >= 0 ? usernames[code] : null;
+    }
+
+    /**
+     * @return 팀이 없으면 null
+     * */
+    public String teamName(int row) {
+        int code = teamCodes[row];
+        return code != NO_TEAM ? teamNames[code] : null;
+    }
+
+    /**
+     * @return minAge <= age <= maxAge 인 행 번호 (selection vector)
+     * */
+    public int[] filterByAge(int minAge, int maxAge) {
+        int[] selected = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            int age = ages[row];
+            if (age >= minAge && age <= maxAge) {
+                selected[count++] = row;
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * 전체 회원 중 minAge <= age <= maxAge 인 회원의 나이 집계
+     * */
+    public AgeAggregate aggregateAge(int minAge, int maxAge) {
+        long count = 0;
+        long sum = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        for (int row = 0; row < size; row++) {
+            int age = ages[row];
+            if (age >= minAge && age <= maxAge) {
+                count++;
+                sum += age;
+                min = Math.min(min, age);
+                max = Math.max(max, age);
+            }
+        }
+        return new AgeAggregate(count, sum, min, max);
+    }
+
+    /**
+     * select team.name, count(member), avg(member.age), min(member.age), max(member.age) group by team 과 같은 결과
+     * - minAge <= age <= maxAge 인 회원만, 팀이 있는 회원만 집계한다. 회원이 없는 팀은 결과에 없다.
+     * */
+    public List<TeamAgeStatsDto> ageStatsByTeam(int minAge, int maxAge) {
+        return ageStatsByTeam(minAge, maxAge, true);
+    }
+
+    public List<TeamAgeStatsDto> ageStatsByTeam(int minAge, int maxAge, boolean parallel) {
+        TeamAggregation aggregation = parallel && size > segmentSize
+                ? ForkJoinPool.commonPool().invoke(new TeamAggregationTask(0, size, minAge, maxAge))
+                : aggregate(0, size, minAge, maxAge);
+
+        List<TeamAgeStatsDto> result = new ArrayList<>();
+        for (int code = 0; code < teamNames.length; code++) {
+            if (aggregation.counts[code] > 0) {
+                result.add(new TeamAgeStatsDto(teamNames[code], aggregation.counts[code], aggregation.sums[code],
+                        aggregation.mins[code], aggregation.maxs[code]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 팀이 없으면 NO_TEAM
+     * */
+    public int teamCode(int row) {
+        return teamCodes[row];
+    }
+
+    public long teamIdOfCode(int teamCode) {
+        return teamIds[teamCode];
+    }
+
+    private TeamAggregation aggregate(int from, int to, int minAge, int maxAge) {
+        TeamAggregation aggregation = new TeamAggregation(teamNames.length);
+        long[] counts = aggregation.counts;
+        long[] sums = aggregation.sums;
+        int[] mins = aggregation.mins;
+        int[] maxs = aggregation.maxs;
+
+        for (int row = from; row < to; row++) {
+            int code = teamCodes[row];
+            int age = ages[row];
+            if (code == NO_TEAM || age < minAge || age > maxAge) {
+                continue;
+            }
+            counts[code]++;
+            sums[code] += age;
+            if (age < mins[code]) {
+                mins[code] = age;
+            }
+            if (age > maxs[code]) {
+                maxs[code] = age;
+            }
+        }
+        return aggregation;
+    }
+
+    private static final class TeamAggregation {
+
+        private final long[] counts;
+        private final long[] sums;
+        private final int[] mins;
+        private final int[] maxs;
+
+        private TeamAggregation(int teams) {
+            counts = new long[teams];
+            sums = new long[teams];
+            mins = new int[teams];
+            maxs = new int[teams];
+            Arrays.fill(mins, Integer.MAX_VALUE);
+            Arrays.fill(maxs, Integer.MIN_VALUE);
+        }
+
+        private TeamAggregation merge(TeamAggregation other) {
+            for (int code = 0; code < counts.length; code++) {
+                counts[code] += other.counts[code];
+                sums[code] += other.sums[code];
+                mins[code] = Math.min(mins[code], other.mins[code]);
+                maxs[code] = Math.max(maxs[code], other.maxs[code]);
+            }
+            return this;
+        }
+    }
+
+    //segmentSize 이하가 될 때까지 반으로 나눈다.
+    private final class TeamAggregationTask extends RecursiveTask<TeamAggregation> {
+
+        private final int from;
+        private final int to;
+        private final int minAge;
+        private final int maxAge;
+
+        private TeamAggregationTask(int from, int to, int minAge, int maxAge) {
+            this.from = from;
+            this.to = to;
+            this.minAge = minAge;
+            this.maxAge = maxAge;
+        }
+
+        @Override
+        protected TeamAggregation compute() {
+            if (to - from <= segmentSize) {
+                return aggregate(from, to, minAge, maxAge);
+            }
+            int mid = (from + to) >>> 1;
+            TeamAggregationTask left = new TeamAggregationTask(from, mid, minAge, maxAge);
+            left.fork();
+            TeamAggregation right = new TeamAggregationTask(mid, to, minAge, maxAge).compute();
+            return left.join().merge(right);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.datasource.PoolProfile;
+
+/**
+ * 커넥션 풀 설정
+ * - 풀 크기, timeout, leak detection 은 spring.datasource.hikari.* 에, statement cache 크기는 querydsl.pool.statement-cache-size 에 둔다.
+ * - auto configuration 이 만드는 풀은 spring.datasource.hikari.* 가 이미 바인딩되므로 statement cache 만 더하고,
+ *   DataSourceRoutingConfig 처럼 직접 만드는 풀은 PoolProfile.apply 로 같은 설정을 적용한다.
+ * - 풀 metric 은 /actuator/metrics/hikaricp.connections.acquire?tag=pool:primary 등으로 본다.
+ * */
+@Configuration
+public class ConnectionPoolConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig hikariPoolTemplate() {
+        return new HikariConfig();
+    }
+
+    @Bean
+    public PoolProfile poolProfile(HikariConfig hikariPoolTemplate, MeterRegistry meterRegistry,
+                                   @Value("${querydsl.pool.statement-cache-size:0}") int statementCacheSize) {
+        return new PoolProfile(hikariPoolTemplate, statementCacheSize, meterRegistry);
+    }
+
+    //풀이 시작되기 전 (초기화 전) 에 적용해야 한다.
+    @Bean
+    public static BeanPostProcessor poolProfilePostProcessor(ObjectProvider<PoolProfile> poolProfile) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource) {
+                    poolProfile.getObject().applyStatementCache((HikariDataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+}
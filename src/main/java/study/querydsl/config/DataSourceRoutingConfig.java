@@ -0,0 +1,105 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import study.querydsl.datasource.PoolProfile;
+import study.querydsl.datasource.ReplicaNode;
+import study.querydsl.datasource.ReplicaSelector;
+import study.querydsl.datasource.ReplicationRoutingDataSource;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 읽기/쓰기 DataSource 분리 (querydsl.datasource.routing.enabled = true 일 때만)
+ * - EntityManagerFactory, 그리고 그 위의 JPAQueryFactory 는 아래 DataSource 하나만 보고,
+ *   트랜잭션의 readOnly 여부에 따라 실제 커넥션이 primary/replica 로 나뉜다.
+ * - primary, replica 풀 모두 PoolProfile (spring.datasource.hikari.*) 설정을 따른다.
+ * - replica 풀은 ReplicaSelector 가, primary 풀은 이 설정이 context 종료 시 닫는다.
+ *   (LazyConnectionDataSourceProxy, 라우팅 DataSource 에는 close 가 없어서 destroy method 가 풀까지 닿지 않는다.)
+ * */
+@Configuration
+@ConditionalOnProperty(prefix = "querydsl.datasource.routing", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+public class DataSourceRoutingConfig {
+
+    private HikariDataSource primary;
+
+    @Bean(destroyMethod = "close")
+    public ReplicaSelector replicaSelector(DataSourceRoutingProperties properties, PoolProfile poolProfile) {
+        List<ReplicaNode> replicas = new ArrayList<>();
+        for (DataSourceRoutingProperties.Replica replica : properties.getReplicas()) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName(replica.getName());
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setUsername(replica.getUsername());
+            dataSource.setPassword(replica.getPassword());
+            dataSource.setReadOnly(true);
+            poolProfile.apply(dataSource);
+            replicas.add(new ReplicaNode(replica.getName(), dataSource));
+        }
+
+        return new ReplicaSelector(replicas, properties.getLagQuery(), properties.getMaxLag(), properties.getHealthCheckInterval());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, ReplicaSelector replicaSelector,
+                                 PoolProfile poolProfile) {
+        primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName(ReplicationRoutingDataSource.PRIMARY);
+        poolProfile.apply(primary);
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReplicationRoutingDataSource.PRIMARY, primary);
+        for (ReplicaNode replica : replicaSelector.getReplicas()) {
+            targets.put(replica.getName(), replica.getDataSource());
+        }
+
+        ReplicationRoutingDataSource routing = new ReplicationRoutingDataSource(replicaSelector);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    //dataSource bean (과 그 위의 EntityManagerFactory) 이 먼저 정리된 뒤에 호출된다.
+    @PreDestroy
+    public void closePrimary() {
+        if (primary != null) {
+            primary.close();
+        }
+    }
+
+    @Bean
+    public HealthIndicator replicasHealthIndicator(ReplicaSelector replicaSelector) {
+        return () -> {
+            Health.Builder builder = Health.up();
+            boolean anyHealthy = false;
+            for (ReplicaNode replica : replicaSelector.getReplicas()) {
+                Map<String, Object> detail = new HashMap<>();
+                detail.put("healthy", replica.isHealthy());
+                detail.put("lagSeconds", replica.getLagSeconds());
+                builder.withDetail(replica.getName(), detail);
+                anyHealthy |= replica.isHealthy();
+            }
+            //replica 가 전부 죽어도 primary 로 fallback 하므로 DOWN 이 아니라 경고 상태로 둔다.
+            return anyHealthy || replicaSelector.getReplicas().isEmpty() ? builder.build() : builder.status("DEGRADED").build();
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * querydsl.datasource.routing.*
+ * - primary 는 spring.datasource 설정을 그대로 쓴다.
+ * */
+@Getter
+@Setter
+@ConfigurationProperties("querydsl.datasource.routing")
+public class DataSourceRoutingProperties {
+
+    private boolean enabled;
+    private List<Replica> replicas = new ArrayList<>();
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+    private String lagQuery;            //replica 에서 실행해서 복제 지연(초)을 돌려주는 쿼리, 없으면 lag 은 보지 않는다.
+    private Duration maxLag = Duration.ofSeconds(10);
+
+    @Getter
+    @Setter
+    public static class Replica {
+
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+
+    }
+}
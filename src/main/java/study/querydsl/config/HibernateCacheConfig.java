@@ -0,0 +1,68 @@
+package study.querydsl.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * hibernate 2차 캐시용 JCache CacheManager
+ * - region 별 크기/TTL 은 application.yml 의 querydsl.cache.regions 로 설정한다.
+ * - hibernate 가 쓰는 기본 region 두 개는 여기서 직접 만든다.
+ *   update timestamps region 은 쿼리 캐시의 정합성을 판단하는 데 쓰이므로 만료/제거되면 안 된다.
+ * */
+@Configuration
+@EnableConfigurationProperties(HibernateCacheProperties.class)
+public class HibernateCacheConfig {
+
+    static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+    static final String DEFAULT_QUERY_REGION = "default-query-results-region";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(HibernateCacheProperties properties) {
+        //context 마다 독립된 CacheManager 를 쓰도록 uri 를 구분한다. (테스트에서 context 가 여러 개 떠도 region 이 섞이지 않게)
+        URI uri = URI.create("querydsl:hibernate:" + UUID.randomUUID());
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(uri, getClass().getClassLoader());
+
+        for (Map.Entry<String, HibernateCacheProperties.Region> entry : properties.getRegions().entrySet()) {
+            cacheManager.createCache(entry.getKey(), configuration(entry.getValue()));
+        }
+
+        if (cacheManager.getCache(DEFAULT_QUERY_REGION) == null) {
+            cacheManager.createCache(DEFAULT_QUERY_REGION, configuration(new HibernateCacheProperties.Region()));
+        }
+        if (cacheManager.getCache(TIMESTAMPS_REGION) == null) {
+            CaffeineConfiguration<Object, Object> eternal = new CaffeineConfiguration<>();
+            eternal.setStatisticsEnabled(true);
+            cacheManager.createCache(TIMESTAMPS_REGION, eternal);
+        }
+
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private CaffeineConfiguration<Object, Object> configuration(HibernateCacheProperties.Region region) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(region.getMaxEntries()));
+        if (region.getTimeToLive() != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(region.getTimeToLive().toNanos()));
+        }
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
@@ -0,0 +1,29 @@
+package study.querydsl.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * querydsl.cache.regions.{region 이름}.max-entries / time-to-live
+ * */
+@Getter
+@Setter
+@ConfigurationProperties("querydsl.cache")
+public class HibernateCacheProperties {
+
+    private Map<String, Region> regions = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Region {
+
+        private long maxEntries = 1000;
+        private Duration timeToLive;    //null 이면 만료 없음
+
+    }
+}
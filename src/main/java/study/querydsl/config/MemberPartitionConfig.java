@@ -0,0 +1,36 @@
+package study.querydsl.config;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.partition.PartitionedMemberListener;
+import study.querydsl.partition.PartitionedMemberStore;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * querydsl.partitioning.enabled = true 일 때만 team_id 로 나눈 회원 테이블을 유지한다.
+ * (커밋 후가 아니라 flush 될 때의 이벤트로 받아서 같은 트랜잭션에서 쓴다.)
+ * */
+@Configuration
+@ConditionalOnProperty(prefix = "querydsl.partitioning", name = "enabled", havingValue = "true")
+public class MemberPartitionConfig {
+
+    @Bean
+    public PartitionedMemberListener partitionedMemberListener(EntityManagerFactory emf, PartitionedMemberStore partitionedMemberStore) {
+        PartitionedMemberListener listener = new PartitionedMemberListener(partitionedMemberStore);
+
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_INSERT, listener);
+        registry.appendListeners(EventType.POST_UPDATE, listener);
+        registry.appendListeners(EventType.POST_DELETE, listener);
+
+        return listener;
+    }
+}
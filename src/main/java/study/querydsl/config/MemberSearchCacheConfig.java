@@ -0,0 +1,31 @@
+package study.querydsl.config;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.search.MemberSearchCache;
+import study.querydsl.search.MemberSearchCacheListener;
+
+import javax.persistence.EntityManagerFactory;
+
+@Configuration
+public class MemberSearchCacheConfig {
+
+    //커밋된 변경만 캐시를 지운다. 롤백되면 캐시는 그대로 맞다.
+    @Bean
+    public MemberSearchCacheListener memberSearchCacheListener(EntityManagerFactory emf, MemberSearchCache memberSearchCache) {
+        MemberSearchCacheListener listener = new MemberSearchCacheListener(memberSearchCache);
+
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+
+        return listener;
+    }
+}
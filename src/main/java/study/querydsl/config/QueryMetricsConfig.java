@@ -0,0 +1,59 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.monitoring.FullScanGuard;
+import study.querydsl.monitoring.QueryMetrics;
+import study.querydsl.monitoring.QueryMetricsDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * SQL 모양별 실행 시간/행 수 metric 과 slow query 로그 (querydsl.query-metrics.enabled = false 로 끌 수 있다.)
+ * - show-sql 처럼 모든 SQL 을 문자열로 출력하지 않고, 측정값만 meter 에 누적하므로 운영에서도 켜둘 수 있다.
+ * - querydsl.full-scan-guard.enabled = true 이면 같은 DataSource 에서 full scan 검사도 한다. (H2, 개발/테스트용)
+ * */
+@Configuration
+@ConditionalOnProperty(prefix = "querydsl.query-metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class QueryMetricsConfig {
+
+    @Bean
+    public QueryMetrics queryMetrics(MeterRegistry meterRegistry,
+                                     @Value("${querydsl.query-metrics.slow-threshold:200ms}") Duration slowThreshold,
+                                     @Value("${querydsl.query-metrics.percentile-histogram:true}") boolean percentileHistogram,
+                                     @Value("${querydsl.query-metrics.max-cached-statements:1000}") int maxCachedStatements,
+                                     @Value("${querydsl.query-metrics.max-shapes:500}") int maxShapes) {
+        return new QueryMetrics(meterRegistry, slowThreshold, percentileHistogram, maxCachedStatements, maxShapes);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "querydsl.full-scan-guard", name = "enabled", havingValue = "true")
+    public FullScanGuard fullScanGuard(MeterRegistry meterRegistry,
+                                       @Value("${querydsl.full-scan-guard.tables:member,team}") Set<String> tables,
+                                       @Value("${querydsl.full-scan-guard.fail-fast:false}") boolean failFast,
+                                       @Value("${querydsl.full-scan-guard.max-shapes:500}") int maxShapes) {
+        return new FullScanGuard(meterRegistry, tables, failFast, maxShapes);
+    }
+
+    //DataSource 를 만드는 쪽(auto configuration, DataSourceRoutingConfig) 과 상관없이 마지막에 한 번 감싼다.
+    @Bean
+    public static BeanPostProcessor queryMetricsDataSourcePostProcessor(ObjectProvider<QueryMetrics> queryMetrics,
+                                                                       ObjectProvider<FullScanGuard> fullScanGuard) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof QueryMetricsDataSource)) {
+                    return new QueryMetricsDataSource((DataSource) bean, queryMetrics.getObject(), fullScanGuard.getIfAvailable());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import study.querydsl.monitoring.QueryCountInterceptor;
+import study.querydsl.monitoring.QueryCountStatementInspector;
+
+/**
+ * 요청 단위 SQL 카운트와 N+1 감지
+ * */
+@Configuration
+public class QueryMonitoringConfig implements WebMvcConfigurer {
+
+    private final MeterRegistry meterRegistry;
+    private final int threshold;
+    private final boolean failFast;
+
+    public QueryMonitoringConfig(MeterRegistry meterRegistry,
+                                 @Value("${querydsl.n-plus-one.threshold:2}") int threshold,
+                                 @Value("${querydsl.n-plus-one.fail-fast:false}") boolean failFast) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = threshold;
+        this.failFast = failFast;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCountInspectorCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCountStatementInspector());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new QueryCountInterceptor(meterRegistry, threshold, failFast));
+    }
+}
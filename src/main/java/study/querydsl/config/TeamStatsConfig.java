@@ -0,0 +1,32 @@
+package study.querydsl.config;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.stats.TeamStatsEventListener;
+
+import javax.persistence.EntityManagerFactory;
+
+@Configuration
+public class TeamStatsConfig {
+
+    //flush 리스너는 기본 리스너 뒤에 붙여야 실제 flush 가 끝난 다음에 호출된다.
+    @Bean
+    public TeamStatsEventListener teamStatsEventListener(EntityManagerFactory emf) {
+        TeamStatsEventListener listener = new TeamStatsEventListener();
+
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_INSERT, listener);
+        registry.appendListeners(EventType.POST_UPDATE, listener);
+        registry.appendListeners(EventType.POST_DELETE, listener);
+        registry.appendListeners(EventType.FLUSH, listener);
+        registry.appendListeners(EventType.AUTO_FLUSH, listener);
+
+        return listener;
+    }
+}
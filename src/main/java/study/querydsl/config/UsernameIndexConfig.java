@@ -0,0 +1,31 @@
+package study.querydsl.config;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.search.UsernameIndexListener;
+import study.querydsl.search.UsernameSearch;
+
+import javax.persistence.EntityManagerFactory;
+
+@Configuration
+public class UsernameIndexConfig {
+
+    //post commit 이벤트는 트랜잭션이 커밋된 뒤에만 호출된다. (requiresPostCommitHanding = true 인 엔티티만)
+    @Bean
+    public UsernameIndexListener usernameIndexListener(EntityManagerFactory emf, UsernameSearch usernameSearch) {
+        UsernameIndexListener listener = new UsernameIndexListener(usernameSearch);
+
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+
+        return listener;
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.service.MemberExportService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 회원 내보내기. 응답을 다 만든 뒤 보내지 않고 DB cursor 에서 읽는 대로 써서 보낸다.
+ * */
+@RestController
+@RequiredArgsConstructor
+public class MemberExportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+    private final MemberExportService memberExportService;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping("/members/export.ndjson")
+    public ResponseEntity<StreamingResponseBody> exportNdjson() {
+        ObjectWriter objectWriter = objectMapper.writerFor(MemberDto.class);
+
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            memberExportService.streamMembers(dto -> {
+                try {
+                    writer.write(objectWriter.writeValueAsString(dto));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    @GetMapping("/members/export.csv")
+    public ResponseEntity<StreamingResponseBody> exportCsv() {
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write("username,age\n");
+            memberExportService.streamMembers(dto -> {
+                try {
+                    writer.write(csv(dto.getUsername()));
+                    writer.write(',');
+                    writer.write(dto.getAge() != null ? dto.getAge().toString() : "");
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+
+        return ResponseEntity.ok().contentType(CSV).body(body);
+    }
+
+    //RFC 4180 : 구분자, 따옴표, 줄바꿈이 있으면 따옴표로 감싸고 내부 따옴표는 두 번 쓴다.
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
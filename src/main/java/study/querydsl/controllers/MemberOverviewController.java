@@ -0,0 +1,26 @@
+package study.querydsl.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.MemberOverviewDto;
+import study.querydsl.service.MemberOverviewService;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * CompletableFuture 를 반환하면 요청 스레드는 바로 반납되고, 조회가 끝난 스레드에서 응답을 쓴다.
+ * */
+@RestController
+@RequiredArgsConstructor
+public class MemberOverviewController {
+
+    private final MemberOverviewService memberOverviewService;
+
+    @GetMapping("/members/overview")
+    public CompletableFuture<MemberOverviewDto> overview(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "20") int size) {
+        return memberOverviewService.overview(cursor, size);
+    }
+}
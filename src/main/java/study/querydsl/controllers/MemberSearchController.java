@@ -0,0 +1,28 @@
+package study.querydsl.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.search.UsernameSearch;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class MemberSearchController {
+
+    private static final int MAX_LIMIT = 100;
+
+    private final UsernameSearch usernameSearch;
+
+    /**
+     * GET /members/search?q=mem&limit=10
+     * - username 이 q 로 시작하는 회원이 먼저, 그 다음 q 를 포함하는 회원 (q 가 3글자 이상일 때). 대소문자 구분 없음
+     * */
+    @GetMapping("/members/search")
+    public List<UsernameMatch> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return usernameSearch.search(q, Math.min(Math.max(limit, 1), MAX_LIMIT));
+    }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.service.MemberExportService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 회원 검색 결과를 한 줄에 하나씩 (NDJSON) 흘려보낸다.
+ * - Content-Length 없이 chunked 로 전송되고, DB cursor 에서 읽은 행을 바로 쓰기 때문에 서버 메모리는 결과 크기와 상관없다.
+ * - 첫 행은 바로 flush 해서 첫 바이트까지의 시간이 결과 크기와 상관없게 하고, 이후에는 버퍼가 찰 때마다 보낸다.
+ * - 클라이언트가 느리면 소켓 쓰기가 막히고, 그동안 cursor 도 더 읽지 않는다. (별도의 backpressure 처리가 필요 없다.)
+ *   클라이언트가 끊으면 쓰기 예외로 cursor 와 트랜잭션이 정리된다.
+ * */
+@RestController
+@RequiredArgsConstructor
+public class MemberStreamController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final MemberExportService memberExportService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * GET /members/stream?username=&age=&ageGoe=&ageLoe=&teamName=
+     * */
+    @GetMapping("/members/stream")
+    public ResponseEntity<StreamingResponseBody> stream(MemberSearchCondition condition) {
+        ObjectWriter objectWriter = objectMapper.writerFor(MemberDto.class);
+
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            boolean[] first = {true};
+            memberExportService.streamMembers(condition, dto -> {
+                try {
+                    writer.write(objectWriter.writeValueAsString(dto));
+                    writer.write('\n');
+                    if (first[0]) {
+                        writer.flush();
+                        first[0] = false;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+}
@@ -0,0 +1,82 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Properties;
+
+/**
+ * 모든 커넥션 풀(primary, replica)에 같이 적용하는 풀 설정
+ * - 크기, timeout, leak detection : spring.datasource.hikari.* 로 바인딩한 template 에서 복사한다.
+ * - statement cache : Hikari 에는 statement cache 가 없으므로 드라이버의 prepared statement cache 설정으로 넘긴다.
+ *   0 이면 드라이버 기본값을 그대로 쓴다.
+ * - metric : MeterRegistry 를 연결해서 hikaricp.connections.* (acquire, active, idle, pending, timeout, usage) 를 남긴다.
+ * */
+public class PoolProfile {
+
+    private final HikariConfig template;
+    private final int statementCacheSize;
+    private final MeterRegistry meterRegistry;
+
+    public PoolProfile(HikariConfig template, int statementCacheSize, MeterRegistry meterRegistry) {
+        this.template = template;
+        this.statementCacheSize = statementCacheSize;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * bean 으로 등록되지 않은 풀 (ex. DataSourceRoutingConfig 의 replica) 에 적용. jdbcUrl 을 먼저 설정해야 한다.
+     * */
+    public void apply(HikariDataSource dataSource) {
+        //설정하지 않은 값은 -1 이므로 Hikari 기본값을 그대로 둔다.
+        if (template.getMaximumPoolSize() > 0) {
+            dataSource.setMaximumPoolSize(template.getMaximumPoolSize());
+        }
+        if (template.getMinimumIdle() >= 0) {
+            dataSource.setMinimumIdle(template.getMinimumIdle());
+        }
+        dataSource.setConnectionTimeout(template.getConnectionTimeout());
+        dataSource.setValidationTimeout(template.getValidationTimeout());
+        dataSource.setIdleTimeout(template.getIdleTimeout());
+        dataSource.setMaxLifetime(template.getMaxLifetime());
+        dataSource.setLeakDetectionThreshold(template.getLeakDetectionThreshold());
+        applyStatementCache(dataSource);
+        if (dataSource.getMetricRegistry() == null && dataSource.getMetricsTrackerFactory() == null) {
+            dataSource.setMetricRegistry(meterRegistry);
+        }
+    }
+
+    /**
+     * spring.datasource.hikari.data-source-properties 에 직접 넣은 값이 있으면 그 값이 우선
+     * */
+    public void applyStatementCache(HikariDataSource dataSource) {
+        Properties cacheProperties = statementCacheProperties(dataSource.getJdbcUrl(), statementCacheSize);
+        for (String name : cacheProperties.stringPropertyNames()) {
+            if (!dataSource.getDataSourceProperties().containsKey(name)) {
+                dataSource.addDataSourceProperty(name, cacheProperties.getProperty(name));
+            }
+        }
+    }
+
+    //드라이버마다 이름이 다르다. 모르는 드라이버면 아무것도 넣지 않는다.
+    static Properties statementCacheProperties(String jdbcUrl, int size) {
+        Properties properties = new Properties();
+        if (size <= 0 || jdbcUrl == null) {
+            return properties;
+        }
+
+        if (jdbcUrl.startsWith("jdbc:h2:")) {
+            //세션마다 파싱한 command 를 n 개까지 재사용 (기본 8). 데이터베이스를 처음 열 때만 적용된다.
+            properties.setProperty("QUERY_CACHE_SIZE", String.valueOf(size));
+        } else if (jdbcUrl.startsWith("jdbc:mysql:") || jdbcUrl.startsWith("jdbc:mariadb:")) {
+            properties.setProperty("cachePrepStmts", "true");
+            properties.setProperty("prepStmtCacheSize", String.valueOf(size));
+            properties.setProperty("prepStmtCacheSqlLimit", "2048");
+            properties.setProperty("useServerPrepStmts", "true");
+        } else if (jdbcUrl.startsWith("jdbc:postgresql:")) {
+            properties.setProperty("preparedStatementCacheQueries", String.valueOf(size));
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.datasource;
+
+import javax.sql.DataSource;
+
+/**
+ * replica 하나와 최근 health check 결과
+ * */
+public class ReplicaNode {
+
+    private final String name;
+    private final DataSource dataSource;
+    private volatile boolean healthy = true;
+    private volatile Double lagSeconds;     //lag-query 가 없거나 측정 실패 시 null
+
+    public ReplicaNode(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public Double getLagSeconds() {
+        return lagSeconds;
+    }
+
+    void update(boolean healthy, Double lagSeconds) {
+        this.healthy = healthy;
+        this.lagSeconds = lagSeconds;
+    }
+}
@@ -0,0 +1,113 @@
+package study.querydsl.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 읽기 전용 트랜잭션이 사용할 replica 선택
+ * - healthy 한 replica 들을 round robin 으로 고른다. 하나도 없으면 null -> primary 로 fallback
+ * - healthCheckInterval 마다 커넥션 유효성과 (lagQuery 가 있으면) 복제 지연을 확인하고,
+ *   maxLag 를 넘으면 lag 이 줄어들 때까지 선택에서 제외한다.
+ * - replica 의 DataSource (커넥션 풀) 는 이 selector 가 소유하므로 close 할 때 같이 닫는다.
+ * */
+@Slf4j
+public class ReplicaSelector implements AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final List<ReplicaNode> replicas;
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+
+    public ReplicaSelector(List<ReplicaNode> replicas, String lagQuery, Duration maxLag, Duration healthCheckInterval) {
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = healthCheckInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::checkHealth, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public List<ReplicaNode> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return 사용할 replica 가 없으면 null
+     * */
+    public ReplicaNode select() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+
+        for (int i = 0; i < size; i++) {
+            ReplicaNode replica = replicas.get((start + i) % size);
+            if (replica.isHealthy()) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    public void checkHealth() {
+        for (ReplicaNode replica : replicas) {
+            boolean wasHealthy = replica.isHealthy();
+            try (Connection connection = replica.getDataSource().getConnection()) {
+                boolean valid = connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+                Double lag = valid && lagQuery != null ? queryLag(connection) : null;
+                boolean lagging = lag != null && maxLag != null && lag * 1000 > maxLag.toMillis();
+
+                replica.update(valid && !lagging, lag);
+            } catch (SQLException | RuntimeException e) {
+                replica.update(false, null);
+            }
+
+            if (wasHealthy != replica.isHealthy()) {
+                log.warn("replica [{}] healthy {} -> {} (lag = {}s)", replica.getName(), wasHealthy, replica.isHealthy(), replica.getLagSeconds());
+            }
+        }
+    }
+
+    private Double queryLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next()) {
+                return null;
+            }
+            double lag = resultSet.getDouble(1);
+            return resultSet.wasNull() ? null : lag;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        for (ReplicaNode replica : replicas) {
+            if (replica.getDataSource() instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) replica.getDataSource()).close();
+                } catch (Exception e) {
+                    log.warn("replica [{}] 커넥션 풀을 닫지 못했습니다.", replica.getName(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package study.querydsl.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @Transactional(readOnly = true) 이면 replica, 아니면 primary 로 보낸다.
+ * - 트랜잭션 시작 시점에는 아직 readOnly 여부가 바인딩되지 않으므로 반드시 LazyConnectionDataSourceProxy 로 감싸서 써야 한다.
+ *   (실제 커넥션을 첫 쿼리 시점에 가져오게 해서 그때 readOnly 여부를 본다.)
+ * */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaSelector replicaSelector;
+
+    public ReplicationRoutingDataSource(ReplicaSelector replicaSelector) {
+        this.replicaSelector = replicaSelector;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+
+        ReplicaNode replica = replicaSelector.select();
+        return replica != null ? replica.getName() : PRIMARY;
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * bulk 연산 chunk 하나의 결과. chunk 의 첫 id (fromId) ~ 마지막 id (toId) 중 변경된 row 수
+ * */
+@Getter
+@ToString
+public class BulkChunkResult {
+
+    private final long fromId;
+    private final long toId;
+    private final long rows;
+
+    public BulkChunkResult(long fromId, long toId, long rows) {
+        this.fromId = fromId;
+        this.toId = toId;
+        this.rows = rows;
+    }
+}
@@ -0,0 +1,19 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+@Getter
+@ToString
+public class BulkResult {
+
+    private final List<BulkChunkResult> chunks;
+    private final long totalRows;
+
+    public BulkResult(List<BulkChunkResult> chunks) {
+        this.chunks = chunks;
+        this.totalRows = chunks.stream().mapToLong(BulkChunkResult::getRows).sum();
+    }
+}
@@ -0,0 +1,44 @@
+package study.querydsl.dto;
+
+import lombok.ToString;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * keyset 페이징 결과.
+ * - total 은 getTotal() 을 처음 호출할 때 한 번만 count 쿼리를 실행하고, 이후에는 캐시된 값을 쓴다.
+ * */
+@ToString(exclude = "totalSupplier")
+public class KeysetPage<T> {
+
+    private final List<T> content;
+    private final String nextCursor;
+    private final LongSupplier totalSupplier;
+    private Long total;
+
+    public KeysetPage(List<T> content, String nextCursor, LongSupplier totalSupplier) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.totalSupplier = totalSupplier;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public synchronized long getTotal() {
+        if (total == null) {
+            total = totalSupplier.getAsLong();
+        }
+        return total;
+    }
+}
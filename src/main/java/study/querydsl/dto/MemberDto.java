@@ -1,8 +1,16 @@
 package study.querydsl.dto;
 
 import com.querydsl.core.annotations.QueryProjection;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
+import study.querydsl.projection.DirectProjection;
 
+@DirectProjection   //MemberDtoProjection 생성
+@Getter
+@Setter             //Projections.bean
+@NoArgsConstructor  //Projections.bean, Projections.fields
 @ToString
 public class MemberDto {
 
@@ -0,0 +1,22 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 대량 등록 입력 한 건. teamName 이 null 이면 팀 없는 회원으로 등록한다.
+ * */
+@Getter
+@ToString
+public class MemberIngestRecord {
+
+    private final String username;
+    private final int age;
+    private final String teamName;
+
+    public MemberIngestRecord(String username, int age, String teamName) {
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+    }
+}
@@ -0,0 +1,24 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 회원 목록 한 페이지 + 팀별 연령 통계
+ * */
+@Getter
+@ToString
+public class MemberOverviewDto {
+
+    private final List<MemberDto> members;
+    private final String nextCursor;
+    private final List<TeamAgeStatsDto> teamStats;
+
+    public MemberOverviewDto(KeysetPage<MemberDto> page, List<TeamAgeStatsDto> teamStats) {
+        this.members = page.getContent();
+        this.nextCursor = page.getNextCursor();
+        this.teamStats = teamStats;
+    }
+}
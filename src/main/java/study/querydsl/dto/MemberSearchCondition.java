@@ -0,0 +1,27 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * 회원 동적 검색 조건. null 인 조건은 무시한다.
+ * */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+public class MemberSearchCondition {
+
+    private String username;
+    private Integer age;
+    private Integer ageGoe;
+    private Integer ageLoe;
+    private String teamName;
+
+    public MemberSearchCondition(String username, Integer age) {
+        this.username = username;
+        this.age = age;
+    }
+}
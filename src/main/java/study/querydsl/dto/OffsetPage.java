@@ -0,0 +1,33 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * offset 페이징 결과.
+ * - totalExact 가 false 이면 total 은 정확한 값이 아니라 "최소 total 건 이상" 이라는 뜻이다. (CountMode.CAPPED)
+ * */
+@Getter
+@ToString
+public class OffsetPage<T> {
+
+    private final List<T> content;
+    private final long offset;
+    private final int size;
+    private final long total;
+    private final boolean totalExact;
+
+    public OffsetPage(List<T> content, long offset, int size, long total, boolean totalExact) {
+        this.content = content;
+        this.offset = offset;
+        this.size = size;
+        this.total = total;
+        this.totalExact = totalExact;
+    }
+
+    public boolean hasNext() {
+        return offset + content.size() < total || !totalExact && content.size() == size;
+    }
+}
@@ -0,0 +1,23 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+public class TeamAgeStatsDto {
+
+    private final String teamName;
+    private final long memberCount;
+    private final Double avgAge;    //회원이 없으면 null
+    private final Integer minAge;
+    private final Integer maxAge;
+
+    public TeamAgeStatsDto(String teamName, long memberCount, long ageSum, Integer minAge, Integer maxAge) {
+        this.teamName = teamName;
+        this.memberCount = memberCount;
+        this.avgAge = memberCount > 0 ? (double) ageSum / memberCount : null;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+}
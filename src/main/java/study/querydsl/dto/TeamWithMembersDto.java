@@ -0,0 +1,21 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+@Getter
+@ToString
+public class TeamWithMembersDto {
+
+    private final Long teamId;
+    private final String name;
+    private final List<MemberDto> members;
+
+    public TeamWithMembersDto(Long teamId, String name, List<MemberDto> members) {
+        this.teamId = teamId;
+        this.name = name;
+        this.members = members;
+    }
+}
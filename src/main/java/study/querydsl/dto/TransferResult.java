@@ -0,0 +1,24 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 팀 이동 결과. attempts 는 낙관적 락 충돌로 재시도한 횟수를 포함한 실행 횟수
+ * */
+@Getter
+@ToString
+public class TransferResult {
+
+    private final Long memberId;
+    private final Long fromTeamId;
+    private final Long toTeamId;
+    private final int attempts;
+
+    public TransferResult(Long memberId, Long fromTeamId, Long toTeamId, int attempts) {
+        this.memberId = memberId;
+        this.fromTeamId = fromTeamId;
+        this.toTeamId = toTeamId;
+        this.attempts = attempts;
+    }
+}
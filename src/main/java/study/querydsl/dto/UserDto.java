@@ -2,7 +2,9 @@ package study.querydsl.dto;
 
 import lombok.Setter;
 import lombok.ToString;
+import study.querydsl.projection.DirectProjection;
 
+@DirectProjection   //UserDtoProjection 생성
 @Setter
 @ToString
 public class UserDto {
@@ -0,0 +1,20 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * username 검색 결과 한 건 (/members/search)
+ * */
+@Getter
+@ToString
+public class UsernameMatch {
+
+    private final long memberId;
+    private final String username;
+
+    public UsernameMatch(long memberId, String username) {
+        this.memberId = memberId;
+        this.username = username;
+    }
+}
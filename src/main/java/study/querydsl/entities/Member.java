@@ -1,6 +1,8 @@
 package study.querydsl.entities;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.Objects;
@@ -10,14 +12,28 @@ import java.util.Objects;
 //@Setter     //가급적이면 실무에서 쓰지 않기
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
+@Table(indexes = {
+        @Index(name = "idx_member_age_id", columnList = "age, member_id, username"),            //keyset 페이징 (age, member_id), age 범위/bulk 조건. username 까지 covering
+        @Index(name = "idx_member_username_id", columnList = "username, member_id, age"),       //username = ?, keyset 페이징 (username, member_id). age 까지 covering
+        @Index(name = "idx_member_team_age", columnList = "team_id, age desc, username")        //team 조인 + age desc, username asc 정렬, 팀별 나이 통계
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "member")        //Team.members 컬렉션 캐시의 원소
 public class Member {
 
-    @Id @GeneratedValue
+    private static final PersistenceUtil PERSISTENCE_UTIL = Persistence.getPersistenceUtil();
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)   //pooled : 50건마다 sequence 한 번 호출
     @Column(name = "member_id")
     private Long id;
     private String username;
     private int age;
 
+    @Version        //동시에 같은 회원을 수정하면 나중에 커밋하는 쪽이 OptimisticLockException (TeamTransferService 가 재시도)
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "team_id")       //연관관계 주인. member에서만 team의 외래키값을 변경할 수 있다. team에서는 읽기만 가능
     private Team team;
@@ -35,9 +51,20 @@ public class Member {
         }
     }
 
-    private void changeTeam(Team team) {
+    public void changeTeam(Team team) {
+        //기존 team 의 members 에서 빼기 (로딩되어 있을 때만)
+        if (this.team != null && PERSISTENCE_UTIL.isLoaded(this.team, "members")) {
+            this.team.getMembers().remove(this);
+        }
+
         this.team = team;                   //member 에서 team add
-        team.getMembers().add(this);        //team 속의 member add
+
+        //team 속의 member add
+        //team 이 아직 proxy 이거나 members 가 로딩되지 않았다면 나중에 DB 에서 읽을 때 반영되므로,
+        //member 하나 추가하려고 team, members 전체를 로딩하지 않는다.
+        if (team != null && PERSISTENCE_UTIL.isLoaded(team, "members")) {
+            team.getMembers().add(this);
+        }
     }
 
 }
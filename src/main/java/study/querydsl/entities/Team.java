@@ -1,11 +1,20 @@
 package study.querydsl.entities;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.OptimisticLock;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,13 +23,23 @@ import java.util.List;
 //@Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)      //기본생성자 막기. JPA 스펙상 protected 는 열어 두어야 함
 @ToString(of = {"id", "name"})      //연관관계 없는 내부 필드만 toString
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))        //팀 이름 조회, team.name = ? 조인 조건
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")      //2차 캐시, 거의 모든 member 쿼리에서 조인/조회된다.
 public class Team {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
+    @SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = 50)
     private Long id;
     private String name;
 
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "team")       //연관관계 주인이 아님 (거울)
+    @OptimisticLock(excluded = true)    //회원이 들어오고 나가도 team 의 version 은 올리지 않는다. (외래키는 member 에 있으므로 team 행은 바뀌지 않는다.)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team-members")     //member id 목록만 캐시되므로 Member 도 캐시해야 N+1 이 생기지 않는다.
     private List<Member> members = new ArrayList<>();
 
     public Team(String name) {
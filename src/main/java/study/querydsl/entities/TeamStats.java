@@ -0,0 +1,36 @@
+package study.querydsl.entities;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Synchronize;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 팀별 회원 나이 통계 (materialized)
+ * - Member 생성/삭제/팀 변경 시 TeamStatsEventListener 가 SQL 로 갱신하므로 엔티티로는 읽기만 한다.
+ * - @Synchronize : TeamStats 를 조회하기 전에 member 테이블의 변경분을 먼저 flush 하게 해서 같은 트랜잭션 안에서도 최신 값을 읽는다.
+ * */
+@Entity
+@Immutable
+@Synchronize({"member", "team_stats"})
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class TeamStats {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+
+    private long memberCount;
+    private long ageSum;
+    private Integer minAge;     //회원이 없으면 null
+    private Integer maxAge;
+
+}
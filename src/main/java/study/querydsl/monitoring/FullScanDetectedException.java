@@ -0,0 +1,10 @@
+package study.querydsl.monitoring;
+
+import java.util.List;
+
+public class FullScanDetectedException extends IllegalStateException {
+
+    public FullScanDetectedException(List<String> tables, String plan) {
+        super("full scan 의심 : " + tables + " 을 인덱스 없이 읽습니다. 조건 컬럼의 인덱스를 검토하세요.\n" + plan);
+    }
+}
@@ -0,0 +1,125 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * where 조건이 있는 select 가 감시 대상 테이블을 full scan 하는지 EXPLAIN 으로 확인한다.
+ * - 모양(shape) 당 처음 한 번만 같은 커넥션, 같은 파라미터로 EXPLAIN 을 실행하므로 이후 실행에는 비용이 없다.
+ *   확인한 shape 는 maxShapes 개까지만 기억하고, 넘으면 새 shape 는 검사하지 않고 querydsl.full_scan.skipped 만 올린다.
+ * - where 가 없는 select (export, 스냅샷 등) 는 원래 전체를 읽는 쿼리이므로 보지 않는다.
+ * - plan 형식은 H2 기준 (PUBLIC.MEMBER.tableScan). 다른 DB 에서는 EXPLAIN 이 실패하거나 아무것도 찾지 못한다.
+ * - querydsl.full_scan{table} metric 을 남기고, failFast 이면 쿼리를 실행하기 전에 예외를 던진다. (테스트용)
+ * */
+@Slf4j
+public class FullScanGuard {
+
+    private static final Pattern TABLE_SCAN = Pattern.compile("(\\w+)\\.tableScan", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE = Pattern.compile("\\swhere\\s", Pattern.CASE_INSENSITIVE);
+
+    private final MeterRegistry meterRegistry;
+    private final Set<String> tables;
+    private final boolean failFast;
+    private final int maxShapes;
+    private final Set<String> checkedShapes = ConcurrentHashMap.newKeySet();
+    private final Counter skipped;
+
+    public FullScanGuard(MeterRegistry meterRegistry, Set<String> tables, boolean failFast, int maxShapes) {
+        this.meterRegistry = meterRegistry;
+        this.tables = Collections.unmodifiableSet(lowerCase(tables));
+        this.failFast = failFast;
+        this.maxShapes = maxShapes;
+        this.skipped = meterRegistry.counter("querydsl.full_scan.skipped");
+    }
+
+    void check(Connection connection, String sql, Object[] params) {
+        if (sql == null) {
+            return;
+        }
+        String trimmed = sql.trim();
+        if (!trimmed.regionMatches(true, 0, "select", 0, "select".length()) || !WHERE.matcher(trimmed).find()) {
+            return;
+        }
+        String shape = QueryCountScope.shapeOf(trimmed);
+        if (checkedShapes.contains(shape)) {
+            return;
+        }
+        if (checkedShapes.size() >= maxShapes) {
+            skipped.increment();
+            return;
+        }
+        if (!checkedShapes.add(shape)) {
+            return;
+        }
+
+        String plan = explain(connection, trimmed, params);
+        if (plan == null) {
+            return;
+        }
+
+        List<String> scanned = scannedTables(plan);
+        if (scanned.isEmpty()) {
+            return;
+        }
+
+        for (String table : scanned) {
+            meterRegistry.counter("querydsl.full_scan", "table", table).increment();
+        }
+        log.warn("full scan 의심 {} {}", scanned, plan);
+        if (failFast) {
+            throw new FullScanDetectedException(scanned, plan);
+        }
+    }
+
+    List<String> scannedTables(String plan) {
+        List<String> scanned = new ArrayList<>();
+        Matcher matcher = TABLE_SCAN.matcher(plan);
+        while (matcher.find()) {
+            String table = matcher.group(1).toLowerCase(Locale.ROOT);
+            if (tables.contains(table) && !scanned.contains(table)) {
+                scanned.add(table);
+            }
+        }
+        return scanned;
+    }
+
+    private static String explain(Connection connection, String sql, Object[] params) {
+        try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+            for (int i = 0; params != null && i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            log.debug("explain 실패 : {}", sql, e);
+            return null;
+        }
+    }
+
+    private static Set<String> lowerCase(Set<String> values) {
+        Set<String> result = ConcurrentHashMap.newKeySet();
+        for (String value : values) {
+            result.add(value.toLowerCase(Locale.ROOT));
+        }
+        return result;
+    }
+}
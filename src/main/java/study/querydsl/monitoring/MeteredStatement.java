@@ -0,0 +1,363 @@
+package study.querydsl.monitoring;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * execute* 의 실행 시간과 바인딩 파라미터를 QueryMetrics (와 FullScanGuard) 에 넘기는 Statement
+ * - 바인딩 파라미터는 배열에 참조만 담아두고, 문자열로 만드는 건 slow query 일 때만 한다.
+ * - ResultSet 을 돌려주는 실행은 MeteredResultSet 이 close 될 때 fetch 시간, 행 수와 함께 기록한다.
+ * */
+class MeteredStatement implements Statement {
+
+    private static final Object[] NO_PARAMS = new Object[0];
+
+    private final MeteredConnection connection;
+    private final Statement target;
+    private String sql;
+    private Object[] params = NO_PARAMS;
+    private int paramCount;
+    private long pendingExecuteNanos;
+    private MeteredResultSet openResultSet;
+
+    MeteredStatement(MeteredConnection connection, Statement target, String sql) {
+        this.connection = connection;
+        this.target = target;
+        this.sql = sql;
+    }
+
+    @FunctionalInterface
+    interface Execution<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * @param executedSql Statement.execute(sql) 처럼 실행할 때 넘긴 SQL. PreparedStatement 는 null
+     * */
+    final <T> T measured(String executedSql, Execution<T> execution) throws SQLException {
+        if (executedSql != null) {
+            sql = executedSql;
+        }
+        if (connection.fullScanGuard != null) {
+            connection.fullScanGuard.check(connection.target, sql, boundParams());
+        }
+        return measure(execution);
+    }
+
+    final <T> T measuredBatch(Execution<T> execution) throws SQLException {
+        return measure(execution);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T measure(Execution<T> execution) throws SQLException {
+        long start = System.nanoTime();
+        T result = execution.run();
+        long executeNanos = System.nanoTime() - start;
+
+        if (result instanceof ResultSet) {
+            return (T) wrap((ResultSet) result, executeNanos);
+        }
+        if (Boolean.TRUE.equals(result)) {
+            //execute() 가 ResultSet 을 만들었으면 getResultSet() 으로 가져간 뒤 close 될 때 기록한다.
+            pendingExecuteNanos = executeNanos;
+            return result;
+        }
+        connection.queryMetrics.record(sql, executeNanos, 0, 0, -1, boundParams());
+        return result;
+    }
+
+    final void bind(int index, Object value) {
+        if (index > params.length) {
+            params = Arrays.copyOf(params, Math.max(index, params.length * 2));
+        }
+        params[index - 1] = value;
+        paramCount = Math.max(paramCount, index);
+    }
+
+    final void clearBound() {
+        params = NO_PARAMS;
+        paramCount = 0;
+    }
+
+    private Object[] boundParams() {
+        return paramCount == 0 ? NO_PARAMS : Arrays.copyOf(params, paramCount);
+    }
+
+    private ResultSet wrap(ResultSet resultSet, long executeNanos) {
+        openResultSet = new MeteredResultSet(this, resultSet, connection.queryMetrics, sql, executeNanos, boundParams());
+        return openResultSet;
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        return measured(sql, () -> target.executeQuery(sql));
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        return measured(sql, () -> target.executeUpdate(sql));
+    }
+
+    @Override
+    public void close() throws SQLException {
+        //statement 를 닫으면 ResultSet 도 같이 닫히므로 ResultSet.close() 가 따로 호출되지 않아도 여기서 기록한다.
+        if (openResultSet != null) {
+            openResultSet.complete();
+        }
+        target.close();
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return target.getMaxFieldSize();
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) throws SQLException {
+        target.setMaxFieldSize(max);
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return target.getMaxRows();
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+        target.setMaxRows(max);
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        target.setEscapeProcessing(enable);
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return target.getQueryTimeout();
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) throws SQLException {
+        target.setQueryTimeout(seconds);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        target.cancel();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return target.getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        target.clearWarnings();
+    }
+
+    @Override
+    public void setCursorName(String name) throws SQLException {
+        target.setCursorName(name);
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        return measured(sql, () -> target.execute(sql));
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        ResultSet resultSet = target.getResultSet();
+        return resultSet != null ? wrap(resultSet, pendingExecuteNanos) : null;
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return target.getUpdateCount();
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return target.getMoreResults();
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        target.setFetchDirection(direction);
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return target.getFetchDirection();
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        target.setFetchSize(rows);
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return target.getFetchSize();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return target.getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return target.getResultSetType();
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        if (this.sql == null) {
+            this.sql = sql;
+        }
+        target.addBatch(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        target.clearBatch();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        return measuredBatch(target::executeBatch);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection;
+    }
+
+    @Override
+    public boolean getMoreResults(int current) throws SQLException {
+        return target.getMoreResults(current);
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return target.getGeneratedKeys();
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        return measured(sql, () -> target.executeUpdate(sql, autoGeneratedKeys));
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        return measured(sql, () -> target.executeUpdate(sql, columnIndexes));
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        return measured(sql, () -> target.executeUpdate(sql, columnNames));
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        return measured(sql, () -> target.execute(sql, autoGeneratedKeys));
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        return measured(sql, () -> target.execute(sql, columnIndexes));
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        return measured(sql, () -> target.execute(sql, columnNames));
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return target.getResultSetHoldability();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return target.isClosed();
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) throws SQLException {
+        target.setPoolable(poolable);
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return target.isPoolable();
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        target.closeOnCompletion();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return target.isCloseOnCompletion();
+    }
+
+    @Override
+    public long getLargeUpdateCount() throws SQLException {
+        return target.getLargeUpdateCount();
+    }
+
+    @Override
+    public void setLargeMaxRows(long max) throws SQLException {
+        target.setLargeMaxRows(max);
+    }
+
+    @Override
+    public long getLargeMaxRows() throws SQLException {
+        return target.getLargeMaxRows();
+    }
+
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        return measuredBatch(target::executeLargeBatch);
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql) throws SQLException {
+        return measured(sql, () -> target.executeLargeUpdate(sql));
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        return measured(sql, () -> target.executeLargeUpdate(sql, autoGeneratedKeys));
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        return measured(sql, () -> target.executeLargeUpdate(sql, columnIndexes));
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+        return measured(sql, () -> target.executeLargeUpdate(sql, columnNames));
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+}
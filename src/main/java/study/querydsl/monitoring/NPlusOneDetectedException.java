@@ -0,0 +1,8 @@
+package study.querydsl.monitoring;
+
+public class NPlusOneDetectedException extends IllegalStateException {
+
+    public NPlusOneDetectedException(String shape, int count) {
+        super("N+1 의심 : 같은 select 가 " + count + " 번 실행되었습니다. fetch join 이나 batch fetch 를 검토하세요.\n" + shape);
+    }
+}
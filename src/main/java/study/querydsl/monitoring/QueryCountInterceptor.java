@@ -0,0 +1,64 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 요청 단위로 실행된 SQL 수와 N+1 의심 건수를 endpoint(uri 패턴) 별 metric 으로 남긴다.
+ * - querydsl.request.statements : 요청당 SQL 수
+ * - querydsl.n_plus_one : N+1 로 판단된 select 모양 수
+ * */
+@Slf4j
+@RequiredArgsConstructor
+public class QueryCountInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String SCOPE_ATTRIBUTE = QueryCountInterceptor.class.getName() + ".scope";
+
+    private final MeterRegistry meterRegistry;
+    private final int threshold;
+    private final boolean failFast;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(SCOPE_ATTRIBUTE, QueryCountScope.open(threshold, failFast));
+        return true;
+    }
+
+    //비동기 요청은 스레드가 바뀌므로 여기서 한 번 닫고, async dispatch 때 다시 연다.
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        complete(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        complete(request);
+    }
+
+    private void complete(HttpServletRequest request) {
+        QueryCountScope scope = (QueryCountScope) request.getAttribute(SCOPE_ATTRIBUTE);
+        if (scope == null) {
+            return;
+        }
+        request.removeAttribute(SCOPE_ATTRIBUTE);
+        scope.close();
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+
+        meterRegistry.summary("querydsl.request.statements", "uri", uri).record(scope.getStatementCount());
+
+        if (scope.hasNPlusOne()) {
+            meterRegistry.counter("querydsl.n_plus_one", "uri", uri).increment(scope.getNPlusOneShapes().size());
+            for (String shape : scope.getNPlusOneShapes()) {
+                log.warn("N+1 의심 [{} {}] {}", request.getMethod(), uri, shape);
+            }
+        }
+    }
+}
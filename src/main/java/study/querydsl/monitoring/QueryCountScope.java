@@ -0,0 +1,102 @@
+package study.querydsl.monitoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 현재 스레드에서 실행된 SQL 을 세는 범위 (요청 하나, 테스트 하나 등)
+ * - 같은 모양(shape)의 select 가 threshold 번 이상 실행되면 N+1 로 판단한다.
+ * - failFast 이면 N+1 이 감지되는 순간 예외를 던진다. (테스트용)
+ * - scope 안에서 다시 연 scope 는 그 구간만 따로 세고, 바깥 scope 에도 같이 기록된다.
+ * */
+public final class QueryCountScope implements AutoCloseable {
+
+    private static final ThreadLocal<QueryCountScope> CURRENT = new ThreadLocal<>();
+
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final int threshold;
+    private final boolean failFast;
+    private final QueryCountScope parent;
+    private final Map<String, Integer> selectCounts = new LinkedHashMap<>();
+    private final List<String> nPlusOneShapes = new ArrayList<>();
+    private int statementCount;
+
+    private QueryCountScope(int threshold, boolean failFast, QueryCountScope parent) {
+        if (threshold < 2) {
+            throw new IllegalArgumentException("threshold 는 2 이상이어야 합니다: " + threshold);
+        }
+        this.threshold = threshold;
+        this.failFast = failFast;
+        this.parent = parent;
+    }
+
+    public static QueryCountScope open(int threshold, boolean failFast) {
+        QueryCountScope scope = new QueryCountScope(threshold, failFast, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return 열려 있는 scope 가 없으면 null
+     * */
+    public static QueryCountScope current() {
+        return CURRENT.get();
+    }
+
+    void record(String sql) {
+        if (parent != null) {
+            parent.record(sql);
+        }
+        statementCount++;
+
+        String trimmed = sql.trim();
+        if (!trimmed.regionMatches(true, 0, "select", 0, "select".length())) {
+            return;
+        }
+
+        String shape = shapeOf(trimmed);
+        int count = selectCounts.merge(shape, 1, Integer::sum);
+
+        if (count == threshold) {
+            nPlusOneShapes.add(shape);
+            if (failFast) {
+                throw new NPlusOneDetectedException(shape, count);
+            }
+        }
+    }
+
+    //in (?, ?, ?) 처럼 파라미터 개수만 다른 쿼리는 같은 모양으로 본다.
+    static String shapeOf(String sql) {
+        String collapsed = WHITESPACE.matcher(sql).replaceAll(" ");
+        return IN_LIST.matcher(collapsed).replaceAll("(?)");
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public List<String> getNPlusOneShapes() {
+        return Collections.unmodifiableList(nPlusOneShapes);
+    }
+
+    public boolean hasNPlusOne() {
+        return !nPlusOneShapes.isEmpty();
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            if (parent != null) {
+                CURRENT.set(parent);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.monitoring;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * hibernate 가 실행하는 모든 SQL 을 현재 스레드의 QueryCountScope 에 기록한다. SQL 은 바꾸지 않는다.
+ * */
+public class QueryCountStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        QueryCountScope scope = QueryCountScope.current();
+        if (scope != null) {
+            scope.record(sql);
+        }
+        return sql;
+    }
+}
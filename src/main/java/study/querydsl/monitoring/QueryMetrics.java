@@ -0,0 +1,192 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SQL 모양(shape) 별 실행 metric 과 slow query 로그
+ * - querydsl.query.execution : execute 호출 시간 (DB 가 실행하고 첫 응답을 줄 때까지)
+ * - querydsl.query.fetch : ResultSet.next() 안에서 보낸 시간 (JDBC 가 행을 가져오는 시간)
+ * - querydsl.query.hydration : ResultSet 이 열려 있던 시간 - fetch (hibernate 가 컬럼을 읽어서 엔티티/DTO 를 만드는 시간)
+ * - querydsl.query.rows : select 가 돌려준 행 수
+ * - tag 는 shape(정규화한 SQL 의 hash), operation, table. shape 와 SQL 의 대응은 처음 볼 때 한 번 로그로 남긴다.
+ *   shape 가 maxShapes 개를 넘으면 (동적으로 만든 SQL 등) 이후 새 shape 는 operation, table 별 shape=other 로 합쳐서 meter 수를 제한한다.
+ * - 실행 시간이 slowThreshold 이상이면 바인딩 파라미터와 함께 querydsl.slow-query 로거로 남긴다.
+ * */
+@Slf4j
+public class QueryMetrics {
+
+    private static final Logger SLOW_QUERY_LOG = LoggerFactory.getLogger("querydsl.slow-query");
+
+    private static final Pattern TABLE = Pattern.compile("\\b(?:from|into|update)\\s+([\\w.]+)", Pattern.CASE_INSENSITIVE);
+    private static final int MAX_PARAM_LENGTH = 100;
+    static final String OTHER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final long slowThresholdNanos;
+    private final boolean percentileHistogram;
+    private final int maxCachedStatements;
+    private final int maxShapes;
+    private final Map<String, Shape> statements = new ConcurrentHashMap<>();
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+    private final Map<String, Shape> others = new ConcurrentHashMap<>();
+
+    public QueryMetrics(MeterRegistry meterRegistry, Duration slowThreshold, boolean percentileHistogram,
+                        int maxCachedStatements, int maxShapes) {
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.percentileHistogram = percentileHistogram;
+        this.maxCachedStatements = maxCachedStatements;
+        this.maxShapes = maxShapes;
+    }
+
+    /**
+     * @param rows select 가 아니면 -1
+     * */
+    void record(String sql, long executeNanos, long fetchNanos, long hydrationNanos, long rows, Object[] params) {
+        if (sql == null) {
+            return;
+        }
+
+        Shape shape = shapeOf(sql);
+        shape.execution.record(executeNanos, TimeUnit.NANOSECONDS);
+        if (rows >= 0) {
+            shape.fetch.record(fetchNanos, TimeUnit.NANOSECONDS);
+            shape.hydration.record(hydrationNanos, TimeUnit.NANOSECONDS);
+            shape.rows.record(rows);
+        }
+
+        long totalNanos = executeNanos + fetchNanos + hydrationNanos;
+        if (totalNanos >= slowThresholdNanos && SLOW_QUERY_LOG.isWarnEnabled()) {
+            SLOW_QUERY_LOG.warn(formatSlowQuery(shape, sql, totalNanos, executeNanos, fetchNanos, hydrationNanos, rows, params));
+        }
+    }
+
+    //hibernate 가 만드는 SQL 문자열은 쿼리마다 같으므로 원문으로 먼저 찾고, in 절 길이만 다른 변형이 많아지면 캐시하지 않는다.
+    private Shape shapeOf(String sql) {
+        Shape shape = statements.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+
+        String normalized = QueryCountScope.shapeOf(sql.trim());
+        String id = String.format("%08x", normalized.hashCode());
+        shape = shapes.get(id);
+        if (shape == null) {
+            shape = shapes.size() < maxShapes ? shapes.computeIfAbsent(id, key -> newShape(key, normalized)) : otherShape(normalized);
+        }
+
+        if (statements.size() < maxCachedStatements) {
+            statements.put(sql, shape);
+        }
+        return shape;
+    }
+
+    private Shape newShape(String id, String normalized) {
+        Shape created = new Shape(id, normalized);
+        log.info("query shape [{}] operation={} table={} sql={}", id, created.operation, created.table, normalized);
+        return created;
+    }
+
+    //operation, table 은 SQL 종류와 테이블 수만큼만 생긴다.
+    private Shape otherShape(String normalized) {
+        return others.computeIfAbsent(operationOf(normalized) + " " + tableOf(normalized), key -> {
+            log.warn("query shape 가 {} 개를 넘어서 {} 의 새 shape 는 shape={} 로 기록합니다.", maxShapes, key, OTHER);
+            return new Shape(OTHER, normalized);
+        });
+    }
+
+    private static String operationOf(String normalizedSql) {
+        int space = normalizedSql.indexOf(' ');
+        return (space > 0 ? normalizedSql.substring(0, space) : normalizedSql).toLowerCase(Locale.ROOT);
+    }
+
+    private static String tableOf(String normalizedSql) {
+        Matcher matcher = TABLE.matcher(normalizedSql);
+        return matcher.find() ? matcher.group(1).toLowerCase(Locale.ROOT) : "none";
+    }
+
+    static String formatSlowQuery(Shape shape, String sql, long totalNanos, long executeNanos, long fetchNanos,
+                                  long hydrationNanos, long rows, Object[] params) {
+        StringBuilder sb = new StringBuilder(256)
+                .append("slow_query shape=").append(shape.id)
+                .append(" operation=").append(shape.operation)
+                .append(" table=").append(shape.table)
+                .append(String.format(Locale.ROOT, " total_ms=%.2f execute_ms=%.2f fetch_ms=%.2f hydration_ms=%.2f",
+                        millis(totalNanos), millis(executeNanos), millis(fetchNanos), millis(hydrationNanos)));
+        if (rows >= 0) {
+            sb.append(" rows=").append(rows);
+        }
+        sb.append(" params=[");
+        for (int i = 0; params != null && i < params.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(formatParam(params[i]));
+        }
+        return sb.append("] sql=").append(QueryCountScope.shapeOf(sql.trim())).toString();
+    }
+
+    private static String formatParam(Object param) {
+        if (param == null) {
+            return "null";
+        }
+        String value = param.toString();
+        if (value.length() > MAX_PARAM_LENGTH) {
+            value = value.substring(0, MAX_PARAM_LENGTH) + "...";
+        }
+        return param instanceof CharSequence ? "'" + value + "'" : value;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    final class Shape {
+
+        private final String id;
+        private final String operation;
+        private final String table;
+        private final Timer execution;
+        private final Timer fetch;
+        private final Timer hydration;
+        private final DistributionSummary rows;
+
+        Shape(String id, String normalizedSql) {
+            this.id = id;
+            this.operation = operationOf(normalizedSql);
+            this.table = tableOf(normalizedSql);
+
+            this.execution = timer("querydsl.query.execution");
+            this.fetch = timer("querydsl.query.fetch");
+            this.hydration = timer("querydsl.query.hydration");
+            this.rows = DistributionSummary.builder("querydsl.query.rows")
+                    .baseUnit("rows")
+                    .tags("shape", id, "operation", operation, "table", table)
+                    .register(meterRegistry);
+        }
+
+        private Timer timer(String name) {
+            return Timer.builder(name)
+                    .tags("shape", id, "operation", operation, "table", table)
+                    .publishPercentileHistogram(percentileHistogram)
+                    .register(meterRegistry);
+        }
+
+        String getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package study.querydsl.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * JDBC 호출을 가로채서 QueryMetrics 에 기록하는 DataSource
+ * - hibernate, JPAQueryFactory, JdbcTemplate 어느 쪽에서 실행하든 같은 기준으로 측정된다.
+ * - Connection, Statement, ResultSet 은 직접 위임하는 wrapper (MeteredConnection 등) 로 감싼다.
+ *   측정하는 건 execute*, ResultSet.next(), close() 와 파라미터 바인딩뿐이고 나머지 호출 (getXxx 등) 은 그대로 넘긴다.
+ * - 감싼 DataSource (HikariDataSource 등) 의 close 를 대신 받아서 넘긴다. (bean 의 destroy method 가 이 클래스에서 호출된다.)
+ * */
+public class QueryMetricsDataSource extends DelegatingDataSource implements Closeable {
+
+    private final QueryMetrics queryMetrics;
+    private final FullScanGuard fullScanGuard;
+
+    /**
+     * @param fullScanGuard null 이면 full scan 검사를 하지 않는다.
+     * */
+    public QueryMetricsDataSource(DataSource targetDataSource, QueryMetrics queryMetrics, FullScanGuard fullScanGuard) {
+        super(targetDataSource);
+        this.queryMetrics = queryMetrics;
+        this.fullScanGuard = fullScanGuard;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new MeteredConnection(obtainTargetDataSource().getConnection(), queryMetrics, fullScanGuard);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return new MeteredConnection(obtainTargetDataSource().getConnection(username, password), queryMetrics, fullScanGuard);
+    }
+
+    @Override
+    public void close() throws IOException {
+        DataSource target = getTargetDataSource();
+        if (target instanceof Closeable) {
+            ((Closeable) target).close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package study.querydsl.partition;
+
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+/**
+ * Member 의 insert/update/delete 를 flush 될 때 PartitionedMemberStore 에 넘긴다.
+ * - 커밋 후가 아니라 그 트랜잭션 안에서 반영되므로 partition 테이블은 member 테이블과 같이 커밋/롤백된다.
+ * - team 이 초기화되지 않은 proxy 여도 id 는 proxy 에서 꺼내므로 select 가 나가지 않는다.
+ * */
+public class PartitionedMemberListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient PartitionedMemberStore partitionedMemberStore;
+
+    public PartitionedMemberListener(PartitionedMemberStore partitionedMemberStore) {
+        this.partitionedMemberStore = partitionedMemberStore;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Member inserted = (Member) event.getEntity();
+            partitionedMemberStore.put(event.getSession(), inserted.getId(), teamId(inserted.getTeam()),
+                    inserted.getUsername(), inserted.getAge(), true);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Member updated = (Member) event.getEntity();
+            partitionedMemberStore.put(event.getSession(), updated.getId(), teamId(updated.getTeam()),
+                    updated.getUsername(), updated.getAge(), false);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            partitionedMemberStore.remove(event.getSession(), (Long) event.getId());
+        }
+    }
+
+    private static Long teamId(Team team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team.getId();
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
@@ -0,0 +1,371 @@
+package study.querydsl.partition;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+/**
+ * team_id 로 나눈 회원 테이블 (member_part_0 ~ member_part_{n-1}) 과 partition pruning 검색
+ * - H2 는 partitioned table 이 없고 Member 엔티티는 테이블 하나에 매핑되므로, member 테이블은 그대로 두고
+ *   팀 단위 조회용으로 TeamPartitioning 에 따라 나눈 테이블 (sharded tables) 을 따로 유지한다.
+ * - 시작할 때 member 테이블에서 다시 만들고, 이후 Member 변경은 PartitionedMemberListener 가, bulk update/delete 는
+ *   MemberBulkService 가 member 테이블을 바꾼 그 트랜잭션 안에서 넘겨준다. 변경은 session 별로 member_id 마다 마지막 상태만
+ *   모아 두었다가 CHUNK 건이 차거나 커밋 직전 (BeforeTransactionCompletionProcess) 에 같은 connection 으로 반영하므로,
+ *   member 테이블과 같이 커밋되고 같이 롤백된다.
+ * - MemberSearchRepository.search 는 팀 이름이 있으면 (쓰기 트랜잭션 밖에서) 이 search 로 넘어온다.
+ *   그 팀들이 있는 partition 만 읽는다. 팀 조건이 없으면 전체 partition 을 union all 로 읽는다.
+ * - partition 안에는 PK 말고 인덱스를 두지 않는다. (pruning 의 효과만 보도록, 쓰기 비용을 늘리지 않도록)
+ * - querydsl.partition.scanned{pruned} : 쿼리 하나가 읽은 partition 수
+ * */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "querydsl.partitioning", name = "enabled", havingValue = "true")
+public class PartitionedMemberStore implements SmartInitializingSingleton {
+
+    private static final int CHUNK = 1000;
+
+    private final EntityManager em;
+    private final JPAQueryFactory jpaQueryFactory;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTransaction;
+    private final TeamPartitioning partitioning;
+    private final int fetchSize;
+    private final Map<SessionImplementor, Map<Long, Change>> changes = new ConcurrentHashMap<>();
+    private final DistributionSummary prunedScans;
+    private final DistributionSummary fullScans;
+
+    public PartitionedMemberStore(EntityManager em,
+                                  JPAQueryFactory jpaQueryFactory,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${querydsl.partitioning.strategy:HASH}") TeamPartitioning.Strategy strategy,
+                                  @Value("${querydsl.partitioning.partitions:16}") int partitions,
+                                  @Value("${querydsl.partitioning.range-width:8}") long rangeWidth,
+                                  @Value("${querydsl.export.fetch-size:1000}") int fetchSize) {
+        this.em = em;
+        this.jpaQueryFactory = jpaQueryFactory;
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.partitioning = new TeamPartitioning(strategy, partitions, rangeWidth);
+        this.fetchSize = fetchSize;
+
+        this.prunedScans = scanned(meterRegistry, true);
+        this.fullScans = scanned(meterRegistry, false);
+    }
+
+    private static DistributionSummary scanned(MeterRegistry meterRegistry, boolean pruned) {
+        return DistributionSummary.builder("querydsl.partition.scanned")
+                .baseUnit("partitions")
+                .tag("pruned", String.valueOf(pruned))
+                .register(meterRegistry);
+    }
+
+    //member 테이블이 만들어지고 (ddl 포함) 다른 bean 이 다 준비된 뒤에 만든다.
+    @Override
+    public void afterSingletonsInstantiated() {
+        createTables();
+        rebuild();
+    }
+
+    public TeamPartitioning getPartitioning() {
+        return partitioning;
+    }
+
+    /**
+     * MemberSearchRepository.search 와 같은 결과 (member_id 순). 팀 이름이 있으면 그 팀이 있는 partition 만 읽는다.
+     * */
+    public List<MemberDto> search(MemberSearchCondition condition) {
+        if (condition.getTeamName() == null) {
+            return scan(allPartitions(), null, condition, fullScans);
+        }
+        List<Long> teamIds = teamIds(condition.getTeamName());
+        if (teamIds.isEmpty()) {
+            prunedScans.record(0);
+            return new ArrayList<>();
+        }
+        return scan(partitioning.partitionsOf(teamIds), teamIds, condition, prunedScans);
+    }
+
+    /**
+     * pruning 없이 모든 partition 을 읽는다. (팀을 모를 때와 같은 비용, 비교용)
+     * */
+    public List<MemberDto> scanAll(MemberSearchCondition condition) {
+        List<Long> teamIds = condition.getTeamName() != null ? teamIds(condition.getTeamName()) : null;
+        if (teamIds != null && teamIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return scan(allPartitions(), teamIds, condition, fullScans);
+    }
+
+    /**
+     * member 테이블에서 전부 다시 만든다. 만드는 동안 커밋된 변경과 겹치지 않도록 쓰기가 없을 때 (시작할 때) 호출한다.
+     * */
+    public void rebuild() {
+        Long rows = writeTransaction.execute(status -> {
+            for (int partition = 0; partition < partitioning.getPartitions(); partition++) {
+                jdbcTemplate.update("delete from " + partitioning.tableName(partition));
+            }
+            return copyAll();
+        });
+        log.info("member partitions {} rebuilt from database: {} rows", partitioning, rows);
+    }
+
+    /**
+     * bulk update/delete 뒤에 그 트랜잭션 안에서 호출. member 테이블에서 다시 읽어서 반영한다. (지워졌으면 지운다.)
+     * */
+    public void reload(Collection<Long> memberIds) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("partition 반영은 member 를 바꾼 트랜잭션 안에서 호출해야 합니다.");
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+
+        List<Long> ids = new ArrayList<>(memberIds);
+        for (int from = 0; from < ids.size(); from += CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + CHUNK, ids.size()));
+            List<Tuple> rows = jpaQueryFactory
+                    .select(member.id, member.team.id, member.username, member.age)
+                    .from(member)
+                    .where(member.id.in(chunk))
+                    .fetch();
+
+            Map<Long, Change> loaded = new HashMap<>();
+            for (Tuple row : rows) {
+                loaded.put(row.get(member.id), Change.put(row.get(member.team.id), row.get(member.username), row.get(member.age), false));
+            }
+            for (Long id : chunk) {
+                enqueue(session, id, loaded.getOrDefault(id, Change.REMOVE));
+            }
+        }
+    }
+
+    //PartitionedMemberListener (flush 중, 같은 트랜잭션) 에서 호출
+    void put(SessionImplementor session, long memberId, Long teamId, String username, int age, boolean inserted) {
+        enqueue(session, memberId, Change.put(teamId, username, age, inserted));
+    }
+
+    void remove(SessionImplementor session, long memberId) {
+        enqueue(session, memberId, Change.REMOVE);
+    }
+
+    //session 은 한 스레드에서만 쓰이므로 session 별 변경 목록은 동기화하지 않는다.
+    private void enqueue(SessionImplementor session, long memberId, Change change) {
+        Map<Long, Change> buffer = changes.computeIfAbsent(session, key -> {
+            key.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) this::write);
+            key.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, completed) -> changes.remove(key));
+            return new LinkedHashMap<>();
+        });
+        //이번에 새로 insert 된 회원은 아직 partition 에 없으므로 지우지 않고 넣기만 한다.
+        Change previous = buffer.get(memberId);
+        buffer.put(memberId, previous != null && previous.inserted ? change.asInserted() : change);
+        if (buffer.size() >= CHUNK) {
+            write(session);
+        }
+    }
+
+    private void write(SessionImplementor session) {
+        Map<Long, Change> buffer = changes.get(session);
+        if (buffer == null || buffer.isEmpty()) {
+            return;
+        }
+        Map<Long, Change> batch = new LinkedHashMap<>(buffer);
+        buffer.clear();
+        session.doWork(connection -> apply(new JdbcTemplate(new SingleConnectionDataSource(connection, true)), batch));
+    }
+
+    private List<MemberDto> scan(Collection<Integer> partitions, List<Long> teamIds, MemberSearchCondition condition,
+                                 DistributionSummary scanned) {
+        scanned.record(partitions.size());
+
+        StringBuilder where = new StringBuilder(" where 1 = 1");
+        List<Object> whereArgs = new ArrayList<>();
+        if (teamIds != null) {
+            where.append(" and team_id in (").append(placeholders(teamIds.size())).append(')');
+            whereArgs.addAll(teamIds);
+        }
+        if (condition.getUsername() != null) {
+            where.append(" and username = ?");
+            whereArgs.add(condition.getUsername());
+        }
+        if (condition.getAge() != null) {
+            where.append(" and age = ?");
+            whereArgs.add(condition.getAge());
+        }
+        if (condition.getAgeGoe() != null) {
+            where.append(" and age >= ?");
+            whereArgs.add(condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            where.append(" and age <= ?");
+            whereArgs.add(condition.getAgeLoe());
+        }
+
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        for (int partition : partitions) {
+            if (sql.length() > 0) {
+                sql.append(" union all ");
+            }
+            sql.append("select member_id, username, age from ").append(partitioning.tableName(partition)).append(where);
+            args.addAll(whereArgs);
+        }
+        sql.append(" order by member_id");
+
+        return jdbcTemplate.query(sql.toString(),
+                (rs, rowNum) -> new MemberDto(rs.getString("username"), rs.getInt("age")),
+                args.toArray());
+    }
+
+    private List<Long> teamIds(String teamName) {
+        return jpaQueryFactory
+                .select(team.id)
+                .from(team)
+                .where(team.name.eq(teamName))
+                .fetch();
+    }
+
+    private SortedSet<Integer> allPartitions() {
+        return IntStream.range(0, partitioning.getPartitions())
+                .boxed()
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private void createTables() {
+        for (int partition = 0; partition < partitioning.getPartitions(); partition++) {
+            String table = partitioning.tableName(partition);
+            jdbcTemplate.execute("drop table if exists " + table);
+            jdbcTemplate.execute("create table " + table + " (member_id bigint not null primary key, team_id bigint, "
+                    + "username varchar(255), age integer not null)");
+        }
+    }
+
+    //member 테이블을 cursor 로 읽으면서 partition 별로 CHUNK 건씩 모아서 batch insert
+    private long copyAll() {
+        Map<Integer, List<Object[]>> buffers = new HashMap<>();
+        long rows = 0;
+        try (CloseableIterator<Tuple> iterator = jpaQueryFactory
+                .select(member.id, member.team.id, member.username, member.age)
+                .from(member)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate()) {
+
+            while (iterator.hasNext()) {
+                Tuple row = iterator.next();
+                Long teamId = row.get(member.team.id);
+                int partition = partitioning.partitionOf(teamId);
+                List<Object[]> buffer = buffers.computeIfAbsent(partition, key -> new ArrayList<>(CHUNK));
+                buffer.add(new Object[]{row.get(member.id), teamId, row.get(member.username), row.get(member.age)});
+                if (buffer.size() == CHUNK) {
+                    insert(jdbcTemplate, partition, buffer);
+                    buffer.clear();
+                }
+                rows++;
+            }
+        }
+        buffers.forEach((partition, buffer) -> insert(jdbcTemplate, partition, buffer));
+        return rows;
+    }
+
+    //어느 partition 에 있었는지 모르므로 (팀이 바뀌었을 수 있다.) 모든 partition 에서 지우고 새 partition 에 넣는다.
+    private void apply(JdbcTemplate jdbc, Map<Long, Change> batch) {
+        List<Long> ids = new ArrayList<>();
+        batch.forEach((memberId, change) -> {
+            if (!change.inserted) {
+                ids.add(memberId);
+            }
+        });
+        for (int from = 0; from < ids.size(); from += CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + CHUNK, ids.size()));
+            String in = placeholders(chunk.size());
+            for (int partition = 0; partition < partitioning.getPartitions(); partition++) {
+                jdbc.update("delete from " + partitioning.tableName(partition) + " where member_id in (" + in + ")",
+                        chunk.toArray());
+            }
+        }
+
+        Map<Integer, List<Object[]>> inserts = new HashMap<>();
+        batch.forEach((memberId, change) -> {
+            if (!change.removed) {
+                inserts.computeIfAbsent(partitioning.partitionOf(change.teamId), key -> new ArrayList<>())
+                        .add(new Object[]{memberId, change.teamId, change.username, change.age});
+            }
+        });
+        inserts.forEach((partition, rows) -> insert(jdbc, partition, rows));
+    }
+
+    private void insert(JdbcTemplate jdbc, int partition, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate("insert into " + partitioning.tableName(partition)
+                    + " (member_id, team_id, username, age) values (?, ?, ?, ?)", rows);
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static final class Change {
+
+        private static final Change REMOVE = new Change(null, null, 0, true, false);
+
+        private final Long teamId;
+        private final String username;
+        private final int age;
+        private final boolean removed;
+        private final boolean inserted;      //partition 에 아직 없는 회원
+
+        private Change(Long teamId, String username, int age, boolean removed, boolean inserted) {
+            this.teamId = teamId;
+            this.username = username;
+            this.age = age;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        private static Change put(Long teamId, String username, int age, boolean inserted) {
+            return new Change(teamId, username, age, false, inserted);
+        }
+
+        private Change asInserted() {
+            return new Change(teamId, username, age, removed, true);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package study.querydsl.partition;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * team_id -> partition 번호
+ * - HASH : team_id 의 hash 를 partitions 로 나눈 나머지. 팀이 고르게 퍼진다.
+ * - RANGE : team_id 를 rangeWidth 개씩 끊는다. (1 ~ rangeWidth 는 0 번, ...) 마지막 partition 은 끝이 열려 있다.
+ *   id 가 sequence 로 늘어나므로 새 팀은 뒤쪽 partition 에 모인다.
+ * - 팀이 없는 회원 (team_id null) 은 0 번 partition 에 둔다.
+ * */
+public final class TeamPartitioning {
+
+    public enum Strategy {
+        HASH, RANGE
+    }
+
+    private final Strategy strategy;
+    private final int partitions;
+    private final long rangeWidth;
+
+    public TeamPartitioning(Strategy strategy, int partitions, long rangeWidth) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions 는 1 이상이어야 합니다: " + partitions);
+        }
+        if (strategy == Strategy.RANGE && rangeWidth < 1) {
+            throw new IllegalArgumentException("range-width 는 1 이상이어야 합니다: " + rangeWidth);
+        }
+        this.strategy = strategy;
+        this.partitions = partitions;
+        this.rangeWidth = rangeWidth;
+    }
+
+    public int partitionOf(Long teamId) {
+        if (teamId == null) {
+            return 0;
+        }
+        if (strategy == Strategy.RANGE) {
+            return (int) Math.min(Math.max(teamId - 1, 0) / rangeWidth, partitions - 1);
+        }
+        return Math.floorMod(mix(teamId), partitions);
+    }
+
+    /**
+     * 이 팀들의 회원이 있는 partition 번호 (오름차순, 중복 없음)
+     * */
+    public SortedSet<Integer> partitionsOf(Collection<Long> teamIds) {
+        SortedSet<Integer> result = new TreeSet<>();
+        for (Long teamId : teamIds) {
+            result.add(partitionOf(teamId));
+        }
+        return result;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public String tableName(int partition) {
+        return "member_part_" + partition;
+    }
+
+    //연속된 id 가 같은 partition 에 몰리지 않도록 섞는다. (murmur3 fmix64)
+    private static int mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+
+    @Override
+    public String toString() {
+        return strategy.name().toLowerCase(Locale.ROOT) + "(" + partitions + ")";
+    }
+}
@@ -0,0 +1,11 @@
+package study.querydsl.repository;
+
+/**
+ * offset 페이징의 total 을 구하는 방법
+ * */
+public enum CountMode {
+
+    EXACT,          // count(*) 전체
+    CAPPED          // 최대 count-cap 건까지만 센다. 큰 테이블에서 "10000+ 건" 처럼 보여줄 때
+
+}
@@ -0,0 +1,16 @@
+package study.querydsl.repository;
+
+/**
+ * 조회할 엔티티 그래프 (FetchProfiles)
+ * */
+public enum FetchProfile {
+
+    /** member 만. team 은 proxy 로 남는다. */
+    MEMBER_ONLY,
+
+    /** member + team (to-one fetch join, 쿼리 1번) */
+    MEMBER_WITH_TEAM,
+
+    /** team + team.members (팀 쿼리 + members in 쿼리, 쿼리 2번) */
+    TEAM_WITH_MEMBERS
+}
@@ -0,0 +1,268 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.jpa.JPAProvider;
+import com.querydsl.jpa.JPQLQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Hibernate;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.QMember;
+import study.querydsl.entities.QTeam;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.QueryCountScope;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+/**
+ * 쿼리에 FetchProfile 을 적용해서 실행한다. selectFrom(member), selectFrom(team) 으로 만든 어떤 쿼리에든 쓸 수 있다.
+ * - MEMBER_ONLY : 쿼리에 붙은 fetch join 을 뺀다. (join 자체는 where 에서 쓸 수 있으므로 남긴다.)
+ * - MEMBER_WITH_TEAM : to-one 이므로 fetch join 한다. 쿼리에 이미 on 조건 없는 member.team join 이 있으면 그 join 에
+ *   fetch 만 붙이고 (inner join 유지) 없으면 left join fetch 를 붙인다. 행 수가 그대로라 DB 페이징이 된다.
+ *   on 조건이 있는 join 은 fetch join 이 될 수 없으므로 (hibernate 가 with-clause 를 거부한다) 필터로 그대로 두고
+ *   별도의 left join fetch 를 붙인다.
+ * - TEAM_WITH_MEMBERS : 컬렉션 fetch join 은 행이 회원 수만큼 늘어서 DB 페이징이 깨지므로,
+ *   팀 쿼리는 fetch join 없이 그대로 실행하고 읽은 팀들의 members 를 in 쿼리로 한 번에 초기화한다. (쿼리 2번)
+ * - profile 별로 실행한 쿼리 수와 읽은 엔티티 수를 querydsl.fetch.profile.queries / querydsl.fetch.profile.entities 에 남긴다.
+ * */
+@Component
+public class FetchProfiles {
+
+    static final int MAX_IN_SIZE = 1000;
+
+    private static final String TEAM_ALIAS = "profileTeam";
+
+    private final EntityManager em;
+    private final JPAQueryFactory jpaQueryFactory;
+    private final Map<FetchProfile, DistributionSummary> queries = new EnumMap<>(FetchProfile.class);
+    private final Map<FetchProfile, DistributionSummary> entities = new EnumMap<>(FetchProfile.class);
+
+    public FetchProfiles(EntityManager em, JPAQueryFactory jpaQueryFactory, MeterRegistry meterRegistry) {
+        this.em = em;
+        this.jpaQueryFactory = jpaQueryFactory;
+        for (FetchProfile profile : FetchProfile.values()) {
+            queries.put(profile, DistributionSummary.builder("querydsl.fetch.profile.queries")
+                    .baseUnit("statements")
+                    .tag("profile", profile.name())
+                    .register(meterRegistry));
+            entities.put(profile, DistributionSummary.builder("querydsl.fetch.profile.entities")
+                    .baseUnit("entities")
+                    .tag("profile", profile.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Member> fetchMembers(JPAQuery<Member> query, FetchProfile profile) {
+        if (profile == FetchProfile.TEAM_WITH_MEMBERS) {
+            throw new IllegalArgumentException(profile + " 는 team 을 조회하는 쿼리에만 쓸 수 있습니다.");
+        }
+        EntityPath<Member> root = (EntityPath<Member>) entityRoot(query, Member.class);
+
+        try (QueryCountScope scope = QueryCountScope.open(Integer.MAX_VALUE, false)) {
+            List<Member> result = apply(query, root, profile).fetch();
+            record(profile, scope, profile == FetchProfile.MEMBER_WITH_TEAM ? result.size() + teamCount(result) : result.size());
+            return result;
+        }
+    }
+
+    public List<Team> fetchTeams(JPAQuery<Team> query, FetchProfile profile) {
+        if (profile != FetchProfile.TEAM_WITH_MEMBERS) {
+            throw new IllegalArgumentException(profile + " 는 member 를 조회하는 쿼리에만 쓸 수 있습니다.");
+        }
+        entityRoot(query, Team.class);
+        //두 쿼리가 같은 영속성 컨텍스트에서 실행되어야 두 번째 쿼리가 첫 번째 쿼리의 팀에 members 를 채운다.
+        if (EntityManagerFactoryUtils.getTransactionalEntityManager(em.getEntityManagerFactory()) == null) {
+            throw new IllegalStateException(profile + " 는 트랜잭션 (또는 open-in-view) 안에서 실행해야 합니다.");
+        }
+
+        try (QueryCountScope scope = QueryCountScope.open(Integer.MAX_VALUE, false)) {
+            List<Team> teams = withoutFetchJoins(query).fetch();
+            long loaded = teams.size() + initializeMembers(teams);
+            record(profile, scope, loaded);
+            return teams;
+        }
+    }
+
+    /**
+     * MEMBER_ONLY, MEMBER_WITH_TEAM 을 적용한 쿼리 (실행하지 않고 돌려준다. 페이징 등에 그대로 넘길 때)
+     * */
+    @SuppressWarnings("unchecked")
+    public JPAQuery<Member> apply(JPAQuery<Member> query, FetchProfile profile) {
+        if (profile == FetchProfile.TEAM_WITH_MEMBERS) {
+            throw new IllegalArgumentException(profile + " 는 쿼리만 바꿔서는 적용할 수 없습니다. fetchTeams 를 쓰세요.");
+        }
+        return apply(query, (EntityPath<Member>) entityRoot(query, Member.class), profile);
+    }
+
+    private JPAQuery<Member> apply(JPAQuery<Member> query, EntityPath<Member> root, FetchProfile profile) {
+        if (profile == FetchProfile.MEMBER_ONLY) {
+            return withoutFetchJoins(query);
+        }
+
+        QueryMetadata source = query.getMetadata();
+        List<JoinExpression> joins = source.getJoins();
+        Path<?> teamPath = new QMember(root.getMetadata()).team;
+        for (JoinExpression join : joins) {
+            if (teamPath.equals(association(join)) && join.getCondition() == null) {
+                return copy(query, join, null);
+            }
+        }
+        return copy(query, null, new QTeam(TEAM_ALIAS));
+    }
+
+    //조회 대상이 from 절의 엔티티 그 자체여야 fetch join 을 붙일 수 있다.
+    private static EntityPath<?> entityRoot(JPAQuery<?> query, Class<?> type) {
+        QueryMetadata metadata = query.getMetadata();
+        Expression<?> projection = metadata.getProjection();
+        if (metadata.getJoins().isEmpty()) {
+            throw new IllegalArgumentException("from 절이 없는 쿼리입니다.");
+        }
+        Expression<?> from = metadata.getJoins().get(0).getTarget();
+        if (!(from instanceof EntityPath) || from.getType() != type || !from.equals(projection)) {
+            throw new IllegalArgumentException("fetch profile 은 selectFrom(" + type.getSimpleName()
+                    + ") 처럼 엔티티를 조회하는 쿼리에만 쓸 수 있습니다: " + query);
+        }
+        return (EntityPath<?>) from;
+    }
+
+    private <T> JPAQuery<T> withoutFetchJoins(JPAQuery<T> query) {
+        boolean fetchJoined = query.getMetadata().getJoins().stream()
+                .anyMatch(join -> join.hasFlag(JPQLQueryMixin.FETCH));
+        return fetchJoined ? copy(query, null, null) : query;
+    }
+
+    /**
+     * fetch join 을 모두 뺀 metadata 복사본을 만든다.
+     * @param fetchJoin 이 join 에만 fetch 를 붙인다.
+     * @param addTeam null 이 아니면 member.team 을 이 alias 로 left join fetch 한다.
+     * */
+    @SuppressWarnings("unchecked")
+    private <T> JPAQuery<T> copy(JPAQuery<T> query, JoinExpression fetchJoin, QTeam addTeam) {
+        QueryMetadata source = query.getMetadata();
+        QueryMetadata metadata = new DefaultQueryMetadata();
+
+        for (JoinExpression join : source.getJoins()) {
+            metadata.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                metadata.addJoinCondition(join.getCondition());
+            }
+            for (JoinFlag flag : join.getFlags()) {
+                if (!flag.equals(JPQLQueryMixin.FETCH)) {
+                    metadata.addJoinFlag(flag);
+                }
+            }
+            if (join == fetchJoin) {
+                metadata.addJoinFlag(JPQLQueryMixin.FETCH);
+            }
+        }
+        if (addTeam != null) {
+            EntityPath<?> root = (EntityPath<?>) source.getJoins().get(0).getTarget();
+            QTeam association = new QMember(root.getMetadata()).team;
+            metadata.addJoin(JoinType.LEFTJOIN, ExpressionUtils.as(association, addTeam));
+            metadata.addJoinFlag(JPQLQueryMixin.FETCH);
+        }
+
+        if (source.getWhere() != null) {
+            metadata.addWhere(source.getWhere());
+        }
+        for (Expression<?> groupBy : source.getGroupBy()) {
+            metadata.addGroupBy(groupBy);
+        }
+        if (source.getHaving() != null) {
+            metadata.addHaving(source.getHaving());
+        }
+        for (OrderSpecifier<?> orderBy : source.getOrderBy()) {
+            metadata.addOrderBy(orderBy);
+        }
+        for (QueryFlag flag : source.getFlags()) {
+            metadata.addFlag(flag);
+        }
+        for (Map.Entry<ParamExpression<?>, Object> param : source.getParams().entrySet()) {
+            metadata.setParam((ParamExpression<Object>) param.getKey(), param.getValue());
+        }
+        metadata.setModifiers(source.getModifiers());
+        metadata.setDistinct(source.isDistinct());
+        metadata.setUnique(source.isUnique());
+        metadata.setProjection(source.getProjection());
+
+        return new JPAQuery<>(em, JPAProvider.getTemplates(em), metadata);
+    }
+
+    //leftJoin(member.team, team) -> member.team
+    private static Expression<?> association(JoinExpression join) {
+        Expression<?> target = join.getTarget();
+        if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+            return ((Operation<?>) target).getArg(0);
+        }
+        return null;
+    }
+
+    //읽은 팀들의 members 를 초기화하고 읽은 회원 수를 돌려준다. 이미 초기화된 (2차 캐시 등) 팀은 건너뛴다.
+    private long initializeMembers(List<Team> teams) {
+        List<Long> teamIds = new ArrayList<>(teams.size());
+        for (Team loaded : teams) {
+            if (!Hibernate.isInitialized(loaded.getMembers())) {
+                teamIds.add(loaded.getId());
+            }
+        }
+
+        for (int from = 0; from < teamIds.size(); from += MAX_IN_SIZE) {
+            List<Long> chunk = teamIds.subList(from, Math.min(from + MAX_IN_SIZE, teamIds.size()));
+            jpaQueryFactory
+                    .selectFrom(team)
+                    .distinct()
+                    .leftJoin(team.members, member).fetchJoin()
+                    .where(team.id.in(chunk))
+                    .fetch();
+        }
+
+        long members = 0;
+        for (Team loaded : teams) {
+            members += loaded.getMembers().size();
+        }
+        return members;
+    }
+
+    private static int teamCount(List<Member> members) {
+        Set<Team> teams = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Member loaded : members) {
+            if (loaded.getTeam() != null) {
+                teams.add(loaded.getTeam());
+            }
+        }
+        return teams.size();
+    }
+
+    private void record(FetchProfile profile, QueryCountScope scope, long loaded) {
+        queries.get(profile).record(scope.getStatementCount());
+        entities.get(profile).record(loaded);
+    }
+}
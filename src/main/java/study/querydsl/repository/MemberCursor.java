@@ -0,0 +1,65 @@
+package study.querydsl.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * keyset 페이징의 continuation cursor.
+ * - 마지막으로 읽은 행의 (정렬 키 값, member_id) 를 담고, 외부에는 base64 문자열로만 노출한다.
+ * */
+final class MemberCursor {
+
+    private static final String DELIMITER = "|";
+
+    private final MemberSortKey sortKey;
+    private final long id;
+    private final String value;
+
+    MemberCursor(MemberSortKey sortKey, long id, String value) {
+        this.sortKey = sortKey;
+        this.id = id;
+        this.value = value;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    int getAgeValue() {
+        return Integer.parseInt(value);
+    }
+
+    String encode() {
+        String raw = sortKey.name() + DELIMITER + id + DELIMITER + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static MemberCursor decode(String token, MemberSortKey expected) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("잘못된 cursor 입니다: " + token, e);
+        }
+
+        //username 에 구분자가 포함될 수 있으므로 값은 항상 마지막 토큰으로 둔다.
+        String[] tokens = raw.split("\\" + DELIMITER, 3);
+        if (tokens.length != 3 || !expected.name().equals(tokens[0])) {
+            throw new IllegalArgumentException("정렬 키가 " + expected + " 인 cursor 가 아닙니다: " + token);
+        }
+
+        try {
+            MemberCursor cursor = new MemberCursor(expected, Long.parseLong(tokens[1]), tokens[2]);
+            if (expected == MemberSortKey.AGE) {
+                cursor.getAgeValue();
+            }
+            return cursor;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("잘못된 cursor 입니다: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.KeysetPage;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.OffsetPage;
+import study.querydsl.dto.QMemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+@Repository
+@RequiredArgsConstructor
+public class MemberQueryRepository {
+
+    private final JPAQueryFactory jpaQueryFactory;
+    private final QuerydslPaging querydslPaging;
+
+    /**
+     * keyset(seek) 페이징
+     * - offset 을 쓰지 않고 "마지막으로 읽은 (정렬 키, member_id) 보다 큰 행" 을 조건으로 읽기 때문에
+     *   (정렬 키, member_id) 인덱스를 타면 몇 번째 페이지든 첫 페이지와 같은 비용이 든다.
+     * - 다음 페이지 존재 여부는 size + 1 건을 읽어서 판단하므로 count 쿼리가 필요 없다.
+     * - total 이 필요하면 KeysetPage.getTotal() 을 호출할 때 count 쿼리가 한 번만 실행된다.
+     * */
+    public KeysetPage<MemberDto> searchByKeyset(MemberSortKey sortKey, String cursor, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size 는 1 이상이어야 합니다: " + size);
+        }
+
+        MemberCursor after = cursor != null ? MemberCursor.decode(cursor, sortKey) : null;
+
+        List<Tuple> rows = jpaQueryFactory
+                .select(member.id, member.username, member.age)
+                .from(member)
+                .where(sortKeyNotNull(sortKey), seek(sortKey, after))
+                .orderBy(orderBy(sortKey))
+                .limit(size + 1)
+                .fetch();
+
+        boolean hasNext = rows.size() > size;
+        List<Tuple> pageRows = hasNext ? rows.subList(0, size) : rows;
+
+        List<MemberDto> content = new ArrayList<>(pageRows.size());
+        for (Tuple row : pageRows) {
+            content.add(new MemberDto(row.get(member.username), row.get(member.age)));
+        }
+
+        String nextCursor = hasNext ? toCursor(sortKey, pageRows.get(pageRows.size() - 1)).encode() : null;
+
+        return new KeysetPage<>(content, nextCursor, () -> countMembers(sortKey));
+    }
+
+    /**
+     * 비교용 offset 페이징. 앞의 offset 건을 모두 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다.
+     * */
+    public List<MemberDto> searchByOffset(MemberSortKey sortKey, long offset, int size) {
+        List<Tuple> rows = jpaQueryFactory
+                .select(member.username, member.age)
+                .from(member)
+                .where(sortKeyNotNull(sortKey))
+                .orderBy(orderBy(sortKey))
+                .offset(offset)
+                .limit(size)
+                .fetch();
+
+        List<MemberDto> content = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            content.add(new MemberDto(row.get(member.username), row.get(member.age)));
+        }
+        return content;
+    }
+
+    /**
+     * fetchResults() 를 쓰던 offset 페이징 검색
+     * - 팀 이름을 같이 보여주기 위해 team 을 left join 하지만, teamName 조건이 없으면 count 쿼리에서는 team join 이 빠진다.
+     * */
+    public OffsetPage<MemberTeamDto> searchPage(MemberSearchCondition condition, long offset, int size, CountMode countMode) {
+        JPAQuery<MemberTeamDto> query = jpaQueryFactory
+                .select(new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        condition.getUsername() != null ? member.username.eq(condition.getUsername()) : null,
+                        condition.getAge() != null ? member.age.eq(condition.getAge()) : null,
+                        condition.getAgeGoe() != null ? member.age.goe(condition.getAgeGoe()) : null,
+                        condition.getAgeLoe() != null ? member.age.loe(condition.getAgeLoe()) : null,
+                        condition.getTeamName() != null ? team.name.eq(condition.getTeamName()) : null)
+                .orderBy(member.id.asc());
+
+        return querydslPaging.page(query, offset, size, countMode);
+    }
+
+    public long countMembers(MemberSortKey sortKey) {
+        Long count = jpaQueryFactory
+                .select(member.count())
+                .from(member)
+                .where(sortKeyNotNull(sortKey))
+                .fetchOne();
+
+        return count != null ? count : 0L;
+    }
+
+    private BooleanExpression sortKeyNotNull(MemberSortKey sortKey) {
+        return sortKey == MemberSortKey.USERNAME ? member.username.isNotNull() : null;
+    }
+
+    private BooleanExpression seek(MemberSortKey sortKey, MemberCursor after) {
+        if (after == null) {
+            return null;
+        }
+
+        //(key, id) > (:key, :id)  ->  key > :key or (key = :key and id > :id)
+        if (sortKey == MemberSortKey.AGE) {
+            int age = after.getAgeValue();
+            return member.age.gt(age)
+                    .or(member.age.eq(age).and(member.id.gt(after.getId())));
+        }
+
+        String username = after.getValue();
+        return member.username.gt(username)
+                .or(member.username.eq(username).and(member.id.gt(after.getId())));
+    }
+
+    private OrderSpecifier<?>[] orderBy(MemberSortKey sortKey) {
+        if (sortKey == MemberSortKey.AGE) {
+            return new OrderSpecifier<?>[]{member.age.asc(), member.id.asc()};
+        }
+        return new OrderSpecifier<?>[]{member.username.asc(), member.id.asc()};
+    }
+
+    private MemberCursor toCursor(MemberSortKey sortKey, Tuple last) {
+        Long id = last.get(member.id);
+        String value = sortKey == MemberSortKey.AGE
+                ? String.valueOf(last.get(member.age))
+                : last.get(member.username);
+
+        return new MemberCursor(sortKey, id, value);
+    }
+}
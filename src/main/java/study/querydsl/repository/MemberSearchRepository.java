@@ -0,0 +1,220 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.partition.PartitionedMemberStore;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * 동적 검색 (searchMember1 의 BooleanBuilder, searchMember2 의 where 다중 파라미터 방식을 대체)
+ * - 어떤 조건이 들어왔는지(shape)만 보고 JPQL 을 한 번만 만들어서 캐시하고, 이후 호출은 파라미터만 바인딩한다.
+ *   조건 값은 Param 으로 두기 때문에 shape 가 같으면 JPQL 문자열이 항상 같고, hibernate query plan cache 도 항상 hit 한다.
+ * - 조건이 전부 null 이어도 where 없는 shape 하나로 처리된다.
+ * - team_id 로 나눈 회원 테이블 (PartitionedMemberStore) 을 쓰면 팀 이름 조건이 있는 search 는 그 팀의 partition 만 읽는다.
+ *   partition 은 커밋 직전에 반영되므로 쓰기 트랜잭션 안에서는 member 테이블을 읽는다.
+ * - querydsl.search.plan.cache{result=hit|miss} : shape 캐시 hit/miss
+ *   (hibernate 쪽 plan cache 는 hibernate.cache.query.plan metric 으로 볼 수 있다.)
+ * */
+@Repository
+public class MemberSearchRepository {
+
+    private static final Param<String> USERNAME = new Param<>(String.class, "username");
+    private static final Param<Integer> AGE = new Param<>(Integer.class, "age");
+    private static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+    private static final Param<String> TEAM_NAME = new Param<>(String.class, "teamName");
+
+    private static final int HAS_USERNAME = 1;
+    private static final int HAS_AGE = 1 << 1;
+    private static final int HAS_AGE_GOE = 1 << 2;
+    private static final int HAS_AGE_LOE = 1 << 3;
+    private static final int HAS_TEAM_NAME = 1 << 4;
+
+    private final EntityManager em;
+    private final ObjectProvider<PartitionedMemberStore> partitionedMemberStore;
+    private final Map<Integer, CompiledSearch> compiledSearches = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public MemberSearchRepository(EntityManager em, ObjectProvider<PartitionedMemberStore> partitionedMemberStore,
+                                  MeterRegistry meterRegistry) {
+        this.em = em;
+        this.partitionedMemberStore = partitionedMemberStore;
+
+        FunctionCounter.builder("querydsl.search.plan.cache", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("querydsl.search.plan.cache", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    public List<MemberDto> search(MemberSearchCondition condition) {
+        if (condition.getTeamName() != null && !inWriteTransaction()) {
+            PartitionedMemberStore store = partitionedMemberStore.getIfAvailable();
+            if (store != null) {
+                return store.search(condition);
+            }
+        }
+        return searchMemberTable(condition);
+    }
+
+    /**
+     * partition 을 거치지 않고 member 테이블을 읽는다.
+     * */
+    public List<MemberDto> searchMemberTable(MemberSearchCondition condition) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = createQuery(condition).getResultList();
+
+        List<MemberDto> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(toDto(row));
+        }
+        return result;
+    }
+
+    /**
+     * search 와 같은 쿼리를 List 로 만들지 않고 forward only cursor 로 읽는다.
+     * - fetchSize 건씩만 DB 에서 가져오므로 결과 크기와 상관없이 메모리 사용량이 일정하다.
+     * - 반환된 Stream 은 커서를 잡고 있으므로 반드시 닫아야 하고, 트랜잭션 안에서 사용해야 한다.
+     * */
+    public Stream<MemberDto> stream(MemberSearchCondition condition, int fetchSize) {
+        Query query = createQuery(condition)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true);
+
+        @SuppressWarnings("unchecked")
+        Stream<Object[]> rows = query.getResultStream();
+        return rows.map(MemberSearchRepository::toDto);
+    }
+
+    private Query createQuery(MemberSearchCondition condition) {
+        int shape = shapeOf(condition);
+
+        CompiledSearch compiled = compiledSearches.get(shape);
+        if (compiled != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            compiled = compiledSearches.computeIfAbsent(shape, MemberSearchRepository::compile);
+        }
+
+        Query query = em.createQuery(compiled.jpql);
+        JPAUtil.setConstants(query, compiled.constantToLabel, params(condition));
+        return query;
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static MemberDto toDto(Object[] row) {
+        return new MemberDto((String) row[0], (Integer) row[1]);
+    }
+
+    public double getPlanCacheHitRate() {
+        long hit = hits.get();
+        long total = hit + misses.get();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    static int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (condition.getUsername() != null) {
+            shape |= HAS_USERNAME;
+        }
+        if (condition.getAge() != null) {
+            shape |= HAS_AGE;
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= HAS_AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= HAS_AGE_LOE;
+        }
+        if (condition.getTeamName() != null) {
+            shape |= HAS_TEAM_NAME;
+        }
+        return shape;
+    }
+
+    private static Map<ParamExpression<?>, Object> params(MemberSearchCondition condition) {
+        Map<ParamExpression<?>, Object> params = new HashMap<>();
+        if (condition.getUsername() != null) {
+            params.put(USERNAME, condition.getUsername());
+        }
+        if (condition.getAge() != null) {
+            params.put(AGE, condition.getAge());
+        }
+        if (condition.getAgeGoe() != null) {
+            params.put(AGE_GOE, condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            params.put(AGE_LOE, condition.getAgeLoe());
+        }
+        if (condition.getTeamName() != null) {
+            params.put(TEAM_NAME, condition.getTeamName());
+        }
+        return params;
+    }
+
+    //shape 당 한 번만 실행된다. 쿼리를 실행하지 않고 JPQL 로 직렬화만 하므로 EntityManager 가 필요 없다.
+    private static CompiledSearch compile(int shape) {
+        JPAQuery<?> query = new JPAQuery<Void>()
+                .select(member.username, member.age)
+                .from(member)
+                .where(
+                        (shape & HAS_USERNAME) != 0 ? member.username.eq(USERNAME) : null,
+                        (shape & HAS_AGE) != 0 ? member.age.eq(AGE) : null,
+                        (shape & HAS_AGE_GOE) != 0 ? member.age.goe(AGE_GOE) : null,
+                        (shape & HAS_AGE_LOE) != 0 ? member.age.loe(AGE_LOE) : null,
+                        teamNameEq(shape))
+                .orderBy(member.id.asc());
+
+        JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+        serializer.serialize(query.getMetadata(), false, null);
+
+        return new CompiledSearch(serializer.toString(), new HashMap<>(serializer.getConstantToLabel()));
+    }
+
+    //team 조건이 있을 때만 member.team 을 조인한다.
+    private static BooleanExpression teamNameEq(int shape) {
+        return (shape & HAS_TEAM_NAME) != 0 ? member.team.name.eq(TEAM_NAME) : null;
+    }
+
+    private static final class CompiledSearch {
+
+        private final String jpql;
+        private final Map<Object, String> constantToLabel;
+
+        private CompiledSearch(String jpql, Map<Object, String> constantToLabel) {
+            this.jpql = jpql;
+            this.constantToLabel = constantToLabel;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package study.querydsl.repository;
+
+/**
+ * keyset 페이징의 정렬 키.
+ * - 항상 member_id 를 마지막 정렬 기준으로 붙여서 중복 값이 있어도 순서가 유일하게 결정되도록 한다.
+ * */
+public enum MemberSortKey {
+
+    AGE,            // (age, member_id)
+    USERNAME        // (username, member_id), username 이 null 인 회원은 제외
+
+}
@@ -0,0 +1,339 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Wildcard;
+import com.querydsl.jpa.JPAProvider;
+import com.querydsl.jpa.JPQLQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.OffsetPage;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * fetchResults() 대신 쓰는 offset 페이징
+ * - fetchResults() 는 content 쿼리에서 select 만 count 로 바꾸므로 join, order by 가 그대로 남는다. (querydsl 5 에서 deprecated)
+ * - 여기서는 content 쿼리의 metadata 로 count 쿼리를 따로 만들면서
+ *   order by, limit/offset, fetch join 을 빼고, 결과 행 수를 바꾸지 않는 join 은 아예 뺀다.
+ *   (left join 이면서 to-one 이고, where/group by/having/다른 join 에서 쓰지 않는 alias)
+ * - 첫 페이지가 size 보다 작거나, 마지막 페이지(size 보다 적게 읽힘)이면 count 쿼리를 실행하지 않는다.
+ * - CountMode.CAPPED 이면 count-cap 건까지만 세서 큰 테이블에서 count 비용의 상한을 둔다.
+ * */
+@Component
+public class QuerydslPaging {
+
+    private final EntityManager em;
+    private final int countCap;
+
+    public QuerydslPaging(EntityManager em, @Value("${querydsl.paging.count-cap:10000}") int countCap) {
+        this.em = em;
+        this.countCap = countCap;
+    }
+
+    public <T> OffsetPage<T> page(JPAQuery<T> query, long offset, int size) {
+        return page(query, offset, size, CountMode.EXACT);
+    }
+
+    public <T> OffsetPage<T> page(JPAQuery<T> query, long offset, int size, CountMode countMode) {
+        if (countMode == CountMode.CAPPED) {
+            return page(query, offset, size, () -> cappedCount(query), true);
+        }
+        return page(query, offset, size, () -> count(query), false);
+    }
+
+    /**
+     * count 쿼리를 직접 넘길 때 (group by 쿼리 등)
+     * */
+    public <T> OffsetPage<T> page(JPAQuery<T> query, long offset, int size, LongSupplier countSupplier) {
+        return page(query, offset, size, countSupplier, false);
+    }
+
+    private <T> OffsetPage<T> page(JPAQuery<T> query, long offset, int size, LongSupplier countSupplier, boolean capped) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size 는 1 이상이어야 합니다: " + size);
+        }
+
+        List<T> content = query.clone()
+                .offset(offset)
+                .limit(size)
+                .fetch();
+
+        //첫 페이지가 덜 찼거나, 어떤 페이지든 덜 찼으면 (마지막 페이지) total 은 계산할 수 있다.
+        if (content.size() < size && (offset == 0 || !content.isEmpty())) {
+            return new OffsetPage<>(content, offset, size, offset + content.size(), true);
+        }
+
+        long total = countSupplier.getAsLong();
+        boolean exact = !capped || total < countCap;
+        return new OffsetPage<>(content, offset, size, total, exact);
+    }
+
+    public long count(JPAQuery<?> query) {
+        Long count = countQuery(query).fetchOne();
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * count-cap 건까지만 읽어서 센다. where 조건에 맞는 행을 앞에서부터 count-cap 건 읽으면 멈춘다.
+     * - distinct 쿼리는 distinct 한 값 (엔티티면 id) 을 그대로 읽는다. 상수를 고르면 select distinct 1 이 되어 항상 1 건이 된다.
+     * */
+    public long cappedCount(JPAQuery<?> query) {
+        QueryMetadata source = query.getMetadata();
+        if (!source.getGroupBy().isEmpty() || source.getHaving() != null) {
+            throw new IllegalArgumentException("group by/having 쿼리는 CAPPED 로 셀 수 없습니다. count 쿼리를 직접 넘겨야 합니다.");
+        }
+
+        QueryMetadata metadata = countMetadata(source);
+        JPAQuery<Void> countQuery = new JPAQuery<>(em, JPAProvider.getTemplates(em), metadata);
+
+        Expression<?> projection = source.getProjection();
+        if (source.isDistinct() && projection != null) {
+            return countQuery.select(distinctColumns(projection))
+                    .limit(countCap)
+                    .fetch()
+                    .size();
+        }
+        metadata.setDistinct(false);
+        return countQuery.select(Expressions.numberTemplate(Integer.class, "1"))
+                .limit(countCap)
+                .fetch()
+                .size();
+    }
+
+    /**
+     * content 쿼리에서 count 에 필요 없는 부분을 뺀 count 쿼리
+     * */
+    public JPAQuery<Long> countQuery(JPAQuery<?> query) {
+        QueryMetadata source = query.getMetadata();
+        if (!source.getGroupBy().isEmpty() || source.getHaving() != null) {
+            throw new IllegalArgumentException("group by/having 쿼리는 count 쿼리를 직접 넘겨야 합니다.");
+        }
+
+        QueryMetadata metadata = countMetadata(source);
+        JPAQuery<Void> countQuery = new JPAQuery<>(em, JPAProvider.getTemplates(em), metadata);
+
+        Expression<?> projection = source.getProjection();
+        if (source.isDistinct() && projection != null) {
+            if (projection instanceof FactoryExpression) {
+                throw new IllegalArgumentException("여러 컬럼을 distinct 하는 쿼리는 count 쿼리를 직접 넘겨야 합니다.");
+            }
+            metadata.setDistinct(false);
+            return countQuery.select(Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, projection));
+        }
+        return countQuery.select(Wildcard.count);
+    }
+
+    //distinct 로 고를 컬럼. 엔티티는 id 로 바꿔서 엔티티를 읽지 않는다.
+    private Expression<?>[] distinctColumns(Expression<?> projection) {
+        if (projection instanceof FactoryExpression) {
+            return ((FactoryExpression<?>) projection).getArgs().toArray(new Expression<?>[0]);
+        }
+        if (projection instanceof EntityPath) {
+            return new Expression<?>[]{idPath((EntityPath<?>) projection)};
+        }
+        return new Expression<?>[]{projection};
+    }
+
+    @SuppressWarnings("unchecked")
+    private <X> Path<?> idPath(EntityPath<X> entityPath) {
+        EntityType<X> entity = em.getMetamodel().entity((Class<X>) entityPath.getType());
+        SingularAttribute<? super X, ?> id = entity.getId(entity.getIdType().getJavaType());
+        return ExpressionUtils.path(id.getJavaType(), entityPath, id.getName());
+    }
+
+    //order by, limit/offset, fetch join, 행 수에 영향 없는 join 을 뺀 metadata (group by 와 having 은 같이 옮긴다.)
+    private static QueryMetadata countMetadata(QueryMetadata source) {
+        Set<Path<?>> referenced = new HashSet<>();
+        collectRoots(source.getWhere(), referenced);
+        collectRoots(source.getHaving(), referenced);
+        for (Expression<?> groupBy : source.getGroupBy()) {
+            collectRoots(groupBy, referenced);
+        }
+        if (source.isDistinct()) {
+            collectRoots(source.getProjection(), referenced);
+        }
+
+        List<JoinExpression> joins = source.getJoins();
+        boolean[] keep = new boolean[joins.size()];
+        for (int i = 0; i < joins.size(); i++) {
+            keep[i] = !isRemovable(joins.get(i));
+        }
+
+        //남겨둔 join 이 쓰는 alias 도 남긴다. 더 바뀌지 않을 때까지 반복
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Set<Path<?>> used = new HashSet<>(referenced);
+            for (int i = 0; i < joins.size(); i++) {
+                if (keep[i]) {
+                    collectRoots(association(joins.get(i)), used);
+                    collectRoots(joins.get(i).getCondition(), used);
+                }
+            }
+            for (int i = 0; i < joins.size(); i++) {
+                if (!keep[i] && used.contains(alias(joins.get(i)))) {
+                    keep[i] = true;
+                    changed = true;
+                }
+            }
+        }
+
+        QueryMetadata metadata = new DefaultQueryMetadata();
+        for (int i = 0; i < joins.size(); i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            JoinExpression join = joins.get(i);
+            metadata.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                metadata.addJoinCondition(join.getCondition());
+            }
+            for (JoinFlag flag : join.getFlags()) {
+                if (!flag.equals(JPQLQueryMixin.FETCH) && !flag.equals(JPQLQueryMixin.FETCH_ALL_PROPERTIES)) {
+                    metadata.addJoinFlag(flag);
+                }
+            }
+        }
+        if (source.getWhere() != null) {
+            metadata.addWhere(source.getWhere());
+        }
+        for (Expression<?> groupBy : source.getGroupBy()) {
+            metadata.addGroupBy(groupBy);
+        }
+        if (source.getHaving() != null) {
+            metadata.addHaving(source.getHaving());
+        }
+        //Param 으로 둔 조건 값 (query.set(param, value)) 도 그대로 바인딩되어야 한다.
+        for (Map.Entry<ParamExpression<?>, Object> param : source.getParams().entrySet()) {
+            setParam(metadata, param.getKey(), param.getValue());
+        }
+        metadata.setDistinct(source.isDistinct());
+        return metadata;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void setParam(QueryMetadata metadata, ParamExpression<T> param, Object value) {
+        metadata.setParam(param, (T) value);
+    }
+
+    //left join 이고 to-one 이면 행 수가 바뀌지 않는다. (to-many 는 행이 늘어나고, inner join 은 행을 거른다.)
+    private static boolean isRemovable(JoinExpression join) {
+        if (join.getType() != JoinType.LEFTJOIN) {
+            return false;
+        }
+        Expression<?> association = association(join);
+        return association != null && !(association instanceof CollectionExpression);
+    }
+
+    //leftJoin(member.team, team) -> member.team, join(team) (theta join) -> null
+    private static Expression<?> association(JoinExpression join) {
+        Expression<?> target = join.getTarget();
+        if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+            return ((Operation<?>) target).getArg(0);
+        }
+        return null;
+    }
+
+    private static Path<?> alias(JoinExpression join) {
+        Expression<?> target = join.getTarget();
+        if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+            return (Path<?>) ((Operation<?>) target).getArg(1);
+        }
+        return (Path<?>) target;
+    }
+
+    private static void collectRoots(Expression<?> expression, Set<Path<?>> roots) {
+        if (expression != null) {
+            expression.accept(RootCollector.INSTANCE, roots);
+        }
+    }
+
+    //식 안에서 쓰인 path 들의 root alias (member.team.name -> member) 를 모은다.
+    private enum RootCollector implements Visitor<Void, Set<Path<?>>> {
+
+        INSTANCE;
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Path<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Path<?>> roots) {
+            visitAll(expr.getArgs(), roots);
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Path<?>> roots) {
+            visitAll(expr.getArgs(), roots);
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Path<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Path<?>> roots) {
+            roots.add(expr.getRoot());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Path<?>> roots) {
+            QueryMetadata metadata = expr.getMetadata();
+            collectRoots(metadata.getWhere(), roots);
+            collectRoots(metadata.getHaving(), roots);
+            collectRoots(metadata.getProjection(), roots);
+            for (JoinExpression join : metadata.getJoins()) {
+                collectRoots(join.getTarget(), roots);
+                collectRoots(join.getCondition(), roots);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Path<?>> roots) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    ((Expression<?>) arg).accept(this, roots);
+                }
+            }
+            return null;
+        }
+
+        private void visitAll(List<Expression<?>> args, Set<Path<?>> roots) {
+            for (Expression<?> arg : args) {
+                arg.accept(this, roots);
+            }
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.support.ReplaceVisitor;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.ConstantImpl;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.util.MathUtils;
+import com.querydsl.jpa.JPAProvider;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 바깥 쿼리와 상관없는(uncorrelated) 서브쿼리를 미리 한 번만 실행해서 값으로 바꾼다.
+ * - where 의 스칼라 서브쿼리 (age = (select max(age) ...), age >= (select avg(age) ...)) -> 파라미터
+ *   비교하는 쪽의 타입으로 바꿔서 바인딩한다. 정수 컬럼과 소수 값 (avg) 을 비교하면 age >= 23.3 -> age >= 24, age = 23.3 -> 항상 거짓
+ * - select 절의 스칼라 서브쿼리 -> SQL 에서 빼고, 결과를 만들 때 미리 구한 값을 넣는다. (JPQL 은 select 절 파라미터를 허용하지 않는다.)
+ * - in (서브쿼리) -> in (값 목록). 결과가 inline-limit 건을 넘으면 그대로 둔다. (JPQL 에는 semi join 문법이 없으므로
+ *   값 목록으로 펼치고, 큰 목록은 DB 의 semi join 최적화에 맡긴다.)
+ * - exists (서브쿼리) -> 1 = 1 / 1 = 0
+ * - 바깥 alias 를 참조하는(correlated) 서브쿼리는 행마다 값이 다르므로 건드리지 않는다.
+ * - 같은 서브쿼리가 여러 번 나오면 한 번만 실행한다. 값은 rewrite 한 쿼리 하나에만 쓰이고 캐시하지 않는다.
+ * */
+@Slf4j
+@Component
+public class SubqueryRewriter {
+
+    private static final Predicate ALWAYS_TRUE = Expressions.booleanTemplate("1 = 1");
+    private static final Predicate ALWAYS_FALSE = Expressions.booleanTemplate("1 = 0");
+
+    //비교 연산자 -> 좌우를 바꿨을 때의 연산자
+    private static final Map<Operator, Operator> COMPARISONS = new HashMap<>();
+
+    static {
+        COMPARISONS.put(Ops.EQ, Ops.EQ);
+        COMPARISONS.put(Ops.NE, Ops.NE);
+        COMPARISONS.put(Ops.LT, Ops.GT);
+        COMPARISONS.put(Ops.GT, Ops.LT);
+        COMPARISONS.put(Ops.LOE, Ops.GOE);
+        COMPARISONS.put(Ops.GOE, Ops.LOE);
+    }
+
+    private final EntityManager em;
+    private final int inlineLimit;
+
+    public SubqueryRewriter(EntityManager em, @Value("${querydsl.subquery.inline-limit:1000}") int inlineLimit) {
+        this.em = em;
+        this.inlineLimit = inlineLimit;
+    }
+
+    /**
+     * @return 서브쿼리를 값으로 바꾼 새 쿼리. 원래 쿼리는 바뀌지 않는다.
+     * */
+    public <T> JPAQuery<T> rewrite(JPAQuery<T> query) {
+        JPQLTemplates templates = JPAProvider.getTemplates(em);
+        Rewriter rewriter = new Rewriter(templates);
+
+        QueryMetadata metadata = query.getMetadata().clone();
+        Predicate where = metadata.getWhere();
+        if (where != null) {
+            metadata.clearWhere();
+            metadata.addWhere((Predicate) where.accept(rewriter, null));
+        }
+
+        Expression<?> projection = metadata.getProjection();
+        if (projection instanceof FactoryExpression) {
+            metadata.setProjection(rewriter.precompute((FactoryExpression<?>) projection));
+        }
+
+        return new JPAQuery<>(em, templates, metadata);
+    }
+
+    private final class Rewriter extends ReplaceVisitor<Void> {
+
+        private final JPQLTemplates templates;
+        private final Map<SubQueryExpression<?>, Object> scalars = new HashMap<>();
+        private final Map<SubQueryExpression<?>, List<?>> lists = new HashMap<>();
+
+        private Rewriter(JPQLTemplates templates) {
+            this.templates = templates;
+        }
+
+        @Override
+        public Expression<?> visit(Operation<?> expr, @Nullable Void context) {
+            if ((expr.getOperator() == Ops.IN || expr.getOperator() == Ops.NOT_IN)
+                    && expr.getArg(1) instanceof SubQueryExpression
+                    && isUncorrelated((SubQueryExpression<?>) expr.getArg(1))) {
+                return rewriteIn(expr);
+            }
+            if (expr.getOperator() == Ops.EXISTS
+                    && expr.getArg(0) instanceof SubQueryExpression
+                    && isUncorrelated((SubQueryExpression<?>) expr.getArg(0))) {
+                return exists((SubQueryExpression<?>) expr.getArg(0)) ? ALWAYS_TRUE : ALWAYS_FALSE;
+            }
+            if (COMPARISONS.containsKey(expr.getOperator()) && expr.getArgs().size() == 2) {
+                for (int i = 0; i < 2; i++) {
+                    if (expr.getArg(i) instanceof SubQueryExpression
+                            && !(expr.getArg(1 - i) instanceof SubQueryExpression)
+                            && isUncorrelated((SubQueryExpression<?>) expr.getArg(i))) {
+                        //항상 "다른 쪽 op 값" 모양으로 맞춘다. (값 < age -> age > 값)
+                        Operator operator = i == 1 ? expr.getOperator() : COMPARISONS.get(expr.getOperator());
+                        return compare(operator, expr.getArg(1 - i).accept(this, null), scalar((SubQueryExpression<?>) expr.getArg(i)));
+                    }
+                }
+            }
+            return super.visit(expr, context);
+        }
+
+        //서브쿼리 결과를 비교 대상의 타입으로 바꾼다. 그대로 바인딩하면 age (Integer) 에 avg (Double) 가 들어가서 hibernate 가 거부한다.
+        private Predicate compare(Operator operator, Expression<?> left, Object value) {
+            if (value == null) {
+                return ALWAYS_FALSE;        //null 과의 비교는 참이 되지 않는다.
+            }
+            Class<?> type = left.getType();
+            if (!(value instanceof Number) || !Number.class.isAssignableFrom(type) || type.isInstance(value)) {
+                return ExpressionUtils.predicate(operator, left, ConstantImpl.create(value));
+            }
+
+            Number number = (Number) value;
+            if (isIntegral(type) && !isIntegral(number.getClass())) {
+                double decimal = number.doubleValue();
+                if (decimal != Math.rint(decimal)) {
+                    if (operator == Ops.EQ) {
+                        return ALWAYS_FALSE;
+                    }
+                    if (operator == Ops.NE) {
+                        return ExpressionUtils.isNotNull(left);
+                    }
+                    //age > 23.3, age >= 23.3 -> age >= 24 / age < 23.3, age <= 23.3 -> age <= 23
+                    boolean lower = operator == Ops.GT || operator == Ops.GOE;
+                    operator = lower ? Ops.GOE : Ops.LOE;
+                    decimal = lower ? Math.ceil(decimal) : Math.floor(decimal);
+                }
+                number = decimal;
+            }
+            return ExpressionUtils.predicate(operator, left, ConstantImpl.create(cast(number, type)));
+        }
+
+        //스칼라 서브쿼리 (in, exists 의 인자가 아닌 서브쿼리)
+        @Override
+        public Expression<?> visit(SubQueryExpression<?> expr, @Nullable Void context) {
+            if (!isUncorrelated(expr)) {
+                return super.visit(expr, context);
+            }
+            Object value = scalar(expr);
+            return value != null ? ConstantImpl.create(value) : Expressions.nullExpression();
+        }
+
+        private Expression<?> rewriteIn(Operation<?> expr) {
+            SubQueryExpression<?> subQuery = (SubQueryExpression<?>) expr.getArg(1);
+            List<?> values = list(subQuery);
+            if (values == null) {
+                return super.visit(expr, null);
+            }
+            if (values.isEmpty()) {
+                return expr.getOperator() == Ops.IN ? ALWAYS_FALSE : ALWAYS_TRUE;
+            }
+            Expression<?> left = expr.getArg(0).accept(this, null);
+            return ExpressionUtils.predicate(expr.getOperator(), left, ConstantImpl.create(values));
+        }
+
+        private FactoryExpression<?> precompute(FactoryExpression<?> projection) {
+            List<Expression<?>> args = projection.getArgs();
+            Object[] values = new Object[args.size()];
+            boolean[] precomputed = new boolean[args.size()];
+            boolean any = false;
+
+            for (int i = 0; i < args.size(); i++) {
+                SubQueryExpression<?> subQuery = scalarSubQuery(args.get(i));
+                if (subQuery != null && isUncorrelated(subQuery)) {
+                    values[i] = scalar(subQuery);
+                    precomputed[i] = true;
+                    any = true;
+                }
+            }
+            return any ? PrecomputedArgs.of(projection, values, precomputed) : projection;
+        }
+
+        //sub 또는 ExpressionUtils.as(sub, "alias")
+        private SubQueryExpression<?> scalarSubQuery(Expression<?> arg) {
+            if (arg instanceof SubQueryExpression) {
+                return (SubQueryExpression<?>) arg;
+            }
+            if (arg instanceof Operation && ((Operation<?>) arg).getOperator() == Ops.ALIAS
+                    && ((Operation<?>) arg).getArg(0) instanceof SubQueryExpression) {
+                return (SubQueryExpression<?>) ((Operation<?>) arg).getArg(0);
+            }
+            return null;
+        }
+
+        private Object scalar(SubQueryExpression<?> subQuery) {
+            if (scalars.containsKey(subQuery)) {
+                return scalars.get(subQuery);
+            }
+            Object value = new JPAQuery<>(em, templates, subQuery.getMetadata().clone()).fetchOne();
+            scalars.put(subQuery, value);
+            log.debug("uncorrelated subquery -> {} : {}", value, subQuery);
+            return value;
+        }
+
+        //inlineLimit 건을 넘으면 null
+        private List<?> list(SubQueryExpression<?> subQuery) {
+            if (lists.containsKey(subQuery)) {
+                return lists.get(subQuery);
+            }
+            QueryMetadata metadata = subQuery.getMetadata().clone();
+            metadata.setDistinct(true);
+            List<?> values = new JPAQuery<>(em, templates, metadata)
+                    .limit(inlineLimit + 1L)
+                    .fetch();
+            List<?> result = values.size() > inlineLimit ? null : values;
+            lists.put(subQuery, result);
+            return result;
+        }
+
+        private boolean exists(SubQueryExpression<?> subQuery) {
+            return new JPAQuery<>(em, templates, subQuery.getMetadata().clone()).fetchFirst() != null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Number cast(Number number, Class<?> type) {
+        return MathUtils.cast(number, (Class<Number>) type);
+    }
+
+    private static boolean isIntegral(Class<?> type) {
+        return type == Integer.class || type == Long.class || type == Short.class || type == Byte.class
+                || type == BigInteger.class;
+    }
+
+    /**
+     * 바깥 쿼리의 alias 를 참조하지 않으면 uncorrelated
+     * */
+    static boolean isUncorrelated(SubQueryExpression<?> subQuery) {
+        Set<Path<?>> free = new HashSet<>();
+        subQuery.accept(FreeRoots.INSTANCE, free);
+        return free.isEmpty();
+    }
+
+    //서브쿼리 안에서 선언되지 않은 alias (= 바깥 쿼리의 alias) 를 모은다.
+    private enum FreeRoots implements Visitor<Void, Set<Path<?>>> {
+
+        INSTANCE;
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Path<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Path<?>> roots) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, roots);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Path<?>> roots) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, roots);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Path<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Path<?>> roots) {
+            roots.add(expr.getRoot());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Path<?>> roots) {
+            QueryMetadata metadata = expr.getMetadata();
+            Set<Path<?>> used = new HashSet<>();
+            Set<Path<?>> declared = new HashSet<>();
+
+            for (JoinExpression join : metadata.getJoins()) {
+                Expression<?> target = join.getTarget();
+                if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+                    ((Operation<?>) target).getArg(0).accept(this, used);
+                    declared.add(((Path<?>) ((Operation<?>) target).getArg(1)).getRoot());
+                } else if (target instanceof Path) {
+                    declared.add(((Path<?>) target).getRoot());
+                }
+                accept(join.getCondition(), used);
+            }
+            accept(metadata.getWhere(), used);
+            accept(metadata.getHaving(), used);
+            accept(metadata.getProjection(), used);
+            for (Expression<?> groupBy : metadata.getGroupBy()) {
+                groupBy.accept(this, used);
+            }
+            for (OrderSpecifier<?> orderBy : metadata.getOrderBy()) {
+                orderBy.getTarget().accept(this, used);
+            }
+
+            used.removeAll(declared);
+            roots.addAll(used);
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Path<?>> roots) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    ((Expression<?>) arg).accept(this, roots);
+                }
+            }
+            return null;
+        }
+
+        private void accept(Expression<?> expression, Set<Path<?>> roots) {
+            if (expression != null) {
+                expression.accept(this, roots);
+            }
+        }
+    }
+
+    /**
+     * 미리 구한 인자를 SQL 에서 빼고, 결과를 만들 때 원래 위치에 다시 넣는 FactoryExpression
+     * */
+    static final class PrecomputedArgs<T> extends FactoryExpressionBase<T> {
+
+        private final FactoryExpression<T> delegate;
+        private final Object[] values;
+        private final boolean[] precomputed;
+        private final List<Expression<?>> args;
+
+        private PrecomputedArgs(FactoryExpression<T> delegate, Object[] values, boolean[] precomputed) {
+            super(delegate.getType());
+            this.delegate = delegate;
+            this.values = values;
+            this.precomputed = precomputed;
+
+            List<Expression<?>> remaining = new ArrayList<>();
+            for (int i = 0; i < precomputed.length; i++) {
+                if (!precomputed[i]) {
+                    remaining.add(delegate.getArgs().get(i));
+                }
+            }
+            this.args = Collections.unmodifiableList(remaining);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> PrecomputedArgs<T> of(FactoryExpression<?> delegate, Object[] values, boolean[] precomputed) {
+            return new PrecomputedArgs<>((FactoryExpression<T>) delegate, values, precomputed);
+        }
+
+        @Override
+        public List<Expression<?>> getArgs() {
+            return args;
+        }
+
+        @Override
+        public T newInstance(Object... row) {
+            Object[] full = new Object[precomputed.length];
+            int next = 0;
+            for (int i = 0; i < full.length; i++) {
+                full[i] = precomputed[i] ? values[i] : row[next++];
+            }
+            return delegate.newInstance(full);
+        }
+
+        @Override
+        public <R, C> R accept(Visitor<R, C> v, @Nullable C context) {
+            return v.visit(this, context);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.TeamWithMembersDto;
+import study.querydsl.entities.Team;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+@Repository
+@RequiredArgsConstructor
+public class TeamQueryRepository {
+
+    static final String TEAM_QUERY_REGION = "team-query";
+
+    private final JPAQueryFactory jpaQueryFactory;
+
+    /**
+     * 팀 이름 조회는 쿼리 캐시를 쓴다.
+     * - 캐시에는 team id 만 저장되고 엔티티는 team 2차 캐시에서 꺼내므로 DB 를 전혀 타지 않는다.
+     * - team 테이블이 변경되면 hibernate 가 update timestamps 를 보고 자동으로 무효화한다.
+     * */
+    public Optional<Team> findByName(String name) {
+        return Optional.ofNullable(jpaQueryFactory
+                .selectFrom(team)
+                .where(team.name.eq(name))
+                .setHint(QueryHints.CACHEABLE, true)
+                .setHint(QueryHints.CACHE_REGION, TEAM_QUERY_REGION)
+                .fetchFirst());
+    }
+
+    public Optional<Long> findIdByName(String name) {
+        return Optional.ofNullable(jpaQueryFactory
+                .select(team.id)
+                .from(team)
+                .where(team.name.eq(name))
+                .setHint(QueryHints.CACHEABLE, true)
+                .setHint(QueryHints.CACHE_REGION, TEAM_QUERY_REGION)
+                .fetchFirst());
+    }
+
+    /**
+     * 팀 목록 + 팀별 회원 (쿼리 2번)
+     * - team.members 를 lazy 로 읽으면 팀마다 select 가 한 번씩 나가고 (N+1),
+     *   컬렉션 fetch join 은 row 가 회원 수만큼 늘어나서 DB 에서 페이징을 할 수 없다. (메모리에서 페이징)
+     * - 팀 한 페이지를 먼저 읽고, 그 팀들의 회원을 in 쿼리 한 번으로 읽어서 메모리에서 조립한다.
+     * */
+    public List<TeamWithMembersDto> findTeamsWithMembers(long offset, int limit) {
+        List<Tuple> teams = jpaQueryFactory
+                .select(team.id, team.name)
+                .from(team)
+                .orderBy(team.id.asc())
+                .offset(offset)
+                .limit(limit)
+                .fetch();
+
+        if (teams.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Long> teamIds = new ArrayList<>(teams.size());
+        for (Tuple row : teams) {
+            teamIds.add(row.get(team.id));
+        }
+
+        //member.team.id 는 외래키 컬럼이므로 team 과 조인하지 않는다.
+        List<Tuple> members = jpaQueryFactory
+                .select(member.team.id, member.username, member.age)
+                .from(member)
+                .where(member.team.id.in(teamIds))
+                .orderBy(member.team.id.asc(), member.id.asc())
+                .fetch();
+
+        Map<Long, List<MemberDto>> membersByTeam = new HashMap<>();
+        for (Tuple row : members) {
+            membersByTeam.computeIfAbsent(row.get(member.team.id), id -> new ArrayList<>())
+                    .add(new MemberDto(row.get(member.username), row.get(member.age)));
+        }
+
+        List<TeamWithMembersDto> result = new ArrayList<>(teams.size());
+        for (Tuple row : teams) {
+            Long teamId = row.get(team.id);
+            result.add(new TeamWithMembersDto(teamId, row.get(team.name),
+                    membersByTeam.getOrDefault(teamId, Collections.emptyList())));
+        }
+        return result;
+    }
+}
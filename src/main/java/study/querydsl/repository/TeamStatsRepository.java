@@ -0,0 +1,47 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.TeamAgeStatsDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entities.QTeam.team;
+import static study.querydsl.entities.QTeamStats.teamStats;
+
+@Repository
+@RequiredArgsConstructor
+public class TeamStatsRepository {
+
+    private final JPAQueryFactory jpaQueryFactory;
+
+    /**
+     * 팀의 이름과 각 팀의 평균 연령 (+ 회원 수, 최소/최대 연령)
+     * - member 전체를 group by 하지 않고 team_stats 를 팀 수만큼만 읽는다.
+     * - teamNameLike 가 null 이 아니면 팀 이름으로 거른다. (having 버전)
+     * */
+    public List<TeamAgeStatsDto> findTeamAgeStats(String teamNameLike) {
+        List<Tuple> rows = jpaQueryFactory
+                .select(team.name, teamStats.memberCount, teamStats.ageSum, teamStats.minAge, teamStats.maxAge)
+                .from(team)
+                .leftJoin(teamStats).on(teamStats.teamId.eq(team.id))
+                .where(teamNameLike != null ? team.name.like(teamNameLike) : null)
+                .orderBy(team.name.asc())
+                .fetch();
+
+        List<TeamAgeStatsDto> result = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            Long memberCount = row.get(teamStats.memberCount);
+            Long ageSum = row.get(teamStats.ageSum);
+            result.add(new TeamAgeStatsDto(row.get(team.name),
+                    memberCount != null ? memberCount : 0L,
+                    ageSum != null ? ageSum : 0L,
+                    row.get(teamStats.minAge),
+                    row.get(teamStats.maxAge)));
+        }
+        return result;
+    }
+}
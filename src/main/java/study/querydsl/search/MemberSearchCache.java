@@ -0,0 +1,234 @@
+package study.querydsl.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberSearchRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * MemberSearchRepository.search 앞의 read-through 캐시 (key : 정규화한 검색 조건 MemberSearchKey)
+ * - caffeine (W-TinyLFU) 으로 max-memory 를 넘지 않게 추정 크기(weight, byte) 기준으로 제거한다.
+ *   한 번 조회되고 마는 조건은 자주 쓰이는 조건을 밀어내지 못한다.
+ * - 커밋된 Member insert/update/delete 는 변경 전/후 상태에 맞는 key 만, Team 이름 변경/삭제는 그 팀 이름 key 만 지운다.
+ *   (MemberSearchCacheListener) bulk update/delete 는 어떤 값으로 바뀌었는지 알 수 없으므로 커밋 후 전부 지운다.
+ * - 변경마다 전체 key 를 훑지 않도록 key 를 username, teamName 으로 색인해 두고, 그 회원의 username / 팀 이름 key 와
+ *   둘 다 없는 (나이 조건만 있는) key 만 확인한다. 색인은 key 단위 compute 안에서 캐시와 같이 바꾼다. (용량 초과 제거는 evictionListener)
+ * - 읽기/쓰기 트랜잭션 안에서는 아직 커밋되지 않은 변경이 보일 수 있으므로 캐시를 거치지 않는다.
+ * - 읽는 도중 무효화가 일어나면 (generation 이 바뀌면) 읽은 결과를 캐시에 남기지 않는다.
+ * - 캐시된 DTO 는 공유되므로 호출한 쪽에는 복사본을 돌려준다.
+ * - cache.gets{cache=member-search} 등 caffeine metric, querydsl.search.cache.hit.ratio, querydsl.search.cache.weight (byte)
+ * */
+@Component
+public class MemberSearchCache {
+
+    static final String CACHE_NAME = "member-search";
+
+    private final MemberSearchRepository memberSearchRepository;
+    private final Cache<MemberSearchKey, List<MemberDto>> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private final ConcurrentMap<String, Set<MemberSearchKey>> byUsername = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<MemberSearchKey>> byTeamName = new ConcurrentHashMap<>();
+    private final Set<MemberSearchKey> unscoped = ConcurrentHashMap.newKeySet();
+
+    public MemberSearchCache(MemberSearchRepository memberSearchRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${querydsl.search-cache.max-memory:32MB}") DataSize maxMemory) {
+        this.memberSearchRepository = memberSearchRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher(MemberSearchCache::weigh)
+                .evictionListener((MemberSearchKey key, List<MemberDto> value, RemovalCause cause) -> unindex(key))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("querydsl.search.cache.hit.ratio", this, MemberSearchCache::hitRatio)
+                .register(meterRegistry);
+        Gauge.builder("querydsl.search.cache.weight", this, MemberSearchCache::weightedSize)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public List<MemberDto> search(MemberSearchCondition condition) {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        if (key.isEmptyRange()) {
+            return new ArrayList<>();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return memberSearchRepository.search(condition);
+        }
+
+        List<MemberDto> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return copy(cached);
+        }
+
+        long loadedAt = generation.get();
+        List<MemberDto> loaded = memberSearchRepository.search(condition);
+        List<MemberDto> value = Collections.unmodifiableList(copy(loaded));
+        cache.asMap().compute(key, (k, old) -> {
+            index(k);
+            return value;
+        });
+        //put 전후로 무효화가 끼어들었으면 DB 에서 읽은 값이 이미 바뀌었을 수 있다.
+        if (generation.get() != loadedAt) {
+            remove(key);
+        }
+        return loaded;
+    }
+
+    /**
+     * bulk update/delete 처럼 바뀐 값을 모를 때. 트랜잭션 안이면 커밋된 뒤에 지운다.
+     * */
+    public void invalidateAll() {
+        afterCommit(this::clear);
+    }
+
+    //이하 MemberSearchCacheListener (커밋 후) 에서 호출
+
+    void clear() {
+        generation.incrementAndGet();
+        invalidate(cache.asMap().keySet(), key -> true);
+    }
+
+    /**
+     * 이 상태의 회원이 결과에 들어가는 key 를 지운다.
+     * @param teamKnown false 이면 팀 이름을 모르므로 팀 조건이 있는 key 도 모두 확인한다.
+     * */
+    void invalidateMember(String username, int age, String teamName, boolean teamKnown) {
+        generation.incrementAndGet();
+        Predicate<MemberSearchKey> affected = key -> key.matches(username, age, teamName, teamKnown);
+        if (!teamKnown) {
+            invalidate(cache.asMap().keySet(), affected);
+            return;
+        }
+        invalidate(keys(byUsername, username), affected);
+        invalidate(keys(byTeamName, teamName), affected);
+        invalidate(unscoped, affected);
+    }
+
+    void invalidateTeam(String teamName) {
+        generation.incrementAndGet();
+        invalidate(keys(byTeamName, teamName), key -> true);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public double hitRatio() {
+        return cache.stats().hitRate();
+    }
+
+    public long weightedSize() {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    private void invalidate(Collection<MemberSearchKey> candidates, Predicate<MemberSearchKey> affected) {
+        for (MemberSearchKey key : new ArrayList<>(candidates)) {
+            if (affected.test(key)) {
+                remove(key);
+            }
+        }
+    }
+
+    private void remove(MemberSearchKey key) {
+        cache.asMap().computeIfPresent(key, (k, value) -> {
+            unindex(k);
+            return null;
+        });
+    }
+
+    private void index(MemberSearchKey key) {
+        if (key.getUsername() != null) {
+            add(byUsername, key.getUsername(), key);
+        }
+        if (key.getTeamName() != null) {
+            add(byTeamName, key.getTeamName(), key);
+        }
+        if (key.getUsername() == null && key.getTeamName() == null) {
+            unscoped.add(key);
+        }
+    }
+
+    private void unindex(MemberSearchKey key) {
+        if (key.getUsername() != null) {
+            byUsername.computeIfPresent(key.getUsername(), (name, keys) -> keys.remove(key) && keys.isEmpty() ? null : keys);
+        }
+        if (key.getTeamName() != null) {
+            byTeamName.computeIfPresent(key.getTeamName(), (name, keys) -> keys.remove(key) && keys.isEmpty() ? null : keys);
+        }
+        unscoped.remove(key);
+    }
+
+    //빈 set 을 지우는 unindex 와 겹쳐도 key 가 빠지지 않도록 compute 안에서 더한다.
+    private static void add(ConcurrentMap<String, Set<MemberSearchKey>> index, String name, MemberSearchKey key) {
+        index.compute(name, (n, keys) -> {
+            Set<MemberSearchKey> result = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            result.add(key);
+            return result;
+        });
+    }
+
+    private static Set<MemberSearchKey> keys(Map<String, Set<MemberSearchKey>> index, String name) {
+        return name == null ? Collections.emptySet() : index.getOrDefault(name, Collections.emptySet());
+    }
+
+    private static List<MemberDto> copy(List<MemberDto> source) {
+        List<MemberDto> result = new ArrayList<>(source.size());
+        for (MemberDto dto : source) {
+            result.add(new MemberDto(dto.getUsername(), dto.getAge()));
+        }
+        return result;
+    }
+
+    //key + ArrayList + 원소마다 MemberDto, Integer, username 문자열의 추정 크기 (byte)
+    static int weigh(MemberSearchKey key, List<MemberDto> value) {
+        long bytes = 64L + key.estimatedBytes() + 40 + 4L * value.size();
+        for (MemberDto dto : value) {
+            bytes += 24 + 16 + stringBytes(dto.getUsername());
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    static int stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package study.querydsl.search;
+
+import org.hibernate.Hibernate;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import java.util.Objects;
+
+/**
+ * 커밋된 Member, Team 변경에 영향을 받는 MemberSearchCache key 만 지운다.
+ * - Member : 변경 전 상태나 변경 후 상태가 검색 조건에 맞는 key (결과에서 빠지거나, 새로 들어가거나, 값이 바뀐다.)
+ * - Team : 이름이 바뀌거나 삭제되면 그 팀 이름으로 검색한 key (insert 는 아직 회원이 없으므로 영향이 없다.)
+ * - 회원의 team 이 초기화되지 않은 proxy 면 팀 이름을 모르므로 팀 조건은 맞는 것으로 본다.
+ * */
+public class MemberSearchCacheListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient MemberSearchCache memberSearchCache;
+
+    public MemberSearchCacheListener(MemberSearchCache memberSearchCache) {
+        this.memberSearchCache = memberSearchCache;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            invalidateMember(event.getPersister(), null, event.getState());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            if (event.getOldState() == null) {
+                //merge 없이 detached 엔티티를 update 한 경우 등 변경 전 상태를 모르면 전부 지운다.
+                memberSearchCache.clear();
+            } else {
+                invalidateMember(event.getPersister(), event.getOldState(), event.getState());
+            }
+        } else if (event.getEntity() instanceof Team) {
+            int name = event.getPersister().getEntityMetamodel().getPropertyIndex("name");
+            Object oldName = event.getOldState() != null ? event.getOldState()[name] : null;
+            Object newName = event.getState()[name];
+            if (event.getOldState() == null || !Objects.equals(oldName, newName)) {
+                invalidateTeam(event.getOldState() != null ? oldName : null, newName);
+            }
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            invalidateMember(event.getPersister(), event.getDeletedState(), null);
+        } else if (event.getEntity() instanceof Team) {
+            int name = event.getPersister().getEntityMetamodel().getPropertyIndex("name");
+            invalidateTeam(event.getDeletedState()[name], null);
+        }
+    }
+
+    private void invalidateMember(EntityPersister persister, Object[] oldState, Object[] state) {
+        EntityMetamodel metamodel = persister.getEntityMetamodel();
+        MemberState before = MemberState.of(metamodel, oldState);
+        MemberState after = MemberState.of(metamodel, state);
+        if (before != null) {
+            before.invalidate(memberSearchCache);
+        }
+        if (after != null) {
+            after.invalidate(memberSearchCache);
+        }
+    }
+
+    private void invalidateTeam(Object oldName, Object newName) {
+        if (oldName != null) {
+            memberSearchCache.invalidateTeam((String) oldName);
+        }
+        if (newName != null) {
+            memberSearchCache.invalidateTeam((String) newName);
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return Member.class.isAssignableFrom(type) || Team.class.isAssignableFrom(type);
+    }
+
+    private static final class MemberState {
+
+        private final String username;
+        private final int age;
+        private final String teamName;
+        private final boolean teamKnown;
+
+        private MemberState(String username, int age, String teamName, boolean teamKnown) {
+            this.username = username;
+            this.age = age;
+            this.teamName = teamName;
+            this.teamKnown = teamKnown;
+        }
+
+        private static MemberState of(EntityMetamodel metamodel, Object[] state) {
+            if (state == null) {
+                return null;
+            }
+            Object team = state[metamodel.getPropertyIndex("team")];
+            boolean teamKnown = team == null || Hibernate.isInitialized(team);
+            return new MemberState(
+                    (String) state[metamodel.getPropertyIndex("username")],
+                    (Integer) state[metamodel.getPropertyIndex("age")],
+                    teamKnown && team != null ? ((Team) team).getName() : null,
+                    teamKnown);
+        }
+
+        private void invalidate(MemberSearchCache cache) {
+            cache.invalidateMember(username, age, teamName, teamKnown);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.search;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import study.querydsl.dto.MemberSearchCondition;
+
+/**
+ * MemberSearchCache 의 key. 결과가 같은 검색 조건은 같은 key 가 된다.
+ * - age, ageGoe, ageLoe 는 하나의 닫힌 구간 [minAge, maxAge] 로 합친다. (age = 20 과 ageGoe = 20, ageLoe = 20 은 같은 key)
+ *   member.age 는 not null 이므로 나이 조건이 없는 것과 [MIN_VALUE, MAX_VALUE] 는 같다.
+ * - username, teamName 은 eq 조건이라 값을 바꾸지 않는다. (대소문자, 공백도 구분)
+ * */
+@Getter
+@EqualsAndHashCode
+@ToString
+final class MemberSearchKey {
+
+    private final String username;
+    private final String teamName;
+    private final int minAge;
+    private final int maxAge;
+
+    private MemberSearchKey(String username, String teamName, int minAge, int maxAge) {
+        this.username = username;
+        this.teamName = teamName;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+
+    static MemberSearchKey of(MemberSearchCondition condition) {
+        int minAge = Integer.MIN_VALUE;
+        int maxAge = Integer.MAX_VALUE;
+        if (condition.getAge() != null) {
+            minAge = condition.getAge();
+            maxAge = condition.getAge();
+        }
+        if (condition.getAgeGoe() != null) {
+            minAge = Math.max(minAge, condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            maxAge = Math.min(maxAge, condition.getAgeLoe());
+        }
+        return new MemberSearchKey(condition.getUsername(), condition.getTeamName(), minAge, maxAge);
+    }
+
+    /**
+     * 구간이 비어 있으면 DB 를 읽지 않아도 결과가 없다.
+     * */
+    boolean isEmptyRange() {
+        return minAge > maxAge;
+    }
+
+    /**
+     * 이 상태의 회원이 이 검색 결과에 들어가는지
+     * @param teamName 회원의 팀 이름. 팀이 없으면 null
+     * @param teamKnown false 이면 팀 이름을 모르는 것이므로 팀 조건은 맞는 것으로 본다.
+     * */
+    boolean matches(String username, int age, String teamName, boolean teamKnown) {
+        if (this.username != null && !this.username.equals(username)) {
+            return false;
+        }
+        if (age < minAge || age > maxAge) {
+            return false;
+        }
+        return this.teamName == null || !teamKnown || this.teamName.equals(teamName);
+    }
+
+    //메모리 추정용 (object header + 필드), 문자열은 latin1 기준 1 byte/char
+    int estimatedBytes() {
+        return 32 + MemberSearchCache.stringBytes(username) + MemberSearchCache.stringBytes(teamName);
+    }
+}
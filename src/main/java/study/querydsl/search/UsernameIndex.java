@@ -0,0 +1,217 @@
+package study.querydsl.search;
+
+import study.querydsl.dto.UsernameMatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Member.username 메모리 인덱스 (대소문자 구분 없음)
+ * - prefix : 소문자 username 순으로 정렬된 TreeMap 의 범위 조회
+ * - substring : username 의 trigram (연속 3글자) 별 member id 목록(posting) 을 교집합한 후보만 실제로 비교한다.
+ *   검색어가 3글자 미만이면 prefix 만 찾는다. (자동완성 최소 글자 수)
+ * - 결과는 prefix 일치가 먼저, 그 다음 substring 일치. 각각 username, id 순
+ * - 읽기는 read lock 으로 동시에, 변경은 write lock 으로 하나씩
+ * */
+public final class UsernameIndex {
+
+    private static final int GRAM = 3;
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final Comparator<UsernameMatch> BY_USERNAME = Comparator
+            .comparing((UsernameMatch match) -> normalize(match.getUsername()))
+            .thenComparingLong(UsernameMatch::getMemberId);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, String> usernames = new HashMap<>();
+    private final NavigableMap<String, Long> sorted = new TreeMap<>();     //소문자 username + '\0' + id -> id
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+
+    /**
+     * @param username null 이면 인덱스에서 뺀다.
+     * */
+    public void put(long memberId, String username) {
+        lock.writeLock().lock();
+        try {
+            String previous = usernames.get(memberId);
+            if (username != null && username.equals(previous)) {
+                return;
+            }
+            if (previous != null) {
+                unindex(memberId, previous);
+            }
+            if (username != null) {
+                index(memberId, username);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long memberId) {
+        put(memberId, null);
+    }
+
+    /**
+     * 전체를 바꾼다. (DB 에서 다시 만들거나 디스크에서 읽을 때)
+     * */
+    public void replaceAll(Map<Long, String> entries) {
+        lock.writeLock().lock();
+        try {
+            usernames.clear();
+            sorted.clear();
+            postings.clear();
+            entries.forEach((memberId, username) -> {
+                if (username != null) {
+                    index(memberId, username);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<UsernameMatch> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<UsernameMatch> result = new ArrayList<>(Math.min(limit, 64));
+            for (Long memberId : sorted.subMap(q, true, q + Character.MAX_VALUE, false).values()) {
+                result.add(new UsernameMatch(memberId, usernames.get(memberId)));
+                if (result.size() == limit) {
+                    return result;
+                }
+            }
+            if (q.length() >= GRAM) {
+                result.addAll(containing(q, limit - result.size()));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return usernames.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long maxMemberId() {
+        lock.readLock().lock();
+        try {
+            long max = 0;
+            for (Long memberId : usernames.keySet()) {
+                max = Math.max(max, memberId);
+            }
+            return max;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<Long, String> copy() {
+        lock.readLock().lock();
+        try {
+            return new HashMap<>(usernames);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //prefix 로 시작하지 않고 중간에 q 가 들어 있는 username 중 순서상 앞의 limit 건
+    private List<UsernameMatch> containing(String q, int limit) {
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : trigrams(q)) {
+            Set<Long> posting = postings.get(gram);
+            if (posting == null) {
+                return Collections.emptyList();
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        //앞의 limit 건만 남기도록 순서상 가장 뒤의 것을 꺼낼 수 있는 heap
+        PriorityQueue<UsernameMatch> top = new PriorityQueue<>(limit + 1, BY_USERNAME.reversed());
+        Set<Long> smallest = lists.get(0);
+        for (Long memberId : smallest) {
+            if (!containsAll(lists, memberId)) {
+                continue;
+            }
+            String username = usernames.get(memberId);
+            String lower = normalize(username);
+            if (lower.startsWith(q) || !lower.contains(q)) {
+                continue;
+            }
+            top.add(new UsernameMatch(memberId, username));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<UsernameMatch> result = new ArrayList<>(top);
+        result.sort(BY_USERNAME);
+        return result;
+    }
+
+    private static boolean containsAll(List<Set<Long>> lists, Long memberId) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(memberId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void index(long memberId, String username) {
+        String lower = normalize(username);
+        usernames.put(memberId, username);
+        sorted.put(lower + KEY_SEPARATOR + memberId, memberId);
+        for (String gram : trigrams(lower)) {
+            postings.computeIfAbsent(gram, key -> new HashSet<>()).add(memberId);
+        }
+    }
+
+    private void unindex(long memberId, String username) {
+        String lower = normalize(username);
+        usernames.remove(memberId);
+        sorted.remove(lower + KEY_SEPARATOR + memberId);
+        for (String gram : trigrams(lower)) {
+            Set<Long> posting = postings.get(gram);
+            if (posting != null && posting.remove(memberId) && posting.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    private static Set<String> trigrams(String lower) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= lower.length(); i++) {
+            grams.add(lower.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.search;
+
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import study.querydsl.entities.Member;
+
+/**
+ * Member 의 insert/update/delete 를 커밋된 뒤에 UsernameSearch 인덱스에 반영한다.
+ * - post commit 리스너이므로 롤백된 변경은 반영되지 않고, 트랜잭션 안에서는 아직 보이지 않는다.
+ * */
+public class UsernameIndexListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient UsernameSearch usernameSearch;
+
+    public UsernameIndexListener(UsernameSearch usernameSearch) {
+        this.usernameSearch = usernameSearch;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Member member = (Member) event.getEntity();
+            usernameSearch.put(member.getId(), member.getUsername(), member.getVersion());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Member member = (Member) event.getEntity();
+            usernameSearch.put(member.getId(), member.getUsername(), member.getVersion());       //username 이 같으면 version 만 바뀐다.
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            usernameSearch.remove((Long) event.getId());
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return Member.class.isAssignableFrom(persister.getMappedClass());
+    }
+}
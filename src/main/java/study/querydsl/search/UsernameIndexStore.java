@@ -0,0 +1,233 @@
+package study.querydsl.search;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * UsernameIndex 를 디스크에 남기는 segment + log
+ * - usernames.seg : 어느 시점의 전체 (id, username, version) snapshot
+ * - usernames.log : snapshot 이후의 변경 (put / remove) 을 순서대로 append
+ *   version 은 시작할 때 DB 와 비교해서 꺼져 있는 동안 바뀐 회원을 찾는 데 쓴다. (UsernameSearch)
+ * - 시작할 때 seg -> log.old -> log 순서로 읽어서 복원하므로 DB 를 다시 읽지 않는다. 마지막 레코드가 잘렸으면 거기까지만 쓴다.
+ * - log 가 길어지면 compact : log 를 log.old 로 돌리고 새 log 를 연 뒤, 그 시점의 전체로 seg 를 새로 쓰고 (임시 파일 -> rename) log.old 를 지운다.
+ *   중간에 죽어도 seg, log.old, log 를 순서대로 다시 적용하면 같은 결과가 된다. (put/remove 는 여러 번 적용해도 같다.)
+ * - 같은 디렉토리를 두 프로세스가 같이 쓰지 않도록 lock 파일을 잡는다.
+ * */
+@Slf4j
+final class UsernameIndexStore implements Closeable {
+
+    private static final int MAGIC = 0x554e4932;       //"UNI2" (username index, version 포함)
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private final Path segment;
+    private final Path logFile;
+    private final Path oldLog;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private DataOutputStream out;
+    private long logEntries;
+
+    private UsernameIndexStore(Path directory, FileChannel lockChannel, FileLock lock) throws IOException {
+        this.segment = directory.resolve("usernames.seg");
+        this.logFile = directory.resolve("usernames.log");
+        this.oldLog = directory.resolve("usernames.log.old");
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        this.out = openLog();
+    }
+
+    /**
+     * @return 다른 인스턴스가 이미 쓰고 있으면 null
+     * */
+    static UsernameIndexStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel channel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;        //같은 JVM 의 다른 context
+        }
+        if (lock == null) {
+            channel.close();
+            return null;
+        }
+        return new UsernameIndexStore(directory, channel, lock);
+    }
+
+    /**
+     * @return seg 가 없거나 형식이 다르면 null
+     * */
+    Snapshot load() throws IOException {
+        if (!Files.exists(segment)) {
+            return null;
+        }
+
+        Snapshot snapshot = new Snapshot();
+        try (DataInputStream in = input(segment)) {
+            if (in.readInt() != MAGIC) {
+                log.warn("username index segment 형식이 다릅니다: {}", segment);
+                return null;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long memberId = in.readLong();
+                snapshot.usernames.put(memberId, in.readUTF());
+                snapshot.versions.put(memberId, in.readLong());
+            }
+        }
+        long replayed = replay(oldLog, snapshot) + replay(logFile, snapshot);
+        log.info("username index loaded: {} entries, {} log records", snapshot.usernames.size(), replayed);
+        return snapshot;
+    }
+
+    synchronized void appendPut(long memberId, String username, long version) {
+        try {
+            out.writeByte(PUT);
+            out.writeLong(memberId);
+            out.writeUTF(username);
+            out.writeLong(version);
+            logEntries++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void appendRemove(long memberId) {
+        try {
+            out.writeByte(REMOVE);
+            out.writeLong(memberId);
+            logEntries++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long getLogEntries() {
+        return logEntries;
+    }
+
+    synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * 지금까지의 log 를 log.old 로 돌리고 새 log 를 연다. 이후 writeSegment 로 그 시점의 전체를 쓴다.
+     * - 호출한 쪽은 인덱스 변경과 이 호출 사이에 다른 변경이 끼지 않게 해야 한다.
+     * */
+    synchronized void rotate() throws IOException {
+        out.close();
+        if (Files.exists(oldLog)) {
+            //이전 compact 가 끝나지 않았으면 이어 붙여서 순서를 지킨다.
+            Files.write(oldLog, Files.readAllBytes(logFile), StandardOpenOption.APPEND);
+            Files.delete(logFile);
+        } else {
+            Files.move(logFile, oldLog);
+        }
+        out = openLog();
+        logEntries = 0;
+    }
+
+    void writeSegment(Snapshot snapshot) throws IOException {
+        Path temp = segment.resolveSibling(segment.getFileName() + ".tmp");
+        try (DataOutputStream segmentOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            segmentOut.writeInt(MAGIC);
+            segmentOut.writeInt(snapshot.usernames.size());
+            for (Map.Entry<Long, String> entry : snapshot.usernames.entrySet()) {
+                segmentOut.writeLong(entry.getKey());
+                segmentOut.writeUTF(entry.getValue());
+                segmentOut.writeLong(snapshot.versionOf(entry.getKey()));
+            }
+        }
+        Files.move(temp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(oldLog);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    private DataOutputStream openLog() throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(logFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    private static long replay(Path file, Snapshot snapshot) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long records = 0;
+        try (DataInputStream in = input(file)) {
+            while (true) {
+                byte op = in.readByte();
+                long memberId = in.readLong();
+                if (op == PUT) {
+                    String username = in.readUTF();
+                    long version = in.readLong();
+                    snapshot.usernames.put(memberId, username);
+                    snapshot.versions.put(memberId, version);
+                } else {
+                    snapshot.usernames.remove(memberId);
+                    snapshot.versions.remove(memberId);
+                }
+                records++;
+            }
+        } catch (EOFException e) {
+            //끝 (또는 쓰다가 잘린 마지막 레코드)
+        }
+        return records;
+    }
+
+    private static DataInputStream input(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        return new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * member id -> username, member id -> version (version 이 null 인 회원은 0)
+     * */
+    static final class Snapshot {
+
+        final Map<Long, String> usernames;
+        final Map<Long, Long> versions;
+
+        Snapshot() {
+            this(new HashMap<>(), new HashMap<>());
+        }
+
+        Snapshot(Map<Long, String> usernames, Map<Long, Long> versions) {
+            this.usernames = usernames;
+            this.versions = versions;
+        }
+
+        long versionOf(long memberId) {
+            Long version = versions.get(memberId);
+            return version != null ? version : 0L;
+        }
+    }
+}
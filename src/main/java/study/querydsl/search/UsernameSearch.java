@@ -0,0 +1,376 @@
+package study.querydsl.search;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.UsernameMatch;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * username 자동완성 검색 (/members/search?q=)
+ * - UsernameIndex 를 들고 있고, Member 변경은 UsernameIndexListener 가 커밋 후에 반영한다. (롤백된 변경은 들어오지 않는다.)
+ *   Querydsl bulk update/delete 는 이벤트가 없으므로 MemberBulkService 가 reload/removeAll 을 호출한다.
+ * - querydsl.username-index.directory 가 있으면 UsernameIndexStore 에 남기고, 시작할 때 디스크에서 읽는다.
+ *   회원마다 읽었을 때의 version 을 같이 남긴다. version 은 update 마다 오르므로 (bulk update 포함) 회원 수, 최대 id, version 합계가
+ *   DB 와 다르면 꺼져 있는 동안 바뀐 것이고, 이때는 DB 의 (id, version) 과 비교해서 다른 회원만 다시 읽는다. (resync)
+ * - 커밋 후 반영은 여러 스레드에서 순서 없이 들어오므로 이미 반영한 것보다 낮은 version 은 버린다.
+ *   인덱스에서 뺀 회원은 마지막 version 을 removed 에 남겨서 늦게 도착한 put 이 되살리지 못하게 한다. (삭제는 id 를 다시 쓰지 않으므로 DELETED)
+ * - log 는 flush-interval 마다 디스크에 쓰고, compact-threshold 건이 쌓이면 segment 를 새로 쓴다.
+ * */
+@Slf4j
+@Component
+public class UsernameSearch implements SmartInitializingSingleton {
+
+    private static final int RELOAD_CHUNK = 1000;
+    private static final int MAX_REMOVED = 100_000;
+    private static final long DELETED = Long.MAX_VALUE;
+
+    private final JPAQueryFactory jpaQueryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final String directory;
+    private final Duration flushInterval;
+    private final long compactThreshold;
+    private final int fetchSize;
+    private final UsernameIndex index = new UsernameIndex();
+    private final Map<Long, Long> versions = new HashMap<>();      //member id -> 인덱스에 반영한 version, writeLock
+    //member id -> 인덱스에서 뺄 때의 version, writeLock. 늦은 put 은 커밋 직후에만 오므로 오래된 것부터 버린다.
+    private final Map<Long, Long> removed = new LinkedHashMap<Long, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > MAX_REMOVED;
+        }
+    };
+    private final Object writeLock = new Object();
+    private final Object compactLock = new Object();
+    private final ScheduledExecutorService scheduler;
+    private volatile UsernameIndexStore store;
+
+    public UsernameSearch(JPAQueryFactory jpaQueryFactory,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${querydsl.username-index.directory:}") String directory,
+                          @Value("${querydsl.username-index.flush-interval:1s}") Duration flushInterval,
+                          @Value("${querydsl.username-index.compact-threshold:100000}") long compactThreshold,
+                          @Value("${querydsl.export.fetch-size:1000}") int fetchSize) {
+        this.jpaQueryFactory = jpaQueryFactory;
+        //커밋 후 (afterCommit) 에도 호출되므로 항상 새 트랜잭션에서 읽는다.
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.directory = directory;
+        this.flushInterval = flushInterval;
+        this.compactThreshold = compactThreshold;
+        this.fetchSize = fetchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "username-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //EntityManagerFactory 가 만들어지고 (ddl 포함) 다른 bean 이 다 준비된 뒤에 읽는다.
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("username index 를 열지 못했습니다: " + directory, e);
+        }
+        if (store != null) {
+            long interval = flushInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    public List<UsernameMatch> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * DB 에서 전체를 다시 읽는다. 읽는 동안 들어온 변경은 끝난 뒤에 순서대로 반영된다.
+     * */
+    public void rebuild() {
+        synchronized (writeLock) {
+            UsernameIndexStore.Snapshot snapshot = Objects.requireNonNull(readOnlyTransaction.execute(status -> readAll()));
+            replaceAll(snapshot);
+            log.info("username index rebuilt from database: {} entries", snapshot.usernames.size());
+        }
+        compact();
+    }
+
+    /**
+     * DB 의 (id, version) 과 인덱스를 비교해서 version 이 다르거나 없어진 회원만 다시 반영한다. (꺼져 있는 동안 바뀐 회원)
+     * */
+    public void resync() {
+        Map<Long, Long> indexed;
+        synchronized (writeLock) {
+            indexed = new HashMap<>(versions);
+        }
+
+        List<Long> stale = new ArrayList<>();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (CloseableIterator<Tuple> rows = jpaQueryFactory
+                    .select(member.id, member.version)
+                    .from(member)
+                    .where(member.username.isNotNull())
+                    .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                    .setHint(QueryHints.READ_ONLY, true)
+                    .iterate()) {
+
+                while (rows.hasNext()) {
+                    Tuple row = rows.next();
+                    Long memberId = row.get(member.id);
+                    Long version = indexed.remove(memberId);
+                    if (version == null || version != versionOf(row.get(member.version))) {
+                        stale.add(memberId);
+                    }
+                }
+            }
+        });
+
+        //남은 것은 DB 에서 지워졌거나 username 이 null 이 된 회원. 인덱스에 있던 version 까지를 지운 것으로 남긴다.
+        indexed.forEach((memberId, version) -> put(memberId, null, version));
+        reload(stale);
+        log.info("username index resync: {} changed, {} removed", stale.size(), indexed.size());
+    }
+
+    /**
+     * bulk update 뒤에 호출. 트랜잭션 안이면 커밋된 뒤에 DB 에서 다시 읽는다.
+     * */
+    public void reload(Collection<Long> memberIds) {
+        afterCommit(() -> {
+            List<Long> ids = new ArrayList<>(memberIds);
+            for (int from = 0; from < ids.size(); from += RELOAD_CHUNK) {
+                List<Long> chunk = ids.subList(from, Math.min(from + RELOAD_CHUNK, ids.size()));
+                List<Tuple> rows = readOnlyTransaction.execute(status -> jpaQueryFactory
+                        .select(member.id, member.username, member.version)
+                        .from(member)
+                        .where(member.id.in(chunk))
+                        .fetch());
+
+                Map<Long, Tuple> byId = new HashMap<>();
+                for (Tuple row : Objects.requireNonNull(rows)) {
+                    byId.put(row.get(member.id), row);
+                }
+                for (Long memberId : chunk) {
+                    Tuple row = byId.get(memberId);
+                    if (row != null) {
+                        put(memberId, row.get(member.username), row.get(member.version));
+                    } else {
+                        remove(memberId);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * bulk delete 뒤에 호출. 트랜잭션 안이면 커밋된 뒤에 반영한다.
+     * */
+    public void removeAll(Collection<Long> memberIds) {
+        afterCommit(() -> memberIds.forEach(this::remove));
+    }
+
+    /**
+     * UsernameIndexListener (커밋 후) 에서 호출. username 이 null 이면 인덱스에서 뺀다.
+     * - 반영한 version 보다 낮거나, 뺄 때의 version 이하인 변경은 늦게 도착한 이전 변경이므로 무시한다.
+     * */
+    void put(long memberId, String username, Long version) {
+        long newVersion = versionOf(version);
+        synchronized (writeLock) {
+            Long indexed = versions.get(memberId);
+            if (indexed != null && newVersion < indexed) {
+                return;
+            }
+            Long removedAt = removed.get(memberId);
+            if (removedAt != null && newVersion <= removedAt) {
+                return;
+            }
+
+            index.put(memberId, username);
+            if (username != null) {
+                versions.put(memberId, newVersion);
+                removed.remove(memberId);
+            } else {
+                versions.remove(memberId);
+                removed.put(memberId, newVersion);
+            }
+
+            UsernameIndexStore current = store;
+            if (current != null) {
+                if (username != null) {
+                    current.appendPut(memberId, username, newVersion);
+                } else {
+                    current.appendRemove(memberId);
+                }
+            }
+        }
+    }
+
+    //회원이 삭제됐을 때. 이후에 오는 put 은 모두 무시한다.
+    void remove(long memberId) {
+        put(memberId, null, DELETED);
+    }
+
+    private void open() throws IOException {
+        if (!directory.isEmpty()) {
+            store = UsernameIndexStore.open(Paths.get(directory));
+            if (store == null) {
+                log.warn("username index 디렉토리를 다른 인스턴스가 쓰고 있어 메모리에서만 유지합니다: {}", directory);
+            }
+        }
+
+        UsernameIndexStore.Snapshot loaded = store != null ? store.load() : null;
+        if (loaded != null) {
+            synchronized (writeLock) {
+                replaceAll(loaded);
+            }
+            if (!matchesDatabase()) {
+                log.info("username index 가 DB 와 달라서 바뀐 회원만 다시 읽습니다.");
+                resync();
+            }
+            compact();
+            return;
+        }
+        rebuild();
+    }
+
+    /**
+     * 회원 수, 최대 id, version 합계가 DB 와 같은지
+     * - 꺼져 있는 동안 username 만 바뀌어도 그 회원의 version 이 올라가므로 합계가 달라진다.
+     * */
+    boolean matchesDatabase() {
+        Tuple row = readOnlyTransaction.execute(status -> jpaQueryFactory
+                .select(member.id.count(), member.id.max(), member.version.sum())
+                .from(member)
+                .where(member.username.isNotNull())
+                .fetchOne());
+
+        long count = row != null && row.get(member.id.count()) != null ? row.get(member.id.count()) : 0L;
+        long maxId = row != null && row.get(member.id.max()) != null ? row.get(member.id.max()) : 0L;
+        long versionSum = row != null ? versionOf(row.get(member.version.sum())) : 0L;
+
+        synchronized (writeLock) {
+            long indexedSum = 0;
+            for (Long version : versions.values()) {
+                indexedSum += version;
+            }
+            return count == index.size() && maxId == index.maxMemberId() && versionSum == indexedSum;
+        }
+    }
+
+    private UsernameIndexStore.Snapshot readAll() {
+        UsernameIndexStore.Snapshot snapshot = new UsernameIndexStore.Snapshot();
+        try (CloseableIterator<Tuple> rows = jpaQueryFactory
+                .select(member.id, member.username, member.version)
+                .from(member)
+                .where(member.username.isNotNull())
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate()) {
+
+            while (rows.hasNext()) {
+                Tuple row = rows.next();
+                snapshot.usernames.put(row.get(member.id), row.get(member.username));
+                snapshot.versions.put(row.get(member.id), versionOf(row.get(member.version)));
+            }
+        }
+        return snapshot;
+    }
+
+    //writeLock 안에서 호출
+    private void replaceAll(UsernameIndexStore.Snapshot snapshot) {
+        index.replaceAll(snapshot.usernames);
+        versions.clear();
+        versions.putAll(snapshot.versions);
+        removed.keySet().removeAll(snapshot.versions.keySet());
+    }
+
+    //version 이 없는 (직접 insert 한) 회원은 0 으로 본다. DB 의 sum 도 null 은 더하지 않는다.
+    private static long versionOf(Long version) {
+        return version != null ? version : 0L;
+    }
+
+    private void flush() {
+        UsernameIndexStore current = store;
+        try {
+            current.flush();
+            if (current.getLogEntries() >= compactThreshold) {
+                compact();
+            }
+        } catch (Exception e) {
+            log.warn("username index log 를 쓰지 못했습니다.", e);
+        }
+    }
+
+    //log 를 돌리는 것과 그 시점의 전체를 복사하는 것 사이에 변경이 끼지 않도록 writeLock 안에서, segment 쓰기는 밖에서
+    private void compact() {
+        UsernameIndexStore current = store;
+        if (current == null) {
+            return;
+        }
+        synchronized (compactLock) {
+            try {
+                UsernameIndexStore.Snapshot snapshot;
+                synchronized (writeLock) {
+                    current.rotate();
+                    snapshot = new UsernameIndexStore.Snapshot(index.copy(), new HashMap<>(versions));
+                }
+                current.writeSegment(snapshot);
+            } catch (IOException e) {
+                throw new UncheckedIOException("username index segment 를 쓰지 못했습니다.", e);
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package study.querydsl.service;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Querydsl 조회를 요청 스레드가 아닌 별도 executor 에서 실행하고 CompletableFuture 로 돌려준다.
+ * - 작업마다 읽기 전용 트랜잭션을 새로 열기 때문에 EntityManager 도 작업 단위로 바인딩되고 끝나면 닫힌다.
+ *   (호출한 쪽의 트랜잭션/영속성 컨텍스트는 공유하지 않으므로 커밋되지 않은 데이터는 보이지 않는다.)
+ * - 실행 환경이 virtual thread 를 지원하면 (JDK 21+) 작업마다 virtual thread 를, 아니면 고정 크기 스레드 풀을 쓴다.
+ * - 동시에 실행되는 작업 수는 maxConcurrency 로 제한한다. 커넥션 풀보다 크게 잡으면 커넥션을 기다리는 시간만 늘어난다.
+ * */
+@Slf4j
+@Component
+public class AsyncQueryExecutor {
+
+    private final JPAQueryFactory jpaQueryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    public AsyncQueryExecutor(JPAQueryFactory jpaQueryFactory,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${querydsl.async.max-concurrency:10}") int maxConcurrency,
+                              @Value("${querydsl.async.virtual-threads:true}") boolean useVirtualThreads) {
+        this.jpaQueryFactory = jpaQueryFactory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.permits = new Semaphore(maxConcurrency);
+
+        ExecutorService virtual = useVirtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        this.virtualThreads = virtual != null;
+        if (virtual != null) {
+            this.executor = virtual;
+        } else {
+            AtomicInteger sequence = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                Thread thread = new Thread(runnable, "async-query-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        log.info("async query executor: virtualThreads = {}, maxConcurrency = {}", virtualThreads, maxConcurrency);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public <T> CompletableFuture<T> query(Function<JPAQueryFactory, T> query) {
+        return supply(() -> query.apply(jpaQueryFactory));
+    }
+
+    /**
+     * JPAQueryFactory 를 쓰는 repository 메서드를 그대로 넘길 때 사용
+     * */
+    public <T> CompletableFuture<T> supply(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return readOnlyTransaction.execute(status -> query.get());
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    /**
+     * 서로 의존하지 않는 두 조회를 동시에 실행하고, 둘 다 끝나면 합친다.
+     * - 각각 다른 커넥션/트랜잭션에서 실행되므로 두 결과가 같은 시점의 스냅샷이라는 보장은 없다.
+     * */
+    public <A, B, R> CompletableFuture<R> combine(Supplier<A> first, Supplier<B> second, BiFunction<A, B, R> combiner) {
+        return supply(first).thenCombine(supply(second), combiner);
+    }
+
+    //Executors.newVirtualThreadPerTaskExecutor() 는 JDK 21 부터 있으므로 컴파일 타깃(8) 에서는 reflection 으로 찾는다.
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package study.querydsl.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberIngestRecord;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.repository.TeamQueryRepository;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 회원 대량 등록
+ * - id 는 pooled sequence (allocationSize = 50) 로 받아서 insert 마다 sequence 를 호출하지 않는다.
+ * - hibernate.jdbc.batch_size 건마다 flush/clear 해서 insert 가 JDBC batch 로 나가고 영속성 컨텍스트가 커지지 않게 한다.
+ * - 팀 이름 -> id 는 한 번만 조회해서 캐시하고, 이후에는 getReference 로 select 없이 연관관계만 건다.
+ * */
+@Service
+public class MemberBulkIngestService {
+
+    private final TeamQueryRepository teamQueryRepository;
+    private final EntityManager em;
+    private final int batchSize;
+
+    public MemberBulkIngestService(TeamQueryRepository teamQueryRepository,
+                                   EntityManager em,
+                                   @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize) {
+        this.teamQueryRepository = teamQueryRepository;
+        this.em = em;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return 등록한 회원 수
+     * */
+    @Transactional
+    public long ingest(Stream<MemberIngestRecord> records) {
+        //트랜잭션이 롤백되면 새로 만든 팀 id 도 무효가 되므로 캐시는 호출 단위로만 유지한다.
+        Map<String, Long> teamIds = new HashMap<>();
+        long count = 0;
+
+        Iterator<MemberIngestRecord> iterator = records.iterator();
+        while (iterator.hasNext()) {
+            MemberIngestRecord record = iterator.next();
+
+            Team memberTeam = record.getTeamName() != null ? resolveTeam(teamIds, record.getTeamName()) : null;
+            em.persist(new Member(record.getUsername(), record.getAge(), memberTeam));
+
+            if (++count % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+
+        em.flush();
+        em.clear();
+        return count;
+    }
+
+    private Team resolveTeam(Map<String, Long> teamIds, String teamName) {
+        Long teamId = teamIds.get(teamName);
+
+        if (teamId == null) {
+            teamId = teamQueryRepository.findIdByName(teamName).orElse(null);
+
+            if (teamId == null) {
+                Team newTeam = new Team(teamName);
+                em.persist(newTeam);
+                teamId = newTeam.getId();
+            }
+
+            teamIds.put(teamName, teamId);
+        }
+
+        //clear 이후에는 select 없이 proxy 만 만든다.
+        return em.getReference(Team.class, teamId);
+    }
+}
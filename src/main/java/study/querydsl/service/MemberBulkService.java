@@ -0,0 +1,441 @@
+package study.querydsl.service;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import com.querydsl.jpa.impl.JPAUtil;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.BulkChunkResult;
+import study.querydsl.dto.BulkResult;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.partition.PartitionedMemberStore;
+import study.querydsl.search.MemberSearchCache;
+import study.querydsl.search.UsernameSearch;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * Querydsl bulk update/delete
+ * - 대상 회원을 member_id 순으로 chunkSize 개씩 나눠서 실행한다. 트랜잭션 밖에서 호출하면 chunk 마다 따로 커밋되므로
+ *   lock 을 오래 잡지 않고 undo log 도 chunk 크기만큼만 쌓인다. 트랜잭션 안에서 호출하면 그 트랜잭션에 참여해서 순서대로 실행한다.
+ * - chunk 는 대상 id 를 select ... for update 로 잠그고, 그 id 에 대해서만 native update/delete 를 실행한다.
+ *   bulk HQL 은 hibernate 가 Member, Team.members region 전체를 비우므로, synchronized query space 를 비운 native 쿼리로 실행하고
+ *   2차 캐시에서는 바뀐 Member 와 그 회원이 속한 팀의 Team.members 만 지운다. (update 의 값은 JPQL 식을 컬럼 이름으로 바꿔서 SQL 로 만든다.)
+ * - bulk 연산은 영속성 컨텍스트를 거치지 않으므로, em.clear() 대신 실제로 변경된 Member 만 호출한 쪽의 영속성 컨텍스트에서 detach 한다.
+ * - 엔티티 이벤트를 거치지 않으므로 실행 후 team_stats 를 다시 계산하고, 변경된 회원을 username 인덱스에 다시 반영한다.
+ *   검색 결과 캐시 (MemberSearchCache) 는 어떤 값으로 바뀌었는지 모르므로 커밋 후 전부 지운다.
+ *   team_id 로 나눈 회원 테이블 (PartitionedMemberStore) 을 쓰면 chunk 트랜잭션 안에서 거기에도 다시 반영한다. (같이 커밋/롤백)
+ * - update 는 version 도 같이 올려서, 같은 회원을 읽어 둔 다른 트랜잭션이 bulk 변경을 덮어쓰지 않고 OptimisticLockException 을 받게 한다.
+ * */
+@Service
+public class MemberBulkService {
+
+    private static final String TEAM_MEMBERS = Team.class.getName() + ".members";
+
+    private final JPAQueryFactory jpaQueryFactory;
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final TeamStatsService teamStatsService;
+    private final UsernameSearch usernameSearch;
+    private final MemberSearchCache memberSearchCache;
+    private final ObjectProvider<PartitionedMemberStore> partitionedMemberStore;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final ExecutorService executor;
+
+    public MemberBulkService(JPAQueryFactory jpaQueryFactory,
+                             EntityManager em,
+                             EntityManagerFactory emf,
+                             TeamStatsService teamStatsService,
+                             UsernameSearch usernameSearch,
+                             MemberSearchCache memberSearchCache,
+                             ObjectProvider<PartitionedMemberStore> partitionedMemberStore,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${querydsl.bulk.chunk-size:1000}") int chunkSize,
+                             @Value("${querydsl.bulk.parallelism:4}") int parallelism) {
+        this.jpaQueryFactory = jpaQueryFactory;
+        this.em = em;
+        this.emf = emf;
+        this.teamStatsService = teamStatsService;
+        this.usernameSearch = usernameSearch;
+        this.memberSearchCache = memberSearchCache;
+        this.partitionedMemberStore = partitionedMemberStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "member-bulk-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public BulkResult addAge(int delta) {
+        return update(null, clause -> clause.set(member.age, member.age.add(delta)), false);
+    }
+
+    public BulkResult deleteByAgeLessThan(int age) {
+        return delete(member.age.lt(age), false);
+    }
+
+    /**
+     * @param condition null 이면 전체
+     * @param parallel 트랜잭션 밖에서 호출할 때만 chunk 들을 병렬로 실행한다.
+     * */
+    public BulkResult update(Predicate condition, UnaryOperator<JPAUpdateClause> assignments, boolean parallel) {
+        return execute(condition, parallel, usernameSearch::reload, updateStatement(assignments));
+    }
+
+    public BulkResult delete(Predicate condition, boolean parallel) {
+        AbstractEntityPersister persister = memberPersister();
+        return execute(condition, parallel, usernameSearch::removeAll, new NativeStatement(
+                "delete from " + persister.getTableName() + " where " + persister.getIdentifierColumnNames()[0] + " in (?1)",
+                Collections.emptyMap()));
+    }
+
+    private BulkResult execute(Predicate condition, boolean parallel, Consumer<List<Long>> changed, NativeStatement statement) {
+        boolean async = parallel && !TransactionSynchronizationManager.isActualTransactionActive();
+        List<CompletableFuture<ChunkOutcome>> futures = new ArrayList<>();
+        Throwable failure = null;
+
+        //id 가 듬성듬성해도 빈 chunk 가 생기지 않도록 min ~ max 범위 대신 대상 id 를 chunkSize 개씩 keyset 으로 끊는다.
+        try {
+            List<Long> keys;
+            Long lastId = null;
+            do {
+                keys = nextChunk(condition, lastId);
+                if (keys.isEmpty()) {
+                    break;
+                }
+                lastId = keys.get(keys.size() - 1);
+
+                List<Long> chunkIds = keys;
+                futures.add(async
+                        ? CompletableFuture.supplyAsync(() -> runChunk(condition, chunkIds, statement), executor)
+                        : CompletableFuture.completedFuture(runChunk(condition, chunkIds, statement)));
+            } while (keys.size() == chunkSize);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+
+        //실패한 chunk 가 있어도 나머지 chunk 가 끝날 때까지 기다리고, 이미 커밋된 chunk 의 변경은 반영한 뒤 첫 번째 예외를 던진다.
+        List<BulkChunkResult> chunks = new ArrayList<>(futures.size());
+        List<Long> changedIds = new ArrayList<>();
+        try {
+            for (CompletableFuture<ChunkOutcome> future : futures) {
+                ChunkOutcome outcome;
+                try {
+                    outcome = future.join();
+                } catch (CompletionException e) {
+                    failure = suppress(failure, e.getCause());
+                    continue;
+                }
+                evictFromPersistenceContext(outcome.ids);
+                chunks.add(outcome.result);
+                changedIds.addAll(outcome.ids);
+            }
+        } catch (RuntimeException | Error e) {
+            failure = suppress(failure, e);
+        }
+
+        //뒤처리는 하나가 실패해도 나머지를 실행하고, 그 실패는 첫 번째 예외의 suppressed 로 붙인다.
+        failure = runAfterChunks(failure, teamStatsService::recomputeAll);
+        failure = runAfterChunks(failure, () -> changed.accept(changedIds));
+        if (!changedIds.isEmpty()) {
+            failure = runAfterChunks(failure, memberSearchCache::invalidateAll);
+        }
+
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw failure instanceof RuntimeException ? (RuntimeException) failure : new IllegalStateException(failure);
+        }
+        return new BulkResult(chunks);
+    }
+
+    private static Throwable runAfterChunks(Throwable failure, Runnable step) {
+        try {
+            step.run();
+            return failure;
+        } catch (RuntimeException | Error e) {
+            return suppress(failure, e);
+        }
+    }
+
+    //첫 번째 예외를 던지고, 그 뒤의 예외는 잃지 않도록 suppressed 로 붙인다.
+    private static Throwable suppress(Throwable failure, Throwable e) {
+        if (failure == null) {
+            return e;
+        }
+        if (failure != e) {
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+
+    private List<Long> nextChunk(Predicate condition, Long lastId) {
+        return jpaQueryFactory
+                .select(member.id)
+                .from(member)
+                .where(lastId != null ? member.id.gt(lastId) : null, condition)
+                .orderBy(member.id.asc())
+                .limit(chunkSize)
+                .fetch();
+    }
+
+    //chunk 트랜잭션 안에서 대상 id 를 다시 읽어서 잠그고, 그 id 에 대해서만 실행한다. 그래야 정확히 어떤 엔티티를 detach, evict 할지 알 수 있다.
+    private ChunkOutcome runChunk(Predicate condition, List<Long> chunkIds, NativeStatement statement) {
+        return transactionTemplate.execute(status -> {
+            List<Tuple> targets = jpaQueryFactory
+                    .select(member.id, member.team.id)
+                    .from(member)
+                    .where(member.id.in(chunkIds), condition)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .fetch();
+
+            List<Long> ids = new ArrayList<>(targets.size());
+            Set<Long> teamIds = new HashSet<>();
+            for (Tuple target : targets) {
+                ids.add(target.get(member.id));
+                Long teamId = target.get(member.team.id);
+                if (teamId != null) {
+                    teamIds.add(teamId);
+                }
+            }
+
+            long rows = ids.isEmpty() ? 0 : statement.execute(ids);
+            if (!ids.isEmpty()) {
+                partitionedMemberStore.ifAvailable(store -> store.reload(ids));
+            }
+            evictFromSecondLevelCache(ids, teamIds);
+            return new ChunkOutcome(new BulkChunkResult(chunkIds.get(0), chunkIds.get(chunkIds.size() - 1), rows), ids);
+        });
+    }
+
+    //커밋 전에 다른 트랜잭션이 이전 값을 다시 캐시에 올릴 수 있으므로 커밋 후에 한 번 더 지운다.
+    private void evictFromSecondLevelCache(List<Long> ids, Set<Long> teamIds) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Cache cache = emf.unwrap(SessionFactory.class).getCache();
+        Runnable evict = () -> {
+            for (Long id : ids) {
+                cache.evict(Member.class, id);
+            }
+            for (Long teamId : teamIds) {
+                cache.evictCollectionData(TEAM_MEMBERS, teamId);
+            }
+        };
+
+        evict.run();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict.run();
+            }
+        });
+    }
+
+    //update 는 Member 의 컬럼만 바꿀 수 있다. (연관관계는 외래키를 바꾸므로 Team.members 를 어디까지 지울지 알 수 없다.)
+    private NativeStatement updateStatement(UnaryOperator<JPAUpdateClause> assignments) {
+        AssignmentCapture capture = new AssignmentCapture(em);
+        assignments.apply(capture);
+        if (capture.updates.isEmpty()) {
+            throw new IllegalArgumentException("bulk update 할 컬럼이 없습니다.");
+        }
+
+        AbstractEntityPersister persister = memberPersister();
+        ColumnSerializer serializer = new ColumnSerializer(persister);
+        serializer.append("update ").append(persister.getTableName()).append(" set ");
+        for (Map.Entry<Path<?>, Expression<?>> update : capture.updates.entrySet()) {
+            serializer.append(columnOf(persister, update.getKey())).append(" = ");
+            serializer.handle(update.getValue());
+            serializer.append(", ");
+        }
+
+        String version = persister.getVersionColumnName();
+        String idsLabel = String.valueOf(serializer.getConstantToLabel().size() + 1);
+        serializer.append(version).append(" = ").append(version).append(" + 1")
+                .append(" where ").append(persister.getIdentifierColumnNames()[0]).append(" in (?").append(idsLabel).append(")");
+
+        return new NativeStatement(serializer.toString(), new HashMap<>(serializer.getConstantToLabel()));
+    }
+
+    private AbstractEntityPersister memberPersister() {
+        return (AbstractEntityPersister) emf.unwrap(SessionFactoryImplementor.class)
+                .getMetamodel()
+                .entityPersister(Member.class);
+    }
+
+    private static String columnOf(AbstractEntityPersister persister, Path<?> path) {
+        Path<?> parent = path.getMetadata().getParent();
+        String property = path.getMetadata().getName();
+        if (parent == null || !parent.getMetadata().isRoot() || persister.getPropertyType(property).isAssociationType()) {
+            throw new IllegalArgumentException("bulk update 는 Member 의 컬럼만 사용할 수 있습니다 : " + path);
+        }
+        return persister.getPropertyColumnNames(property)[0];
+    }
+
+    //호출한 스레드에 묶인 영속성 컨텍스트 (트랜잭션 또는 open-in-view) 가 없으면 detach 할 대상도 없다.
+    private void evictFromPersistenceContext(List<Long> ids) {
+        EntityManager em = EntityManagerFactoryUtils.getTransactionalEntityManager(emf);
+        if (ids.isEmpty() || em == null) {
+            return;
+        }
+
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+
+        for (Long id : ids) {
+            Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                em.detach(managed);
+            }
+        }
+    }
+
+    /**
+     * chunk 마다 id 목록만 바꿔서 실행하는 native update/delete. id 목록은 마지막 파라미터 (?n) 로 바인딩한다.
+     * */
+    private final class NativeStatement {
+
+        private final String sql;
+        private final Map<Object, String> constantToLabel;
+
+        private NativeStatement(String sql, Map<Object, String> constantToLabel) {
+            this.sql = sql;
+            this.constantToLabel = constantToLabel;
+        }
+
+        private long execute(List<Long> ids) {
+            Query query = em.createNativeQuery(sql)
+                    .unwrap(NativeQuery.class)
+                    //member 를 synchronized query space 로 두면 hibernate 가 Member, Team.members region 전체를 비운다.
+                    .addSynchronizedQuerySpace("");
+            JPAUtil.setConstants(query, constantToLabel, Collections.emptyMap());
+            query.setParameter(constantToLabel.size() + 1, ids);
+            return query.executeUpdate();
+        }
+    }
+
+    //JPAUpdateClause 를 실행하지 않고 set 한 경로와 값만 모은다.
+    private static final class AssignmentCapture extends JPAUpdateClause {
+
+        private final Map<Path<?>, Expression<?>> updates = new LinkedHashMap<>();
+
+        private AssignmentCapture(EntityManager em) {
+            super(em, member);
+        }
+
+        @Override
+        public <T> JPAUpdateClause set(Path<T> path, T value) {
+            updates.put(path, value != null ? Expressions.constant(value) : Expressions.nullExpression(path));
+            return this;
+        }
+
+        @Override
+        public <T> JPAUpdateClause set(Path<T> path, Expression<? extends T> expression) {
+            updates.put(path, expression != null ? expression : Expressions.nullExpression(path));
+            return this;
+        }
+
+        @Override
+        public <T> JPAUpdateClause setNull(Path<T> path) {
+            updates.put(path, Expressions.nullExpression(path));
+            return this;
+        }
+
+        @Override
+        public JPAUpdateClause set(List<? extends Path<?>> paths, List<?> values) {
+            for (int i = 0; i < paths.size(); i++) {
+                Object value = values.get(i);
+                updates.put(paths.get(i), value instanceof Expression ? (Expression<?>) value
+                        : value != null ? Expressions.constant(value) : Expressions.nullExpression(paths.get(i)));
+            }
+            return this;
+        }
+
+        @Override
+        public JPAUpdateClause where(Predicate... conditions) {
+            throw new UnsupportedOperationException("bulk update 의 대상은 condition 으로 넘깁니다.");
+        }
+    }
+
+    //JPQL 식에서 Member 의 경로만 컬럼 이름으로 바꿔서 출력한다. (사칙연산, 문자열 함수처럼 JPQL 과 SQL 이 같은 식만 쓸 수 있다.)
+    private static final class ColumnSerializer extends JPQLSerializer {
+
+        private final AbstractEntityPersister persister;
+
+        private ColumnSerializer(AbstractEntityPersister persister) {
+            super(HQLTemplates.DEFAULT);
+            this.persister = persister;
+        }
+
+        @Override
+        public Void visit(Path<?> path, Void context) {
+            append(columnOf(persister, path));
+            return null;
+        }
+    }
+
+    private static final class ChunkOutcome {
+
+        private final BulkChunkResult result;
+        private final List<Long> ids;
+
+        private ChunkOutcome(BulkChunkResult result, List<Long> ids) {
+            this.result = result;
+            this.ids = ids;
+        }
+    }
+}
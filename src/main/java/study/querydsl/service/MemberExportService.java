@@ -0,0 +1,97 @@
+package study.querydsl.service;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.repository.MemberSearchRepository;
+
+import javax.persistence.EntityManager;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * 회원 전체를 메모리에 올리지 않고 내보내기
+ * - fetch() 는 결과 전체를 List 로 만들지만, iterate() 는 Hibernate ScrollableResults(forward only cursor) 를 쓰기 때문에
+ *   JDBC fetch size 만큼씩만 DB 에서 가져온다.
+ * - DTO 로 바로 projection 하므로 엔티티가 영속성 컨텍스트에 쌓이지 않지만,
+ *   혹시 모를 누적을 막기 위해 clearInterval 건마다 영속성 컨텍스트를 비운다.
+ * */
+@Service
+public class MemberExportService {
+
+    private final JPAQueryFactory jpaQueryFactory;
+    private final MemberSearchRepository memberSearchRepository;
+    private final EntityManager em;
+    private final int fetchSize;
+    private final int clearInterval;
+
+    public MemberExportService(JPAQueryFactory jpaQueryFactory,
+                               MemberSearchRepository memberSearchRepository,
+                               EntityManager em,
+                               @Value("${querydsl.export.fetch-size:1000}") int fetchSize,
+                               @Value("${querydsl.export.clear-interval:1000}") int clearInterval) {
+        this.jpaQueryFactory = jpaQueryFactory;
+        this.memberSearchRepository = memberSearchRepository;
+        this.em = em;
+        this.fetchSize = fetchSize;
+        this.clearInterval = clearInterval;
+    }
+
+    /**
+     * @return 내보낸 회원 수
+     * */
+    @Transactional(readOnly = true)
+    public long streamMembers(Consumer<MemberDto> consumer) {
+        long count = 0;
+
+        try (CloseableIterator<MemberDto> iterator = jpaQueryFactory
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .orderBy(member.id.asc())
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate()) {
+
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+
+                if (++count % clearInterval == 0) {
+                    em.clear();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * 검색 조건에 맞는 회원만 cursor 로 읽어서 넘긴다. (MemberSearchRepository.search 의 streaming 버전)
+     * @return 넘긴 회원 수
+     * */
+    @Transactional(readOnly = true)
+    public long streamMembers(MemberSearchCondition condition, Consumer<MemberDto> consumer) {
+        long count = 0;
+
+        try (Stream<MemberDto> rows = memberSearchRepository.stream(condition, fetchSize)) {
+            Iterator<MemberDto> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+
+                if (++count % clearInterval == 0) {
+                    em.clear();
+                }
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,41 @@
+package study.querydsl.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberOverviewDto;
+import study.querydsl.repository.MemberQueryRepository;
+import study.querydsl.repository.MemberSortKey;
+import study.querydsl.repository.TeamStatsRepository;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 회원 페이지와 팀 통계는 서로 의존하지 않으므로 AsyncQueryExecutor 로 동시에 읽는다.
+ * - 응답 시간은 두 쿼리의 합이 아니라 더 느린 쪽에 가까워진다.
+ * */
+@Service
+@RequiredArgsConstructor
+public class MemberOverviewService {
+
+    private final AsyncQueryExecutor asyncQueryExecutor;
+    private final MemberQueryRepository memberQueryRepository;
+    private final TeamStatsRepository teamStatsRepository;
+
+    public CompletableFuture<MemberOverviewDto> overview(String cursor, int size) {
+        return asyncQueryExecutor.combine(
+                () -> memberQueryRepository.searchByKeyset(MemberSortKey.AGE, cursor, size),
+                () -> teamStatsRepository.findTeamAgeStats(null),
+                MemberOverviewDto::new);
+    }
+
+    /**
+     * 비교용 : 요청 스레드에서 순서대로 실행
+     * */
+    @Transactional(readOnly = true)
+    public MemberOverviewDto overviewBlocking(String cursor, int size) {
+        return new MemberOverviewDto(
+                memberQueryRepository.searchByKeyset(MemberSortKey.AGE, cursor, size),
+                teamStatsRepository.findTeamAgeStats(null));
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.service;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entities.TeamStats;
+
+import javax.persistence.EntityManager;
+
+/**
+ * team_stats 전체 재계산
+ * - 엔티티 이벤트를 거치지 않는 bulk update/delete 뒤에 호출한다.
+ * - 회원이 없는 팀도 row 를 남겨서 다음 증분 반영이 row 를 새로 만들 일이 없게 한다.
+ * */
+@Service
+@RequiredArgsConstructor
+public class TeamStatsService {
+
+    private final EntityManager em;
+
+    @Transactional
+    public void recomputeAll() {
+        //아직 flush 되지 않은 회원 변경분과 증분 통계를 먼저 반영한다.
+        em.flush();
+
+        executeOnTeamStats("delete from team_stats");
+        executeOnTeamStats("insert into team_stats (team_id, member_count, age_sum, min_age, max_age) " +
+                "select t.id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age) " +
+                "from team t left join member m on m.team_id = t.id group by t.id");
+    }
+
+    //synchronized entity 를 지정하지 않으면 native bulk 쿼리가 2차 캐시 region 전체를 비운다.
+    private void executeOnTeamStats(String sql) {
+        em.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(TeamStats.class)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,117 @@
+package study.querydsl.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TransferResult;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 회원의 팀 이동
+ * - Member 의 @Version 으로 같은 회원을 동시에 옮기는 요청을 감지한다. 충돌하면 새 트랜잭션에서 다시 읽어서 재시도한다.
+ * - Team.members 는 로딩되어 있을 때만 바뀌고 (Member.changeTeam) team 의 version 도 올리지 않으므로,
+ *   팀의 회원 수와 상관없이 member 한 행만 update 되고 같은 팀으로 옮기는 요청끼리는 충돌하지 않는다.
+ * - team_stats row lock 을 기다리다 교착 상태나 lock timeout 으로 실패한 경우 (PessimisticLockingFailureException) 도 같은 방식으로 재시도한다.
+ * - 재시도는 트랜잭션 밖에서 호출할 때만 한다. 트랜잭션 안에서 충돌하면 그 트랜잭션은 이미 롤백 대상이므로 예외를 그대로 던진다.
+ * - querydsl.team.transfer{outcome = success | retry | failure} 로 재시도 비율을 본다.
+ * */
+@Slf4j
+@Service
+public class TeamTransferService {
+
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final Counter successes;
+    private final Counter retries;
+    private final Counter failures;
+
+    public TeamTransferService(EntityManager em,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${querydsl.transfer.max-attempts:5}") int maxAttempts,
+                               @Value("${querydsl.transfer.backoff:5ms}") Duration backoff) {
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoff.toMillis();
+        this.successes = meterRegistry.counter("querydsl.team.transfer", "outcome", "success");
+        this.retries = meterRegistry.counter("querydsl.team.transfer", "outcome", "retry");
+        this.failures = meterRegistry.counter("querydsl.team.transfer", "outcome", "failure");
+    }
+
+    /**
+     * @param toTeamId null 이면 팀에서 뺀다.
+     * */
+    public TransferResult transfer(Long memberId, Long toTeamId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transferOnce(memberId, toTeamId, 1);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            int current = attempt;
+            try {
+                TransferResult result = transactionTemplate.execute(status -> transferOnce(memberId, toTeamId, current));
+                successes.increment();
+                return result;
+            } catch (OptimisticLockingFailureException | OptimisticLockException
+                     | PessimisticLockingFailureException | PessimisticLockException | LockTimeoutException e) {
+                if (attempt >= maxAttempts) {
+                    failures.increment();
+                    throw e;
+                }
+                retries.increment();
+                log.debug("team transfer conflict member={} attempt={}", memberId, attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    private TransferResult transferOnce(Long memberId, Long toTeamId, int attempt) {
+        Member member = em.find(Member.class, memberId);
+        if (member == null) {
+            throw new IllegalArgumentException("회원이 없습니다: " + memberId);
+        }
+        Team team = null;
+        if (toTeamId != null) {
+            team = em.find(Team.class, toTeamId);       //2차 캐시
+            if (team == null) {
+                throw new IllegalArgumentException("팀이 없습니다: " + toTeamId);
+            }
+        }
+
+        Long fromTeamId = member.getTeam() != null ? member.getTeam().getId() : null;
+        member.changeTeam(team);
+        return new TransferResult(memberId, fromTeamId, toTeamId, attempt);
+    }
+
+    //충돌한 요청들이 같은 시점에 다시 부딪히지 않도록 jitter 를 둔 지수 backoff
+    private void backoff(int attempt) {
+        long max = backoffMillis << Math.min(attempt - 1, 6);
+        if (max <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(max / 2, max + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("팀 이동 재시도 중 인터럽트", e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package study.querydsl.stats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * flush 한 번 동안 쌓인 팀별 통계 변화량
+ * - 추가는 count/sum/min/max 모두 증분으로 반영한다.
+ * - 삭제는 count/sum 만 증분으로 빼고, 지워진 나이가 현재 min/max 와 같을 때만 그 팀의 min/max 를 다시 계산한다.
+ * - 통계 row 는 Team 이 insert 되는 flush 에서 만든다. 그 팀은 아직 커밋 전이라 다른 트랜잭션이 같은 row 를 만들 수 없다.
+ * - 그래도 row 가 없는 팀 (SQL 로 직접 넣은 팀 등) 은 member 테이블에서 바로 계산해서 merge (upsert) 한다.
+ * - 반대 방향으로 옮기는 트랜잭션끼리 서로의 row lock 을 기다리지 않도록 항상 team_id 순서로 반영한다.
+ * */
+final class TeamStatsDelta {
+
+    private static final String ADD =
+            "update team_stats set member_count = member_count + ?, age_sum = age_sum + ?, " +
+            "min_age = least(coalesce(min_age, ?), ?), max_age = greatest(coalesce(max_age, ?), ?) " +
+            "where team_id = ?";
+
+    private static final String REMOVE =
+            "update team_stats set member_count = member_count - ?, age_sum = age_sum - ? where team_id = ?";
+
+    private static final String RECOMPUTE_MIN =
+            "update team_stats set min_age = (select min(m.age) from member m where m.team_id = ?) " +
+            "where team_id = ? and min_age >= ?";
+
+    private static final String RECOMPUTE_MAX =
+            "update team_stats set max_age = (select max(m.age) from member m where m.team_id = ?) " +
+            "where team_id = ? and max_age <= ?";
+
+    //같은 팀의 첫 회원을 동시에 추가해도 PK 위반이 나지 않도록 insert 대신 merge 한다. (H2)
+    private static final String MERGE_FROM_MEMBER =
+            "merge into team_stats (team_id, member_count, age_sum, min_age, max_age) key (team_id) " +
+            "select ?, count(*), coalesce(sum(m.age), 0), min(m.age), max(m.age) from member m where m.team_id = ?";
+
+    private final Map<Long, Change> changes = new TreeMap<>();
+
+    void create(Long teamId) {
+        changes.computeIfAbsent(teamId, id -> new Change()).created = true;
+    }
+
+    void add(Long teamId, int age) {
+        if (teamId != null) {
+            changes.computeIfAbsent(teamId, id -> new Change()).add(age);
+        }
+    }
+
+    void remove(Long teamId, int age) {
+        if (teamId != null) {
+            changes.computeIfAbsent(teamId, id -> new Change()).remove(age);
+        }
+    }
+
+    boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    void apply(Connection connection) throws SQLException {
+        try (PreparedStatement add = connection.prepareStatement(ADD);
+             PreparedStatement remove = connection.prepareStatement(REMOVE);
+             PreparedStatement recomputeMin = connection.prepareStatement(RECOMPUTE_MIN);
+             PreparedStatement recomputeMax = connection.prepareStatement(RECOMPUTE_MAX);
+             PreparedStatement merge = connection.prepareStatement(MERGE_FROM_MEMBER)) {
+
+            for (Map.Entry<Long, Change> entry : changes.entrySet()) {
+                long teamId = entry.getKey();
+                Change change = entry.getValue();
+
+                if (change.created) {
+                    //같은 flush 에서 들어간 회원까지 member 테이블에 반영되어 있으므로 증분 없이 그대로 계산한다.
+                    mergeFromMember(merge, teamId);
+                    continue;
+                }
+
+                int updated = 1;
+                if (change.addedCount > 0) {
+                    add.setLong(1, change.addedCount);
+                    add.setLong(2, change.addedSum);
+                    add.setInt(3, change.addedMin);
+                    add.setInt(4, change.addedMin);
+                    add.setInt(5, change.addedMax);
+                    add.setInt(6, change.addedMax);
+                    add.setLong(7, teamId);
+                    updated = add.executeUpdate();
+                }
+
+                if (updated == 0) {
+                    //member 테이블에는 이미 이번 변경까지 반영되어 있으므로 삭제분을 따로 뺄 필요가 없다.
+                    mergeFromMember(merge, teamId);
+                    continue;
+                }
+
+                if (change.removedCount > 0) {
+                    remove.setLong(1, change.removedCount);
+                    remove.setLong(2, change.removedSum);
+                    remove.setLong(3, teamId);
+                    if (remove.executeUpdate() == 0) {
+                        mergeFromMember(merge, teamId);
+                        continue;
+                    }
+
+                    recomputeMin.setLong(1, teamId);
+                    recomputeMin.setLong(2, teamId);
+                    recomputeMin.setInt(3, change.removedMin);
+                    recomputeMin.executeUpdate();
+
+                    recomputeMax.setLong(1, teamId);
+                    recomputeMax.setLong(2, teamId);
+                    recomputeMax.setInt(3, change.removedMax);
+                    recomputeMax.executeUpdate();
+                }
+            }
+        }
+        changes.clear();
+    }
+
+    private static void mergeFromMember(PreparedStatement merge, long teamId) throws SQLException {
+        merge.setLong(1, teamId);
+        merge.setLong(2, teamId);
+        merge.executeUpdate();
+    }
+
+    private static final class Change {
+
+        private boolean created;
+
+        private long addedCount;
+        private long addedSum;
+        private int addedMin = Integer.MAX_VALUE;
+        private int addedMax = Integer.MIN_VALUE;
+
+        private long removedCount;
+        private long removedSum;
+        private int removedMin = Integer.MAX_VALUE;
+        private int removedMax = Integer.MIN_VALUE;
+
+        void add(int age) {
+            addedCount++;
+            addedSum += age;
+            addedMin = Math.min(addedMin, age);
+            addedMax = Math.max(addedMax, age);
+        }
+
+        void remove(int age) {
+            removedCount++;
+            removedSum += age;
+            removedMin = Math.min(removedMin, age);
+            removedMax = Math.max(removedMax, age);
+        }
+    }
+}
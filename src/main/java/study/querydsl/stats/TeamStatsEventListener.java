@@ -0,0 +1,125 @@
+package study.querydsl.stats;
+
+import org.hibernate.HibernateException;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Member 의 insert/update/delete 를 TeamStats 에 증분 반영한다.
+ * - post insert/update/delete 는 flush 도중에 호출되므로 변화량만 모아 두고,
+ *   flush (auto flush 포함) 가 끝난 직후 같은 커넥션, 같은 트랜잭션에서 한 번에 반영한다. 롤백되면 통계도 같이 롤백된다.
+ * - Team 이 insert 되면 그 팀의 통계 row 를 같이 만든다.
+ * - Querydsl update/delete 같은 bulk 연산은 이벤트가 발생하지 않으므로 TeamStatsService.recomputeAll() 을 호출해야 한다.
+ * */
+public class TeamStatsEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+        FlushEventListener, AutoFlushEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Map<EventSource, TeamStatsDelta> pending = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Member member = (Member) event.getEntity();
+            delta(event.getSession()).add(teamId(member.getTeam()), member.getAge());
+        } else if (event.getEntity() instanceof Team) {
+            delta(event.getSession()).create(((Team) event.getEntity()).getId());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            EntityPersister persister = event.getPersister();
+            Object[] state = event.getDeletedState();
+            delta(event.getSession()).remove(teamId(state, persister), age(state, persister));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+
+        Member member = (Member) event.getEntity();
+        Object[] oldState = event.getOldState();
+        if (oldState == null) {
+            //snapshot 없이 update 된 경우 (detached 엔티티 update 등) 이전 팀을 알 수 없으므로 현재 팀만 다시 계산한다.
+            delta(event.getSession()).remove(teamId(member.getTeam()), member.getAge());
+            delta(event.getSession()).add(teamId(member.getTeam()), member.getAge());
+            return;
+        }
+
+        EntityPersister persister = event.getPersister();
+        Long oldTeamId = teamId(oldState, persister);
+        int oldAge = age(oldState, persister);
+        Long newTeamId = teamId(member.getTeam());
+
+        if (!Objects.equals(oldTeamId, newTeamId) || oldAge != member.getAge()) {
+            TeamStatsDelta delta = delta(event.getSession());
+            delta.remove(oldTeamId, oldAge);
+            delta.add(newTeamId, member.getAge());
+        }
+    }
+
+    @Override
+    public void onFlush(FlushEvent event) throws HibernateException {
+        applyPending(event.getSession());
+    }
+
+    @Override
+    public void onAutoFlush(AutoFlushEvent event) throws HibernateException {
+        applyPending(event.getSession());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void applyPending(EventSource session) {
+        TeamStatsDelta delta = pending.remove(session);
+        if (delta != null && !delta.isEmpty()) {
+            session.doWork(delta::apply);
+        }
+    }
+
+    private TeamStatsDelta delta(EventSource session) {
+        return pending.computeIfAbsent(session, s -> {
+            //flush 중 예외로 반영되지 못한 변화량이 남지 않도록 트랜잭션이 끝나면 정리한다.
+            s.getActionQueue().registerProcess((success, ignored) -> pending.remove(s));
+            return new TeamStatsDelta();
+        });
+    }
+
+    private static Long teamId(Object team) {
+        //proxy 여도 id getter 는 초기화 없이 id 를 돌려준다.
+        return team != null ? ((Team) team).getId() : null;
+    }
+
+    private static Long teamId(Object[] state, EntityPersister persister) {
+        return teamId(state[persister.getEntityMetamodel().getPropertyIndex("team")]);
+    }
+
+    private static int age(Object[] state, EntityPersister persister) {
+        return (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+    }
+}
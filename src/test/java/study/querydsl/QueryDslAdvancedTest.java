@@ -15,8 +15,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.Commit;
 import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberDtoProjection;
 import study.querydsl.dto.QMemberDto;
 import study.querydsl.dto.UserDto;
+import study.querydsl.dto.UserDtoProjection;
 import study.querydsl.entities.Member;
 import study.querydsl.entities.QMember;
 import study.querydsl.entities.Team;
@@ -26,6 +28,7 @@ import javax.transaction.Transactional;
 
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static study.querydsl.entities.QMember.member;
 
 @SpringBootTest
@@ -178,6 +181,36 @@ public class QueryDslAdvancedTest {
         fetch.forEach(System.out::println);
     }
 
+    @Test
+    @DisplayName("@DirectProjection 으로 생성된 projection, reflection 없이 setter 를 직접 호출한다")
+    void returnDtoDirectProjection() {
+        List<MemberDto> fetch = jpaQueryFactory
+                .select(MemberDtoProjection.of(member.username, member.age))
+                .from(member)
+                .fetch();
+
+        assertThat(fetch).extracting("username").containsExactly("member1", "member2", "member3", "member4");
+        assertThat(fetch).extracting("age").containsExactly(10, 20, 30, 40);
+    }
+
+    @Test
+    @DisplayName("@DirectProjection 은 위치로 매칭하기 때문에 필드 이름이 달라도 alias 가 필요 없다")
+    void returnDtoDirectProjectionWithoutAlias() {
+        QMember memberSub = new QMember("memberSub");
+
+        List<UserDto> fetch = jpaQueryFactory
+                .select(UserDtoProjection.of(
+                        member.username,
+                        JPAExpressions.select(memberSub.age.max())
+                                .from(memberSub)
+                ))
+                .from(member)
+                .fetch();
+
+        assertThat(fetch).extracting("userDtoName").containsExactly("member1", "member2", "member3", "member4");
+        assertThat(fetch).extracting("userDtoAge").containsOnly(40);
+    }
+
     @Test
     void booleanBuilderSearch1() {
 
@@ -213,6 +246,13 @@ public class QueryDslAdvancedTest {
         members.stream().forEach(System.out::println);
     }
 
+    @Test
+    void where다중파라미터사용_이름없이() {
+        List<Member> members = searchMember2(null, 20);
+
+        assertThat(members).extracting("username").containsExactly("member2");
+    }
+
     private List<Member> searchMember2(String userName, Integer userAge) {
         return jpaQueryFactory
                 .selectFrom(member)
@@ -221,8 +261,9 @@ public class QueryDslAdvancedTest {
     }
 
     //조립해서 사용할 수 있다...!!!
-    private BooleanExpression eqAll(String userName, Integer userAge) {
-        return eqUserName(userName).and(eqUserAge(userAge));
+    //eqUserName(userName).and(...) 는 userName 이 null 이면 NPE -> allOf 는 null 인 조건을 건너뛴다.
+    private Predicate eqAll(String userName, Integer userAge) {
+        return ExpressionUtils.allOf(eqUserName(userName), eqUserAge(userAge));
     }
 
     private BooleanExpression eqUserAge(Integer userAge) {
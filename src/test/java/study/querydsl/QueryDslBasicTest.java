@@ -10,9 +10,11 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
 import study.querydsl.entities.Member;
 import study.querydsl.entities.QMember;
 import study.querydsl.entities.Team;
+import study.querydsl.monitoring.NPlusOneDetectedException;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -22,6 +24,7 @@ import java.util.List;
 
 import static com.querydsl.jpa.JPAExpressions.select;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static study.querydsl.entities.QMember.member;
 import static study.querydsl.entities.QTeam.team;
 
@@ -296,6 +299,23 @@ public class QueryDslBasicTest {
 
     }
 
+    @Test
+    @DisplayName("페치 조인 없이 회원마다 팀을 읽으면 팀마다 select 가 나가서 N+1 로 실패한다 (QueryCountTestExecutionListener)")
+    void fetchJoinNoInLoop() {
+        em.flush();
+        em.clear();
+
+        List<Member> members = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.in("member1", "member2", "member3", "member4"))
+                .fetch();
+
+        Throwable thrown = catchThrowable(() -> members.forEach(m -> m.getTeam().getName()));
+
+        //hibernate 가 감쌀 수 있으므로 root cause 로 확인한다.
+        assertThat(NestedExceptionUtils.getMostSpecificCause(thrown)).isInstanceOf(NPlusOneDetectedException.class);
+    }
+
     @Test
     @DisplayName("페치 조인 사용할 때")
     void fetchJoin() {
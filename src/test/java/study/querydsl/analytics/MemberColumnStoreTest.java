@@ -0,0 +1,101 @@
+package study.querydsl.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.TeamAgeStatsDto;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * segment-size 를 작게 해서 fork-join 경로도 같이 탄다.
+ * */
+@SpringBootTest(properties = "querydsl.analytics.segment-size=2")
+@Transactional
+class MemberColumnStoreTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberColumnStore memberColumnStore;
+
+    MemberColumns columns;
+
+    @BeforeEach
+    void init() {
+        Team teamA = new Team("COLUMN A");
+        Team teamB = new Team("COLUMN B");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("column1", 10, teamA));
+        em.persist(new Member("column2", 20, teamA));
+        em.persist(new Member("column3", 30, teamB));
+        em.persist(new Member("column4", 40, teamB));
+        em.persist(new Member("column5", 50));
+
+        em.flush();
+        em.clear();
+
+        columns = memberColumnStore.refresh();
+    }
+
+    @Test
+    void 팀별_나이_집계는_병렬과_순차가_같다() {
+        List<TeamAgeStatsDto> parallel = columnTeams(columns.ageStatsByTeam(0, Integer.MAX_VALUE, true));
+        List<TeamAgeStatsDto> sequential = columnTeams(columns.ageStatsByTeam(0, Integer.MAX_VALUE, false));
+
+        assertThat(parallel)
+                .extracting(TeamAgeStatsDto::getTeamName, TeamAgeStatsDto::getMemberCount, TeamAgeStatsDto::getAvgAge,
+                        TeamAgeStatsDto::getMinAge, TeamAgeStatsDto::getMaxAge)
+                .containsExactlyInAnyOrder(
+                        tuple("COLUMN A", 2L, 15.0, 10, 20),
+                        tuple("COLUMN B", 2L, 35.0, 30, 40));
+        assertThat(sequential).usingRecursiveFieldByFieldElementComparator().containsExactlyInAnyOrderElementsOf(parallel);
+    }
+
+    @Test
+    void 나이_범위로_거르고_집계한다() {
+        List<TeamAgeStatsDto> stats = columnTeams(columns.ageStatsByTeam(20, 30));
+
+        assertThat(stats)
+                .extracting(TeamAgeStatsDto::getTeamName, TeamAgeStatsDto::getMemberCount)
+                .containsExactlyInAnyOrder(tuple("COLUMN A", 1L), tuple("COLUMN B", 1L));
+
+        int[] rows = columns.filterByAge(40, 50);
+        List<String> usernames = Arrays.stream(rows)
+                .mapToObj(columns::username)
+                .filter(username -> username != null && username.startsWith("column"))
+                .collect(Collectors.toList());
+        assertThat(usernames).containsExactly("column4", "column5");
+    }
+
+    @Test
+    void 사전_인코딩된_값을_행_번호로_읽는다() {
+        int row = Arrays.stream(columns.filterByAge(50, 50))
+                .filter(r -> "column5".equals(columns.username(r)))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+
+        assertThat(columns.age(row)).isEqualTo(50);
+        assertThat(columns.teamName(row)).isNull();
+        assertThat(columns.teamCode(row)).isEqualTo(MemberColumns.NO_TEAM);
+    }
+
+    private static List<TeamAgeStatsDto> columnTeams(List<TeamAgeStatsDto> stats) {
+        return stats.stream()
+                .filter(s -> s.getTeamName().startsWith("COLUMN"))
+                .collect(Collectors.toList());
+    }
+}
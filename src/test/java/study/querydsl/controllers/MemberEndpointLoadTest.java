@@ -0,0 +1,213 @@
+package study.querydsl.controllers;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberIngestRecord;
+import study.querydsl.service.MemberBulkIngestService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * 회원 조회 endpoint 에 동시 요청 수를 1, 2, 4, ... 로 늘려가며 풀이 포화되는 지점을 찾는다.
+ * - ./gradlew benchmark --tests '*MemberEndpointLoadTest' -Dbenchmark.maxConcurrency=64 -Dbenchmark.stepSeconds=10
+ * - 단계마다 처리량(req/s), 응답 시간 p50/p99, 커넥션 대기 시간 (hikaricp.connections.acquire), 최대 대기 스레드 수 (pending), timeout 수를 출력한다.
+ * - 처리량이 더 늘지 않는데 커넥션 대기 시간만 늘기 시작하는 단계가 포화 지점이다. 그 동시 요청 수를 보고 maximum-pool-size 를 정한다.
+ * - 요청은 다른 스레드(서버)의 트랜잭션에서 실행되므로 데이터는 커밋하고 끝나면 직접 지운다.
+ * */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MemberEndpointLoadTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 20_000);
+    private static final int MAX_CONCURRENCY = Integer.getInteger("benchmark.maxConcurrency", 64);
+    private static final int STEP_SECONDS = Integer.getInteger("benchmark.stepSeconds", 5);
+    private static final int TEAMS = 10;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    MemberBulkIngestService memberBulkIngestService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() {
+        memberBulkIngestService.ingest(IntStream.range(0, ROWS)
+                .mapToObj(i -> new MemberIngestRecord("load" + i, i % 100, "LOAD TEAM " + (i % TEAMS))));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from member where username like 'load%'");
+        jdbcTemplate.update("delete from team where name like 'LOAD TEAM %'");
+    }
+
+    @Test
+    void saturation() throws Exception {
+        List<String> paths = Arrays.asList(
+                "/members/overview?size=20",
+                "/members/stream?teamName=LOAD%20TEAM%201&ageGoe=90");
+
+        System.out.println("rows = " + ROWS + ", step = " + STEP_SECONDS + "s, endpoints = " + paths);
+        System.out.println("concurrency | req/s | p50 ms | p99 ms | errors | acquire mean ms | acquire max ms | max pending | timeouts");
+
+        double previousThroughput = 0;
+        Integer saturation = null;
+        for (int concurrency = 1; concurrency <= MAX_CONCURRENCY; concurrency *= 2) {
+            StepResult result = runStep(concurrency, paths);
+            System.out.println(result);
+
+            //처리량이 10% 도 늘지 않는데 커넥션 대기가 생기기 시작하면 포화
+            if (saturation == null && previousThroughput > 0
+                    && result.throughput < previousThroughput * 1.1 && result.maxPending > 0) {
+                saturation = concurrency / 2;
+            }
+            previousThroughput = Math.max(previousThroughput, result.throughput);
+        }
+        System.out.println("saturation concurrency = " + (saturation != null ? saturation : "not reached (<= " + MAX_CONCURRENCY + ")"));
+    }
+
+    private StepResult runStep(int concurrency, List<String> paths) throws Exception {
+        Timer acquire = meterRegistry.get("hikaricp.connections.acquire").tag("pool", "primary").timer();
+        Counter timeouts = meterRegistry.get("hikaricp.connections.timeout").tag("pool", "primary").counter();
+        Gauge pending = meterRegistry.get("hikaricp.connections.pending").tag("pool", "primary").gauge();
+
+        long acquireCount = acquire.count();
+        double acquireNanos = acquire.totalTime(TimeUnit.NANOSECONDS);
+        double timeoutCount = timeouts.count();
+
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STEP_SECONDS);
+        AtomicInteger errors = new AtomicInteger();
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int client = 0; client < concurrency; client++) {
+            int offset = client;
+            futures.add(clients.submit(() -> drive(paths, offset, deadline, errors)));
+        }
+
+        //요청이 도는 동안 대기 중인 스레드 수를 샘플링한다.
+        double maxPending = 0;
+        while (System.nanoTime() < deadline) {
+            maxPending = Math.max(maxPending, pending.value());
+            Thread.sleep(20);
+        }
+
+        List<Long> latencies = new ArrayList<>();
+        for (Future<long[]> future : futures) {
+            for (long latency : future.get()) {
+                latencies.add(latency);
+            }
+        }
+        clients.shutdown();
+        latencies.sort(null);
+
+        long acquired = acquire.count() - acquireCount;
+        double acquireMeanMillis = acquired > 0 ? (acquire.totalTime(TimeUnit.NANOSECONDS) - acquireNanos) / acquired / 1_000_000.0 : 0;
+        return new StepResult(concurrency, latencies.size() / (double) STEP_SECONDS,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), errors.get(),
+                acquireMeanMillis, acquire.max(TimeUnit.MILLISECONDS), maxPending, timeouts.count() - timeoutCount);
+    }
+
+    //deadline 까지 endpoint 를 번갈아 호출하고 응답 시간(나노초)을 돌려준다.
+    private long[] drive(List<String> paths, int offset, long deadline, AtomicInteger errors) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        for (int i = offset; System.nanoTime() < deadline; i++) {
+            long start = System.nanoTime();
+            if (!call(paths.get(i % paths.size()))) {
+                errors.incrementAndGet();
+                continue;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private boolean call(String path) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+            connection.setReadTimeout(30_000);
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                byte[] buffer = new byte[8192];
+                while (in != null && in.read(buffer) >= 0) {
+                    //응답을 끝까지 읽어야 서버의 cursor, 커넥션이 반납된다.
+                }
+            }
+            return status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1_000_000.0;
+    }
+
+    private static final class StepResult {
+
+        private final int concurrency;
+        private final double throughput;
+        private final double p50;
+        private final double p99;
+        private final int errors;
+        private final double acquireMean;
+        private final double acquireMax;
+        private final double maxPending;
+        private final double timeouts;
+
+        private StepResult(int concurrency, double throughput, double p50, double p99, int errors,
+                           double acquireMean, double acquireMax, double maxPending, double timeouts) {
+            this.concurrency = concurrency;
+            this.throughput = throughput;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.errors = errors;
+            this.acquireMean = acquireMean;
+            this.acquireMax = acquireMax;
+            this.maxPending = maxPending;
+            this.timeouts = timeouts;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%11d | %5.0f | %6.2f | %6.2f | %6d | %15.3f | %14.2f | %11.0f | %8.0f",
+                    concurrency, throughput, p50, p99, errors, acquireMean, acquireMax, maxPending, timeouts);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "querydsl.pool.statement-cache-size=32")
+class PoolProfileTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    PoolProfile poolProfile;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void 자동_설정된_풀에_spring_datasource_hikari_와_statement_cache_가_적용된다() {
+        HikariDataSource hikari = DataSourceUnwrapper.unwrap(dataSource, HikariDataSource.class);
+
+        assertThat(hikari).isNotNull();
+        assertThat(hikari.getPoolName()).isEqualTo("primary");
+        assertThat(hikari.getMaximumPoolSize()).isEqualTo(10);
+        assertThat(hikari.getLeakDetectionThreshold()).isEqualTo(60_000L);
+        assertThat(hikari.getDataSourceProperties()).containsEntry("QUERY_CACHE_SIZE", "32");
+    }
+
+    @Test
+    void 풀_metric_이_등록된다() {
+        jdbcTemplate.queryForObject("select 1", Integer.class);
+
+        assertThat(meterRegistry.find("hikaricp.connections.acquire").tag("pool", "primary").timer()).isNotNull();
+        assertThat(meterRegistry.find("hikaricp.connections.active").tag("pool", "primary").gauge()).isNotNull();
+        assertThat(meterRegistry.find("hikaricp.connections.timeout").tag("pool", "primary").counter()).isNotNull();
+    }
+
+    @Test
+    void 직접_만드는_풀에도_같은_설정이_적용된다() {
+        try (HikariDataSource replica = new HikariDataSource()) {
+            replica.setPoolName("replica-test");
+            replica.setJdbcUrl("jdbc:h2:mem:pool_profile");
+            poolProfile.apply(replica);
+
+            assertThat(replica.getMaximumPoolSize()).isEqualTo(10);
+            assertThat(replica.getConnectionTimeout()).isEqualTo(3_000L);
+            assertThat(replica.getDataSourceProperties()).containsEntry("QUERY_CACHE_SIZE", "32");
+            assertThat(replica.getMetricRegistry()).isSameAs(meterRegistry);
+        }
+    }
+
+    @Test
+    void statement_cache_설정은_드라이버마다_다르다() {
+        Properties mysql = PoolProfile.statementCacheProperties("jdbc:mysql://localhost/querydsl", 250);
+        Properties postgres = PoolProfile.statementCacheProperties("jdbc:postgresql://localhost/querydsl", 250);
+
+        assertThat(mysql).containsEntry("cachePrepStmts", "true").containsEntry("prepStmtCacheSize", "250");
+        assertThat(postgres).containsEntry("preparedStatementCacheQueries", "250");
+        assertThat(PoolProfile.statementCacheProperties("jdbc:h2:mem:test", 0)).isEmpty();
+        assertThat(PoolProfile.statementCacheProperties("jdbc:unknown:test", 250)).isEmpty();
+    }
+}
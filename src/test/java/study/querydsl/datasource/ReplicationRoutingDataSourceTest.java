@@ -0,0 +1,99 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1",
+        "querydsl.datasource.routing.enabled=true",
+        "querydsl.datasource.routing.health-check-interval=1h",
+        "querydsl.datasource.routing.replicas[0].name=replica1",
+        "querydsl.datasource.routing.replicas[0].url=jdbc:h2:mem:routing_replica1;DB_CLOSE_DELAY=-1",
+        "querydsl.datasource.routing.replicas[0].username=sa",
+        "querydsl.datasource.routing.replicas[0].password=sa",
+        "querydsl.datasource.routing.replicas[1].name=replica2",
+        "querydsl.datasource.routing.replicas[1].url=jdbc:h2:mem:routing_replica2;DB_CLOSE_DELAY=-1",
+        "querydsl.datasource.routing.replicas[1].username=sa",
+        "querydsl.datasource.routing.replicas[1].password=sa"
+})
+class ReplicationRoutingDataSourceTest {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ReplicaSelector replicaSelector;
+
+    @Test
+    void 쓰기_트랜잭션은_primary() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        String database = tx.execute(status -> currentDatabase());
+
+        assertThat(database).isEqualToIgnoringCase("routing_primary");
+    }
+
+    @Test
+    void 읽기_트랜잭션은_replica_round_robin() {
+        TransactionTemplate tx = readOnly();
+
+        String first = tx.execute(status -> currentDatabase());
+        String second = tx.execute(status -> currentDatabase());
+
+        assertThat(first).startsWithIgnoringCase("routing_replica");
+        assertThat(second).startsWithIgnoringCase("routing_replica");
+        assertThat(first).isNotEqualToIgnoringCase(second);
+    }
+
+    @Test
+    void replica_가_모두_unhealthy_이면_primary_로_fallback() {
+        replicaSelector.getReplicas().forEach(replica -> replica.update(false, null));
+        try {
+            String database = readOnly().execute(status -> currentDatabase());
+
+            assertThat(database).isEqualToIgnoringCase("routing_primary");
+        } finally {
+            replicaSelector.checkHealth();
+        }
+
+        assertThat(replicaSelector.getReplicas()).allMatch(ReplicaNode::isHealthy);
+    }
+
+    @Test
+    void ReplicaSelector_를_닫으면_replica_커넥션_풀도_닫힌다() {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:routing_closed_replica");
+        ReplicaSelector selector = new ReplicaSelector(
+                Collections.singletonList(new ReplicaNode("closed", pool)), null, null, Duration.ofHours(1));
+
+        selector.checkHealth();
+        assertThat(selector.select()).isNotNull();
+
+        selector.close();
+
+        assertThat(pool.isClosed()).isTrue();
+    }
+
+    private TransactionTemplate readOnly() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return tx;
+    }
+
+    private String currentDatabase() {
+        return jdbcTemplate.queryForObject("select database()", String.class);
+    }
+}
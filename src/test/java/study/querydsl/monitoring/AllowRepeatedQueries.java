@@ -0,0 +1,20 @@
+package study.querydsl.monitoring;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * QueryCountTestExecutionListener 의 N+1 검사에서 뺄 테스트 (클래스 또는 메서드)
+ * - 페이지를 이어서 읽거나, chunk 로 나눠 실행하거나, 캐시 hit 을 확인하려고 같은 모양의 쿼리를 일부러 여러 번 실행하는 경우
+ * */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AllowRepeatedQueries {
+
+    /**
+     * 같은 쿼리를 반복하는 이유
+     * */
+    String value();
+}
@@ -0,0 +1,83 @@
+package study.querydsl.monitoring;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class QueryCountScopeTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory jpaQueryFactory;
+
+    @BeforeEach
+    void init() {
+        Team teamA = new Team("TEAM A");
+        Team teamB = new Team("TEAM B");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    @DisplayName("페치 조인 없이 member.team 을 돌면서 읽으면 팀마다 select 가 나가서 N+1 로 실패한다")
+    void lazyTeamInLoop() {
+        try (QueryCountScope scope = QueryCountScope.open(2, true)) {
+            List<Member> members = jpaQueryFactory.selectFrom(member).fetch();
+
+            Throwable thrown = catchThrowable(() -> members.forEach(m -> m.getTeam().getName()));
+
+            //hibernate 가 감쌀 수 있으므로 root cause 로 확인한다.
+            assertThat(NestedExceptionUtils.getMostSpecificCause(thrown)).isInstanceOf(NPlusOneDetectedException.class);
+        }
+    }
+
+    @Test
+    @DisplayName("페치 조인을 쓰면 쿼리 한 번으로 끝난다")
+    void fetchJoinTeamInLoop() {
+        try (QueryCountScope scope = QueryCountScope.open(2, true)) {
+            List<Member> members = jpaQueryFactory
+                    .selectFrom(member)
+                    .join(member.team, team).fetchJoin()
+                    .fetch();
+
+            members.forEach(m -> m.getTeam().getName());
+
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+            assertThat(scope.hasNPlusOne()).isFalse();
+        }
+    }
+
+    @Test
+    void in_절_파라미터_개수가_달라도_같은_모양이다() {
+        assertThat(QueryCountScope.shapeOf("select * from member where id in (?, ?)"))
+                .isEqualTo(QueryCountScope.shapeOf("select *\n  from member where id in (?,?,?)"));
+    }
+}
@@ -0,0 +1,43 @@
+package study.querydsl.monitoring;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.test.context.TestContext;
+import org.springframework.test.context.support.AbstractTestExecutionListener;
+
+/**
+ * 모든 스프링 테스트의 테스트 메서드 본문을 fail-fast QueryCountScope 로 감싼다. (META-INF/spring.factories 로 등록)
+ * - 같은 모양의 select 가 querydsl.n-plus-one.threshold 번 실행되면 그 자리에서 NPlusOneDetectedException 으로 실패한다.
+ * - @BeforeEach/@AfterEach 의 fixture 준비, 정리는 세지 않는다.
+ * - 테스트 스레드에서 실행된 SQL 만 센다. (다른 스레드의 요청, 비동기 작업은 각자 scope 를 연다.)
+ * - 같은 쿼리를 일부러 여러 번 실행하는 테스트는 @AllowRepeatedQueries 로 뺀다.
+ * */
+public class QueryCountTestExecutionListener extends AbstractTestExecutionListener {
+
+    private static final String SCOPE = QueryCountTestExecutionListener.class.getName() + ".scope";
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public void beforeTestExecution(TestContext testContext) {
+        if (AnnotatedElementUtils.hasAnnotation(testContext.getTestMethod(), AllowRepeatedQueries.class)
+                || AnnotatedElementUtils.hasAnnotation(testContext.getTestClass(), AllowRepeatedQueries.class)) {
+            return;
+        }
+
+        int threshold = testContext.getApplicationContext().getEnvironment()
+                .getProperty("querydsl.n-plus-one.threshold", Integer.class, 2);
+        testContext.setAttribute(SCOPE, QueryCountScope.open(threshold, true));
+    }
+
+    @Override
+    public void afterTestExecution(TestContext testContext) {
+        QueryCountScope scope = (QueryCountScope) testContext.removeAttribute(SCOPE);
+        if (scope != null) {
+            scope.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package study.querydsl.monitoring;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entities.QMember.member;
+
+@SpringBootTest
+@Transactional
+class QueryMetricsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory jpaQueryFactory;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    QueryMetrics queryMetrics;
+
+    @BeforeEach
+    void init() {
+        Team teamA = new Team("METRICS TEAM");
+        em.persist(teamA);
+
+        em.persist(new Member("metrics1", 10, teamA));
+        em.persist(new Member("metrics2", 20, teamA));
+        em.persist(new Member("metrics3", 30, teamA));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void DataSource_는_QueryMetricsDataSource_로_감싸진다() {
+        assertThat(dataSource).isInstanceOf(QueryMetricsDataSource.class);
+    }
+
+    @Test
+    void select_의_실행시간과_행_수가_shape_별로_기록된다() {
+        DistributionSummary before = meterRegistry.find("querydsl.query.rows")
+                .tags("operation", "select", "table", "member")
+                .summary();
+        double rowsBefore = before != null ? before.totalAmount() : 0;
+
+        List<Member> result = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("metrics"))
+                .fetch();
+
+        assertThat(result).hasSize(3);
+
+        Timer execution = meterRegistry.find("querydsl.query.execution")
+                .tags("operation", "select", "table", "member")
+                .timer();
+        DistributionSummary rows = meterRegistry.find("querydsl.query.rows")
+                .tags("operation", "select", "table", "member")
+                .summary();
+
+        assertThat(execution).isNotNull();
+        assertThat(execution.count()).isPositive();
+        assertThat(rows).isNotNull();
+        assertThat(rows.totalAmount() - rowsBefore).isGreaterThanOrEqualTo(3);
+        assertThat(meterRegistry.find("querydsl.query.hydration").tags("table", "member").timer()).isNotNull();
+    }
+
+    @Test
+    void slow_query_로그에는_shape_시간_행수_파라미터가_들어간다() {
+        QueryMetrics queryMetrics = new QueryMetrics(new SimpleMeterRegistry(), Duration.ZERO, false, 10, 10);
+        String sql = "select m.member_id from member m where m.username = ? and m.age in (?, ?)";
+
+        String formatted = QueryMetrics.formatSlowQuery(
+                queryMetrics.new Shape("00000000", QueryCountScope.shapeOf(sql)),
+                sql, 1_750_000, 1_000_000, 500_000, 250_000, 2, new Object[]{"member1", 10, null});
+
+        assertThat(formatted)
+                .startsWith("slow_query shape=00000000 operation=select table=member")
+                .contains("total_ms=1.75", "execute_ms=1.00", "fetch_ms=0.50", "hydration_ms=0.25", "rows=2")
+                .contains("params=['member1', 10, null]")
+                .endsWith("sql=select m.member_id from member m where m.username = ? and m.age in (?)");
+    }
+
+    @Test
+    void shape_가_max_shapes_를_넘으면_shape_other_로_합친다() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QueryMetrics queryMetrics = new QueryMetrics(registry, Duration.ofHours(1), false, 10, 2);
+
+        for (int i = 0; i < 5; i++) {
+            queryMetrics.record("select m.member_id from member m where m.age = " + i, 1_000, 0, 0, 1, null);
+        }
+        queryMetrics.record("select t.team_id from team t where t.name = 'x'", 1_000, 0, 0, 1, null);
+
+        assertThat(registry.find("querydsl.query.execution").timers()).hasSize(4);
+        assertThat(registry.find("querydsl.query.execution").tags("shape", QueryMetrics.OTHER, "table", "member").timer().count())
+                .isEqualTo(3);
+        assertThat(registry.find("querydsl.query.execution").tags("shape", QueryMetrics.OTHER, "table", "team").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void close_하면_감싼_connection_pool_도_닫힌다() throws Exception {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:queryMetricsClose");
+        QueryMetricsDataSource wrapped = new QueryMetricsDataSource(pool, queryMetrics, null);
+
+        try (Connection connection = wrapped.getConnection()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+        wrapped.close();
+
+        assertThat(pool.isClosed()).isTrue();
+    }
+}
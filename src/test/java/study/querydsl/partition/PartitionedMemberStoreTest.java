@@ -0,0 +1,161 @@
+package study.querydsl.partition;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+import study.querydsl.repository.MemberSearchRepository;
+import study.querydsl.service.MemberBulkService;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * partition 테이블은 member 테이블과 같은 트랜잭션에서 바뀌므로, 커밋/롤백 후의 상태를 보려고 @Transactional 을 쓰지 않고 직접 정리한다.
+ * */
+@SpringBootTest(properties = {
+        "querydsl.partitioning.enabled=true",
+        "querydsl.partitioning.strategy=RANGE",
+        "querydsl.partitioning.partitions=4",
+        "querydsl.partitioning.range-width=1",
+        "querydsl.username-index.directory="})
+@AllowRepeatedQueries("같은 조건으로 partition 과 member 테이블 결과를 비교한다.")
+class PartitionedMemberStoreTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    PartitionedMemberStore partitionedMemberStore;
+
+    @Autowired
+    MemberSearchRepository memberSearchRepository;
+
+    @Autowired
+    MemberBulkService memberBulkService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    Team teamA;
+    Team teamB;
+
+    @BeforeEach
+    void init() {
+        teamA = new Team("PART A");
+        teamB = new Team("PART B");
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 1; i <= 3; i++) {
+                em.persist(new Member("part" + i, i * 10, teamA));
+            }
+            em.persist(new Member("part4", 40, teamB));
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("select m from Member m where m.username like 'part%'", Member.class)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.createQuery("select t from Team t where t.name like 'PART%'", Team.class)
+                    .getResultList()
+                    .forEach(em::remove);
+        });
+    }
+
+    @Test
+    void 팀_이름으로_검색하면_그_팀의_partition_만_읽고_결과는_member_테이블과_같다() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("PART A");
+        condition.setAgeGoe(20);
+
+        DistributionSummary pruned = meterRegistry.get("querydsl.partition.scanned").tag("pruned", "true").summary();
+        double scannedBefore = pruned.totalAmount();
+
+        assertThat(partitionedMemberStore.search(condition))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(memberSearchRepository.searchMemberTable(condition));
+        assertThat(partitionedMemberStore.search(condition)).extracting(MemberDto::getUsername).containsExactly("part2", "part3");
+        assertThat(pruned.totalAmount() - scannedBefore).isEqualTo(2.0);      //한 번에 partition 1개씩
+
+        assertThat(partitionedMemberStore.scanAll(condition)).extracting(MemberDto::getUsername).containsExactly("part2", "part3");
+    }
+
+    @Test
+    void 팀을_옮기면_커밋과_함께_새_partition_에서_찾는다() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Member moved = em.createQuery("select m from Member m where m.username = 'part1'", Member.class).getSingleResult();
+            moved.changeTeam(em.find(Team.class, teamB.getId()));
+        });
+
+        MemberSearchCondition inB = new MemberSearchCondition();
+        inB.setTeamName("PART B");
+        assertThat(partitionedMemberStore.search(inB)).extracting(MemberDto::getUsername).containsExactly("part1", "part4");
+
+        MemberSearchCondition inA = new MemberSearchCondition();
+        inA.setTeamName("PART A");
+        assertThat(partitionedMemberStore.search(inA)).extracting(MemberDto::getUsername).containsExactly("part2", "part3");
+    }
+
+    @Test
+    void bulk_update_와_delete_도_반영된다() {
+        memberBulkService.update(member.username.eq("part2"), clause -> clause.set(member.age, 25), false);
+        memberBulkService.delete(member.username.eq("part3"), false);
+
+        MemberSearchCondition inA = new MemberSearchCondition();
+        inA.setTeamName("PART A");
+        assertThat(partitionedMemberStore.search(inA)).extracting(MemberDto::getAge).containsExactly(10, 25);
+    }
+
+    @Test
+    void 롤백된_변경은_partition_에도_남지_않는다() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("part5", 50, em.find(Team.class, teamA.getId())));
+            em.createQuery("select m from Member m where m.username = 'part1'", Member.class).getSingleResult()
+                    .changeTeam(em.find(Team.class, teamB.getId()));
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        MemberSearchCondition inA = new MemberSearchCondition();
+        inA.setTeamName("PART A");
+        assertThat(partitionedMemberStore.search(inA)).extracting(MemberDto::getAge).containsExactly(10, 20, 30);
+    }
+
+    @Test
+    void 팀_이름이_있는_MemberSearchRepository_search_는_partition_을_읽는다() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("PART B");
+
+        DistributionSummary pruned = meterRegistry.get("querydsl.partition.scanned").tag("pruned", "true").summary();
+        long countBefore = pruned.count();
+
+        assertThat(memberSearchRepository.search(condition)).extracting(MemberDto::getUsername).containsExactly("part4");
+        assertThat(pruned.count() - countBefore).isEqualTo(1);
+    }
+
+    @Test
+    void 없는_팀은_partition_을_읽지_않는다() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("PART NONE");
+
+        assertThat(partitionedMemberStore.search(condition)).isEmpty();
+    }
+}
@@ -0,0 +1,53 @@
+package study.querydsl.partition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TeamPartitioningTest {
+
+    @Test
+    void range_는_range_width_개씩_끊고_마지막_partition_은_끝이_열려있다() {
+        TeamPartitioning partitioning = new TeamPartitioning(TeamPartitioning.Strategy.RANGE, 4, 10);
+
+        assertThat(partitioning.partitionOf(1L)).isZero();
+        assertThat(partitioning.partitionOf(10L)).isZero();
+        assertThat(partitioning.partitionOf(11L)).isEqualTo(1);
+        assertThat(partitioning.partitionOf(40L)).isEqualTo(3);
+        assertThat(partitioning.partitionOf(1_000L)).isEqualTo(3);
+        assertThat(partitioning.partitionsOf(Arrays.asList(3L, 7L, 15L))).containsExactly(0, 1);
+    }
+
+    @Test
+    void hash_는_연속된_team_id_를_모든_partition_에_퍼뜨린다() {
+        TeamPartitioning partitioning = new TeamPartitioning(TeamPartitioning.Strategy.HASH, 16, 0);
+
+        Set<Integer> used = new HashSet<>();
+        for (long teamId = 1; teamId <= 100; teamId++) {
+            int partition = partitioning.partitionOf(teamId);
+            assertThat(partition).isBetween(0, 15);
+            assertThat(partitioning.partitionOf(teamId)).isEqualTo(partition);
+            used.add(partition);
+        }
+        assertThat(used).hasSize(16);
+    }
+
+    @Test
+    void 팀이_없으면_0번_partition() {
+        assertThat(new TeamPartitioning(TeamPartitioning.Strategy.HASH, 8, 0).partitionOf(null)).isZero();
+        assertThat(new TeamPartitioning(TeamPartitioning.Strategy.RANGE, 8, 5).partitionOf(null)).isZero();
+    }
+
+    @Test
+    void 잘못된_설정은_거부한다() {
+        assertThatThrownBy(() -> new TeamPartitioning(TeamPartitioning.Strategy.HASH, 0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TeamPartitioning(TeamPartitioning.Strategy.RANGE, 4, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,152 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.QueryCountScope;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class FetchProfilesTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory jpaQueryFactory;
+
+    @Autowired
+    FetchProfiles fetchProfiles;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() {
+        for (int t = 1; t <= 3; t++) {
+            Team profileTeam = new Team("PROFILE " + t);
+            em.persist(profileTeam);
+            for (int i = 1; i <= 4; i++) {
+                em.persist(new Member("profile" + t + "_" + i, t * 10 + i, profileTeam));
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void MEMBER_ONLY_는_fetch_join_을_빼고_team_은_proxy_로_남긴다() {
+        JPAQuery<Member> query = jpaQueryFactory
+                .selectFrom(member)
+                .join(member.team, team).fetchJoin()
+                .where(team.name.eq("PROFILE 1"));
+
+        assertThat(fetchProfiles.apply(query, FetchProfile.MEMBER_ONLY).toString())
+                .containsIgnoringCase("join")
+                .doesNotContainIgnoringCase("fetch");
+
+        List<Member> members = fetchProfiles.fetchMembers(query, FetchProfile.MEMBER_ONLY);
+
+        assertThat(members).hasSize(4);
+        assertThat(members).allMatch(found -> !Hibernate.isInitialized(found.getTeam()));
+    }
+
+    @Test
+    void MEMBER_WITH_TEAM_은_쿼리_한번으로_team_까지_읽는다() {
+        JPAQuery<Member> query = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("profile"))
+                .orderBy(member.age.asc())
+                .offset(2)
+                .limit(5);
+
+        try (QueryCountScope scope = QueryCountScope.open(2, false)) {
+            List<Member> members = fetchProfiles.fetchMembers(query, FetchProfile.MEMBER_WITH_TEAM);
+
+            assertThat(members).hasSize(5);
+            assertThat(members).extracting(found -> found.getTeam().getName())
+                    .containsExactly("PROFILE 1", "PROFILE 1", "PROFILE 2", "PROFILE 2", "PROFILE 2");
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void MEMBER_WITH_TEAM_은_이미_있는_team_join_에_fetch_만_붙인다() {
+        JPAQuery<Member> query = jpaQueryFactory
+                .selectFrom(member)
+                .join(member.team, team)
+                .where(team.name.eq("PROFILE 3"));
+
+        String jpql = fetchProfiles.apply(query, FetchProfile.MEMBER_WITH_TEAM).toString();
+
+        assertThat(jpql).containsIgnoringCase("inner join fetch").doesNotContain("profileTeam");
+        assertThat(fetchProfiles.fetchMembers(query, FetchProfile.MEMBER_WITH_TEAM))
+                .allMatch(found -> Hibernate.isInitialized(found.getTeam()));
+    }
+
+    @Test
+    void MEMBER_WITH_TEAM_은_on_조건이_있는_team_join_을_필터로_두고_fetch_join_을_따로_붙인다() {
+        JPAQuery<Member> query = jpaQueryFactory
+                .selectFrom(member)
+                .join(member.team, team).on(team.name.eq("PROFILE 2"))
+                .where(member.username.startsWith("profile"));
+
+        String jpql = fetchProfiles.apply(query, FetchProfile.MEMBER_WITH_TEAM).toString();
+
+        assertThat(jpql).contains("profileTeam").containsIgnoringCase("left join fetch");
+
+        List<Member> members = fetchProfiles.fetchMembers(query, FetchProfile.MEMBER_WITH_TEAM);
+
+        assertThat(members).extracting(Member::getUsername)
+                .containsExactlyInAnyOrder("profile2_1", "profile2_2", "profile2_3", "profile2_4");
+        assertThat(members).allMatch(found -> Hibernate.isInitialized(found.getTeam()));
+    }
+
+    @Test
+    void TEAM_WITH_MEMBERS_는_팀_페이지를_유지하고_쿼리_두번으로_members_를_채운다() {
+        JPAQuery<Team> query = jpaQueryFactory
+                .selectFrom(team)
+                .where(team.name.startsWith("PROFILE"))
+                .orderBy(team.name.asc())
+                .limit(2);
+
+        try (QueryCountScope scope = QueryCountScope.open(2, false)) {
+            List<Team> teams = fetchProfiles.fetchTeams(query, FetchProfile.TEAM_WITH_MEMBERS);
+
+            assertThat(teams).extracting(Team::getName).containsExactly("PROFILE 1", "PROFILE 2");
+            assertThat(teams).allMatch(found -> Hibernate.isInitialized(found.getMembers()));
+            assertThat(teams).allMatch(found -> found.getMembers().size() == 4);
+            assertThat(scope.getStatementCount()).isEqualTo(2);
+        }
+
+        assertThat(meterRegistry.get("querydsl.fetch.profile.queries")
+                .tag("profile", "TEAM_WITH_MEMBERS").summary().max()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("querydsl.fetch.profile.entities")
+                .tag("profile", "TEAM_WITH_MEMBERS").summary().max()).isEqualTo(10.0);
+    }
+
+    @Test
+    void 엔티티를_조회하지_않거나_profile_과_맞지_않는_쿼리는_거부한다() {
+        assertThatThrownBy(() -> fetchProfiles.fetchTeams(jpaQueryFactory.selectFrom(team), FetchProfile.MEMBER_WITH_TEAM))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> fetchProfiles.apply(
+                jpaQueryFactory.select(member).from(team).join(team.members, member), FetchProfile.MEMBER_WITH_TEAM))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,126 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberIngestRecord;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.service.MemberBulkIngestService;
+
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Member 의 자주 쓰는 쿼리를 @Table 에 선언한 인덱스가 있을 때와 없을 때 EXPLAIN 과 응답 시간으로 비교한다.
+ * - ./gradlew benchmark -Dbenchmark.rows=200000
+ * - DDL(drop/create index) 이 필요하므로 별도 in-memory DB 에서 롤백 없이 실행한다.
+ * */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:indexbench;DB_CLOSE_DELAY=-1",
+        "querydsl.query-metrics.enabled=false"
+})
+class MemberIndexBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 100_000);
+    private static final int REPEAT = 20;
+
+    private static final Map<String, String> HOT_QUERIES = new LinkedHashMap<>();
+
+    static {
+        HOT_QUERIES.put("username = ?",
+                "select member_id, username, age from member where username = 'member4321'");
+        HOT_QUERIES.put("age between",
+                "select member_id, username, age from member where age between 20 and 21");
+        HOT_QUERIES.put("age < ? (bulk chunk)",
+                "select min(member_id), max(member_id) from member where age < 5");
+        HOT_QUERIES.put("team join, age desc, username asc nulls last",
+                "select m.username, m.age from member m join team t on t.id = m.team_id"
+                        + " where t.name = 'TEAM 7' order by m.age desc, m.username asc nulls last");
+    }
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MemberBulkIngestService memberBulkIngestService;
+
+    @BeforeEach
+    void init() {
+        Long count = jdbcTemplate.queryForObject("select count(*) from member", Long.class);
+        if (count != null && count >= ROWS) {
+            return;
+        }
+        memberBulkIngestService.ingest(IntStream.range(0, ROWS)
+                .mapToObj(i -> new MemberIngestRecord("member" + i, i % 100, "TEAM " + (i % 100))));
+        jdbcTemplate.execute("analyze");
+    }
+
+    @Test
+    void withAndWithoutIndexes() {
+        List<String> withIndexes = run("with indexes");
+
+        List<String[]> indexes = declaredIndexes();
+        for (String[] index : indexes) {
+            jdbcTemplate.execute("drop index if exists " + index[0]);
+        }
+        try {
+            List<String> withoutIndexes = run("without indexes");
+
+            System.out.println("rows = " + ROWS);
+            for (int i = 0; i < withIndexes.size(); i++) {
+                System.out.println(withIndexes.get(i));
+                System.out.println(withoutIndexes.get(i));
+            }
+        } finally {
+            for (String[] index : indexes) {
+                jdbcTemplate.execute("create index " + index[0] + " on " + index[1] + " (" + index[2] + ")");
+            }
+        }
+    }
+
+    private List<String> run(String label) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, String> query : HOT_QUERIES.entrySet()) {
+            String plan = jdbcTemplate.queryForList("explain " + query.getValue(), String.class).stream()
+                    .collect(Collectors.joining(" "))
+                    .replaceAll("\\s+", " ");
+            lines.add(String.format("[%s] %s : %d us%n    %s", label, query.getKey(), measure(query.getValue()), plan));
+        }
+        return lines;
+    }
+
+    //REPEAT 회 실행한 평균 (마이크로초), 첫 실행은 warm-up 으로 버린다.
+    private long measure(String sql) {
+        jdbcTemplate.queryForList(sql);
+
+        long total = 0;
+        for (int i = 0; i < REPEAT; i++) {
+            long start = System.nanoTime();
+            jdbcTemplate.queryForList(sql);
+            total += System.nanoTime() - start;
+        }
+        return total / REPEAT / 1_000;
+    }
+
+    //{이름, 테이블, 컬럼 목록}
+    private static List<String[]> declaredIndexes() {
+        List<String[]> indexes = new ArrayList<>();
+        for (Class<?> entity : new Class<?>[]{Member.class, Team.class}) {
+            for (Index index : entity.getAnnotation(Table.class).indexes()) {
+                indexes.add(new String[]{index.name(), entity.getSimpleName().toLowerCase(), index.columnList()});
+            }
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,105 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.FullScanDetectedException;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+/**
+ * Member 의 자주 쓰는 조건들이 인덱스를 타는지 확인한다.
+ * - full-scan-guard 를 fail-fast 로 켜두었으므로, 새로 추가한 쿼리가 full scan 이면 여기서 바로 실패한다.
+ * */
+@SpringBootTest(properties = {
+        "querydsl.full-scan-guard.enabled=true",
+        "querydsl.full-scan-guard.fail-fast=true"
+})
+@Transactional
+class MemberIndexTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory jpaQueryFactory;
+
+    @BeforeEach
+    void init() {
+        Team teamA = new Team("INDEX A");
+        Team teamB = new Team("INDEX B");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        for (int i = 0; i < 100; i++) {
+            em.persist(new Member("index" + i, i, i % 2 == 0 ? teamA : teamB));
+        }
+        em.persist(new Member(null, 100, teamA));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void username_조건은_인덱스를_탄다() {
+        List<Member> result = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.eq("index10"))
+                .fetch();
+
+        assertThat(result).extracting("age").containsExactly(10);
+    }
+
+    @Test
+    void age_범위_조건은_인덱스를_탄다() {
+        List<String> between = jpaQueryFactory
+                .select(member.username)
+                .from(member)
+                .where(member.age.between(10, 12), member.username.startsWith("index"))
+                .fetch();
+        Long lessThan = jpaQueryFactory
+                .select(member.count())
+                .from(member)
+                .where(member.age.lt(5))
+                .fetchOne();
+
+        assertThat(between).containsExactlyInAnyOrder("index10", "index11", "index12");
+        assertThat(lessThan).isGreaterThanOrEqualTo(5L);
+    }
+
+    @Test
+    void 팀_조인과_나이_이름_정렬은_인덱스를_탄다() {
+        List<Member> result = jpaQueryFactory
+                .selectFrom(member)
+                .join(member.team, team)
+                .where(team.name.eq("INDEX A"))
+                .orderBy(member.age.desc(), member.username.asc().nullsLast())
+                .fetch();
+
+        assertThat(result).hasSize(51);
+        assertThat(result.get(0).getUsername()).isNull();
+        assertThat(result.get(1).getUsername()).isEqualTo("index98");
+    }
+
+    @Test
+    void 인덱스로_거를_수_없는_조건은_full_scan_으로_감지된다() {
+        Throwable thrown = catchThrowable(() -> jpaQueryFactory
+                .selectFrom(member)
+                .where(member.age.add(1).eq(11))
+                .fetch());
+
+        assertThat(NestedExceptionUtils.getMostSpecificCause(thrown)).isInstanceOf(FullScanDetectedException.class);
+    }
+}
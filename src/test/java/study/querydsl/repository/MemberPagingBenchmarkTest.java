@@ -0,0 +1,93 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.KeysetPage;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+
+import javax.persistence.EntityManager;
+
+/**
+ * offset 페이징 vs keyset 페이징 비교
+ * - ./gradlew benchmark -Dbenchmark.rows=200000 -Dbenchmark.pageSize=100
+ * - 첫 페이지와 마지막 페이지의 응답 시간을 비교한다. keyset 은 두 값이 거의 같아야 한다.
+ * */
+@Tag("benchmark")
+@SpringBootTest
+@Transactional
+@AllowRepeatedQueries("같은 페이지 쿼리를 반복해서 측정한다.")
+class MemberPagingBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 20_000);
+    private static final int PAGE_SIZE = Integer.getInteger("benchmark.pageSize", 100);
+    private static final int REPEAT = 20;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberQueryRepository memberQueryRepository;
+
+    @BeforeEach
+    void init() {
+        Team team = new Team("TEAM A");
+        em.persist(team);
+
+        for (int i = 0; i < ROWS; i++) {
+            em.persist(new Member("member" + i, i % 100, team));
+            if (i % 1_000 == 0) {
+                em.flush();
+                em.clear();
+                team = em.getReference(Team.class, team.getId());
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void offsetVsKeyset() {
+        long lastOffset = ((ROWS - 1) / PAGE_SIZE) * (long) PAGE_SIZE;
+
+        long offsetFirst = measure(() -> memberQueryRepository.searchByOffset(MemberSortKey.AGE, 0, PAGE_SIZE));
+        long offsetLast = measure(() -> memberQueryRepository.searchByOffset(MemberSortKey.AGE, lastOffset, PAGE_SIZE));
+
+        //마지막 페이지의 cursor 는 keyset 으로 끝까지 따라가서 구한다. (측정에서 제외)
+        String beforeLastCursor = null;
+        KeysetPage<MemberDto> page = memberQueryRepository.searchByKeyset(MemberSortKey.AGE, null, PAGE_SIZE);
+        while (page.hasNext()) {
+            beforeLastCursor = page.getNextCursor();
+            page = memberQueryRepository.searchByKeyset(MemberSortKey.AGE, beforeLastCursor, PAGE_SIZE);
+        }
+
+        String lastCursor = beforeLastCursor;
+        long keysetFirst = measure(() -> memberQueryRepository.searchByKeyset(MemberSortKey.AGE, null, PAGE_SIZE));
+        long keysetLast = measure(() -> memberQueryRepository.searchByKeyset(MemberSortKey.AGE, lastCursor, PAGE_SIZE));
+
+        System.out.println("rows = " + ROWS + ", pageSize = " + PAGE_SIZE);
+        System.out.println("offset first page (us) = " + offsetFirst + ", last page (us) = " + offsetLast);
+        System.out.println("keyset first page (us) = " + keysetFirst + ", last page (us) = " + keysetLast);
+    }
+
+    //REPEAT 회 실행한 평균 (마이크로초), 첫 실행은 warm-up 으로 버린다.
+    private long measure(Runnable query) {
+        query.run();
+        em.clear();
+
+        long total = 0;
+        for (int i = 0; i < REPEAT; i++) {
+            long start = System.nanoTime();
+            query.run();
+            total += System.nanoTime() - start;
+            em.clear();
+        }
+        return total / REPEAT / 1_000;
+    }
+}
@@ -0,0 +1,82 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.KeysetPage;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Transactional
+@AllowRepeatedQueries("keyset 페이지를 이어서 읽는다.")
+class MemberQueryRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberQueryRepository memberQueryRepository;
+
+    @BeforeEach
+    void init() {
+        Team teamA = new Team("TEAM A");
+        Team teamB = new Team("TEAM B");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 20, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member(null, 50));
+    }
+
+    @Test
+    @DisplayName("(age, member_id) keyset 페이징 - 같은 나이가 페이지 경계에 걸려도 누락/중복이 없다")
+    void keysetByAge() {
+        KeysetPage<MemberDto> page1 = memberQueryRepository.searchByKeyset(MemberSortKey.AGE, null, 2);
+        assertThat(page1.getContent()).extracting("age").containsExactly(10, 20);
+        assertThat(page1.hasNext()).isTrue();
+
+        KeysetPage<MemberDto> page2 = memberQueryRepository.searchByKeyset(MemberSortKey.AGE, page1.getNextCursor(), 2);
+        assertThat(page2.getContent()).extracting("age").containsExactly(20, 40);
+        assertThat(page2.hasNext()).isTrue();
+
+        KeysetPage<MemberDto> page3 = memberQueryRepository.searchByKeyset(MemberSortKey.AGE, page2.getNextCursor(), 2);
+        assertThat(page3.getContent()).extracting("age").containsExactly(50);
+        assertThat(page3.hasNext()).isFalse();
+        assertThat(page3.getTotal()).isEqualTo(5L);
+    }
+
+    @Test
+    @DisplayName("(username, member_id) keyset 페이징 - username 이 null 인 회원은 제외된다")
+    void keysetByUsername() {
+        KeysetPage<MemberDto> page1 = memberQueryRepository.searchByKeyset(MemberSortKey.USERNAME, null, 3);
+        assertThat(page1.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+
+        KeysetPage<MemberDto> page2 = memberQueryRepository.searchByKeyset(MemberSortKey.USERNAME, page1.getNextCursor(), 3);
+        assertThat(page2.getContent()).extracting("username").containsExactly("member4");
+        assertThat(page2.hasNext()).isFalse();
+        assertThat(page2.getTotal()).isEqualTo(4L);
+    }
+
+    @Test
+    void 다른_정렬키의_cursor_는_거부한다() {
+        KeysetPage<MemberDto> page = memberQueryRepository.searchByKeyset(MemberSortKey.AGE, null, 1);
+
+        assertThatThrownBy(() -> memberQueryRepository.searchByKeyset(MemberSortKey.USERNAME, page.getNextCursor(), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
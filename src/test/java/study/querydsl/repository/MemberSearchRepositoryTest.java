@@ -0,0 +1,81 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberSearchRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberSearchRepository memberSearchRepository;
+
+    @BeforeEach
+    void init() {
+        Team teamA = new Team("SEARCH A");
+        Team teamB = new Team("SEARCH B");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("search1", 10, teamA));
+        em.persist(new Member("search2", 20, teamA));
+        em.persist(new Member("search3", 30, teamB));
+        em.persist(new Member("search4", 40, teamB));
+    }
+
+    @Test
+    void 모든_null_조합을_처리한다() {
+        MemberSearchCondition byName = new MemberSearchCondition("search1", null);
+        MemberSearchCondition byAge = new MemberSearchCondition(null, 20);
+        MemberSearchCondition byNameAndAge = new MemberSearchCondition("search1", 20);
+
+        assertThat(search(byName)).containsExactly("search1");
+        assertThat(search(byAge)).containsExactly("search2");
+        assertThat(search(byNameAndAge)).isEmpty();
+    }
+
+    @Test
+    void 나이_범위와_팀_이름() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(15);
+        condition.setAgeLoe(35);
+        condition.setTeamName("SEARCH B");
+
+        assertThat(search(condition)).containsExactly("search3");
+    }
+
+    @Test
+    @AllowRepeatedQueries("같은 shape 의 검색을 두 번 실행한다.")
+    void 같은_shape_은_값이_달라도_컴파일된_쿼리를_재사용한다() {
+        search(new MemberSearchCondition("search1", null));
+        double before = memberSearchRepository.getPlanCacheHitRate();
+
+        assertThat(search(new MemberSearchCondition("search2", null))).containsExactly("search2");
+        assertThat(memberSearchRepository.getPlanCacheHitRate()).isGreaterThan(before);
+        assertThat(MemberSearchRepository.shapeOf(new MemberSearchCondition("a", null)))
+                .isEqualTo(MemberSearchRepository.shapeOf(new MemberSearchCondition("b", null)));
+    }
+
+    private List<String> search(MemberSearchCondition condition) {
+        List<MemberDto> result = memberSearchRepository.search(condition);
+        return result.stream().map(MemberDto::getUsername).filter(name -> name.startsWith("search")).collect(Collectors.toList());
+    }
+}
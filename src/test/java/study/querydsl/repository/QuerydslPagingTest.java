@@ -0,0 +1,185 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.OffsetPage;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.QueryCountScope;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entities.QMember.member;
+import static study.querydsl.entities.QTeam.team;
+
+/**
+ * count-cap 을 작게 해서 CAPPED 도 확인한다.
+ * */
+@SpringBootTest(properties = "querydsl.paging.count-cap=3")
+@Transactional
+class QuerydslPagingTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory jpaQueryFactory;
+
+    @Autowired
+    QuerydslPaging querydslPaging;
+
+    @Autowired
+    MemberQueryRepository memberQueryRepository;
+
+    @BeforeEach
+    void init() {
+        Team teamA = new Team("PAGING A");
+        Team teamB = new Team("PAGING B");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        for (int i = 1; i <= 5; i++) {
+            em.persist(new Member("paging" + i, i * 10, i <= 3 ? teamA : teamB));
+        }
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void count_쿼리에서는_order_by_와_필터가_아닌_left_join_이_빠진다() {
+        JPAQuery<Member> query = jpaQueryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(member.username.startsWith("paging"))
+                .orderBy(member.age.desc());
+
+        String jpql = querydslPaging.countQuery(query).toString();
+
+        assertThat(jpql).doesNotContainIgnoringCase("join").doesNotContainIgnoringCase("order by");
+        assertThat(querydslPaging.count(query)).isEqualTo(5L);
+    }
+
+    @Test
+    void 필터로_쓰이는_join_과_inner_join_은_남는다() {
+        JPAQuery<Member> leftJoinFilter = jpaQueryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(team.name.eq("PAGING A"));
+        JPAQuery<Member> innerJoin = jpaQueryFactory
+                .selectFrom(member)
+                .join(member.team, team)
+                .where(member.username.startsWith("paging"));
+
+        assertThat(querydslPaging.countQuery(leftJoinFilter).toString()).containsIgnoringCase("join");
+        assertThat(querydslPaging.countQuery(innerJoin).toString()).containsIgnoringCase("join");
+        assertThat(querydslPaging.count(leftJoinFilter)).isEqualTo(3L);
+    }
+
+    @Test
+    void content_쿼리의_Param_값은_count_쿼리에도_바인딩된다() {
+        Param<Integer> minAge = new Param<>(Integer.class, "minAge");
+        JPAQuery<Member> query = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("paging"), member.age.goe(minAge))
+                .set(minAge, 30);
+
+        assertThat(querydslPaging.count(query)).isEqualTo(3L);
+    }
+
+    @Test
+    void 첫_페이지가_덜_차면_count_쿼리를_실행하지_않는다() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("PAGING B");
+
+        OffsetPage<MemberTeamDto> page;
+        try (QueryCountScope scope = QueryCountScope.open(2, false)) {
+            page = memberQueryRepository.searchPage(condition, 0, 10, CountMode.EXACT);
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+
+        assertThat(page.getContent()).extracting(MemberTeamDto::getUsername).containsExactly("paging4", "paging5");
+        assertThat(page.getTotal()).isEqualTo(2L);
+        assertThat(page.isTotalExact()).isTrue();
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    @Test
+    void 마지막_페이지도_count_쿼리를_실행하지_않는다() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("PAGING A");
+
+        try (QueryCountScope scope = QueryCountScope.open(2, false)) {
+            OffsetPage<MemberTeamDto> page = memberQueryRepository.searchPage(condition, 2, 2, CountMode.EXACT);
+
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+            assertThat(page.getContent()).extracting(MemberTeamDto::getUsername).containsExactly("paging3");
+            assertThat(page.getTotal()).isEqualTo(3L);
+        }
+    }
+
+    @Test
+    void 중간_페이지는_count_쿼리로_total_을_구한다() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("PAGING A");
+
+        OffsetPage<MemberTeamDto> page = memberQueryRepository.searchPage(condition, 0, 2, CountMode.EXACT);
+
+        assertThat(page.getContent()).extracting(MemberTeamDto::getUsername).containsExactly("paging1", "paging2");
+        assertThat(page.getTotal()).isEqualTo(3L);
+        assertThat(page.hasNext()).isTrue();
+    }
+
+    @Test
+    void CAPPED_는_count_cap_건까지만_센다() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+
+        OffsetPage<MemberTeamDto> page = memberQueryRepository.searchPage(condition, 0, 2, CountMode.CAPPED);
+
+        assertThat(page.getTotal()).isEqualTo(3L);
+        assertThat(page.isTotalExact()).isFalse();
+        assertThat(page.hasNext()).isTrue();
+    }
+
+    @Test
+    void distinct_쿼리의_CAPPED_는_distinct_한_값을_센다() {
+        JPAQuery<Team> teams = jpaQueryFactory
+                .selectFrom(team).distinct()
+                .join(team.members, member)
+                .where(team.name.startsWith("PAGING"));
+        JPAQuery<Long> teamIds = jpaQueryFactory
+                .select(member.team.id).distinct()
+                .from(member)
+                .where(member.username.startsWith("paging"));
+
+        assertThat(querydslPaging.cappedCount(teams)).isEqualTo(2L);
+        assertThat(querydslPaging.cappedCount(teamIds)).isEqualTo(2L);
+    }
+
+    @Test
+    void group_by_나_having_쿼리는_CAPPED_로_세지_않는다() {
+        JPAQuery<Long> groupBy = jpaQueryFactory
+                .select(member.team.id)
+                .from(member)
+                .groupBy(member.team.id);
+        JPAQuery<Long> having = jpaQueryFactory
+                .select(member.count())
+                .from(member)
+                .having(member.count().gt(1L));
+
+        assertThatThrownBy(() -> querydslPaging.cappedCount(groupBy)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> querydslPaging.cappedCount(having)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> querydslPaging.countQuery(having)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,187 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.QMember;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static com.querydsl.jpa.JPAExpressions.select;
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * 다른 테스트 데이터와 섞이지 않도록 서브쿼리에도 username 조건을 건다.
+ * */
+@SpringBootTest
+@Transactional
+class SubqueryRewriterTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory jpaQueryFactory;
+
+    @Autowired
+    SubqueryRewriter subqueryRewriter;
+
+    QMember memberSub = new QMember("memberSub");
+
+    @BeforeEach
+    void init() {
+        Team team = new Team("SUBQUERY");
+        em.persist(team);
+        for (int i = 1; i <= 4; i++) {
+            em.persist(new Member("subquery" + i, i * 10, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void where_절의_스칼라_서브쿼리는_값으로_바뀐다() {
+        JPAQuery<Member> max = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.age.eq(
+                        select(memberSub.age.max())
+                                .from(memberSub)
+                                .where(memberSub.username.startsWith("subquery"))));
+        JPAQuery<Member> avg = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("subquery"),
+                        member.age.goe(
+                                select(memberSub.age.avg())
+                                        .from(memberSub)
+                                        .where(memberSub.username.startsWith("subquery"))))
+                .orderBy(member.age.asc());
+
+        JPAQuery<Member> rewrittenMax = subqueryRewriter.rewrite(max);
+        JPAQuery<Member> rewrittenAvg = subqueryRewriter.rewrite(avg);
+
+        assertThat(rewrittenMax.toString()).doesNotContain("memberSub");
+        assertThat(rewrittenAvg.toString()).doesNotContain("memberSub");
+        assertThat(rewrittenMax.fetch()).extracting("age").containsExactly(40);
+        assertThat(rewrittenAvg.fetch()).extracting("age").containsExactly(30, 40);
+        assertThat(max.toString()).contains("memberSub");
+    }
+
+    @Test
+    @AllowRepeatedQueries("같은 서브쿼리를 비교 연산마다 미리 실행한다.")
+    void 소수인_스칼라_서브쿼리_값은_비교하는_컬럼의_타입으로_바꾼다() {
+        //avg(10, 20, 40) = 23.3
+        JPQLQuery<Double> avg = select(memberSub.age.avg())
+                .from(memberSub)
+                .where(memberSub.username.startsWith("subquery"), memberSub.age.ne(30));
+
+        JPAQuery<Member> goe = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("subquery"), member.age.goe(avg))
+                .orderBy(member.age.asc());
+        JPAQuery<Member> eq = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("subquery"), member.age.eq(avg));
+        JPAQuery<Member> lt = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("subquery"), member.age.lt(avg))
+                .orderBy(member.age.asc());
+
+        assertThat(subqueryRewriter.rewrite(goe).fetch()).extracting("age").containsExactly(30, 40);
+        assertThat(subqueryRewriter.rewrite(eq).fetch()).isEmpty();
+        assertThat(subqueryRewriter.rewrite(lt).fetch()).extracting("age").containsExactly(10, 20);
+        assertThat(goe.fetch()).extracting("age").containsExactly(30, 40);
+    }
+
+    @Test
+    void 정수로_떨어지는_avg_도_컬럼_타입으로_바인딩한다() {
+        //avg(10, 20, 30) = 20.0
+        JPAQuery<Member> eq = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("subquery"),
+                        member.age.eq(
+                                select(memberSub.age.avg())
+                                        .from(memberSub)
+                                        .where(memberSub.username.startsWith("subquery"), memberSub.age.lt(35))));
+
+        assertThat(subqueryRewriter.rewrite(eq).fetch()).extracting("age").containsExactly(20);
+    }
+
+    @Test
+    void in_서브쿼리는_값_목록으로_바뀐다() {
+        JPAQuery<Member> query = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("subquery"),
+                        member.age.in(
+                                select(memberSub.age)
+                                        .from(memberSub)
+                                        .where(memberSub.username.startsWith("subquery"), memberSub.age.gt(10))))
+                .orderBy(member.age.asc());
+
+        JPAQuery<Member> rewritten = subqueryRewriter.rewrite(query);
+
+        assertThat(rewritten.toString()).doesNotContain("memberSub");
+        assertThat(rewritten.fetch()).extracting("age").containsExactly(20, 30, 40);
+    }
+
+    @Test
+    void in_서브쿼리_결과가_없으면_항상_거짓() {
+        JPAQuery<Member> query = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.age.in(
+                        select(memberSub.age)
+                                .from(memberSub)
+                                .where(memberSub.age.gt(1_000))));
+
+        assertThat(subqueryRewriter.rewrite(query).fetch()).isEmpty();
+    }
+
+    @Test
+    void select_절의_스칼라_서브쿼리는_한_번만_실행해서_결과에_넣는다() {
+        JPAQuery<UserDto> query = jpaQueryFactory
+                .select(Projections.fields(UserDto.class,
+                        member.username.as("userDtoName"),
+                        ExpressionUtils.as(
+                                JPAExpressions.select(memberSub.age.max())
+                                        .from(memberSub)
+                                        .where(memberSub.username.startsWith("subquery")), "userDtoAge")))
+                .from(member)
+                .where(member.username.startsWith("subquery"));
+
+        JPAQuery<UserDto> rewritten = subqueryRewriter.rewrite(query);
+
+        assertThat(rewritten.toString()).doesNotContain("memberSub");
+        List<UserDto> result = rewritten.fetch();
+        assertThat(result).hasSize(4);
+        assertThat(result).extracting("userDtoAge").containsOnly(40);
+    }
+
+    @Test
+    void 바깥_alias_를_참조하는_서브쿼리는_그대로_둔다() {
+        JPAQuery<Member> query = jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.startsWith("subquery"),
+                        member.age.eq(
+                                select(memberSub.age.max())
+                                        .from(memberSub)
+                                        .where(memberSub.team.eq(member.team))));
+
+        JPAQuery<Member> rewritten = subqueryRewriter.rewrite(query);
+
+        assertThat(rewritten.toString()).contains("memberSub");
+        assertThat(rewritten.fetch()).extracting("age").containsExactly(40);
+    }
+}
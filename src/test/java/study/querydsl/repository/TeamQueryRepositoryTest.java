@@ -0,0 +1,109 @@
+package study.querydsl.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamWithMembersDto;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 쿼리 캐시는 커밋된 데이터에 대해서만 동작하므로 @Transactional 로 롤백하지 않고 직접 정리한다.
+ * */
+@SpringBootTest
+class TeamQueryRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    TeamQueryRepository teamQueryRepository;
+
+    Statistics statistics;
+    Long cacheTeamId;
+
+    @BeforeEach
+    void init() {
+        cacheTeamId = transactionTemplate.execute(status -> {
+            Team cacheTeam = new Team("CACHE TEAM");
+            em.persist(cacheTeam);
+            return cacheTeam.getId();
+        });
+
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> em
+                .createQuery("delete from Team t where t.name = 'CACHE TEAM'")
+                .executeUpdate());
+    }
+
+    @Test
+    void 팀_이름_조회는_두번째부터_쿼리캐시와_2차캐시에서_읽는다() {
+        Team first = transactionTemplate.execute(status -> teamQueryRepository.findByName("CACHE TEAM").orElse(null));
+        Team second = transactionTemplate.execute(status -> teamQueryRepository.findByName("CACHE TEAM").orElse(null));
+
+        assertThat(first).isNotNull();
+        assertThat(second.getId()).isEqualTo(first.getId());
+
+        assertThat(statistics.getQueryCacheMissCount()).isEqualTo(1L);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1L);
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void 팀_페이지의_회원은_쿼리_한번으로_읽는다() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("TEAM A");
+            Team teamB = new Team("TEAM B");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            em.flush();
+            em.clear();
+
+            //공유 DB 에 다른 팀이 있을 수 있으므로 이 테스트가 만든 팀부터 읽고, 그 팀만 본다.
+            long offset = em.createQuery("select count(t) from Team t where t.id < :id", Long.class)
+                    .setParameter("id", cacheTeamId)
+                    .getSingleResult();
+
+            statistics.clear();
+            List<TeamWithMembersDto> teams = teamQueryRepository.findTeamsWithMembers(offset, 3);
+
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(2L);
+            teams = teams.stream()
+                    .filter(dto -> Arrays.asList("CACHE TEAM", "TEAM A", "TEAM B").contains(dto.getName()))
+                    .collect(Collectors.toList());
+            assertThat(teams).extracting("name").containsExactly("CACHE TEAM", "TEAM A", "TEAM B");
+            assertThat(teams.get(0).getMembers()).isEmpty();
+            assertThat(teams.get(1).getMembers()).extracting("username").containsExactly("member1", "member2");
+            assertThat(teams.get(2).getMembers()).extracting("username").containsExactly("member3");
+
+            status.setRollbackOnly();
+        });
+    }
+}
@@ -0,0 +1,173 @@
+package study.querydsl.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+import study.querydsl.monitoring.QueryCountScope;
+import study.querydsl.service.MemberBulkService;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * 캐시는 커밋된 변경으로만 지워지므로 @Transactional 로 롤백하지 않고 커밋한 뒤 직접 정리한다.
+ * */
+@SpringBootTest(properties = "querydsl.username-index.directory=")
+@AllowRepeatedQueries("캐시 miss 와 hit 을 같은 조건으로 비교한다.")
+class MemberSearchCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberSearchCache memberSearchCache;
+
+    @Autowired
+    MemberBulkService memberBulkService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("select m from Member m where m.username like 'cached%'", Member.class)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.createQuery("select t from Team t where t.name like 'CACHED%'", Team.class)
+                    .getResultList()
+                    .forEach(em::remove);
+        });
+    }
+
+    @Test
+    void 결과가_같은_조건은_같은_key_로_한번만_읽는다() {
+        persist(new Member("cachedKim", 20));
+
+        try (QueryCountScope scope = QueryCountScope.open(10, false)) {
+            assertThat(memberSearchCache.search(new MemberSearchCondition("cachedKim", 20)))
+                    .extracting(MemberDto::getUsername).containsExactly("cachedKim");
+
+            MemberSearchCondition range = new MemberSearchCondition();
+            range.setUsername("cachedKim");
+            range.setAgeGoe(20);
+            range.setAgeLoe(20);
+            assertThat(memberSearchCache.search(range)).extracting(MemberDto::getUsername).containsExactly("cachedKim");
+
+            range.setAgeGoe(30);
+            assertThat(memberSearchCache.search(range)).isEmpty();      //빈 구간은 DB 를 읽지 않는다.
+
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void 커밋된_member_변경은_맞는_key_만_지운다() {
+        persist(new Member("cachedLee", 20));
+        MemberSearchCondition lee = new MemberSearchCondition("cachedLee", null);
+        MemberSearchCondition other = new MemberSearchCondition("cachedOther", null);
+        memberSearchCache.search(lee);
+        memberSearchCache.search(other);
+        long size = memberSearchCache.size();
+
+        persist(new Member("cachedLee", 30));
+
+        assertThat(memberSearchCache.size()).isEqualTo(size - 1);
+        assertThat(memberSearchCache.search(lee)).extracting(MemberDto::getAge).containsExactly(20, 30);
+    }
+
+    @Test
+    void member_변경은_그_회원의_username_팀_이름_key_와_나이_조건만_있는_key_만_확인한다() {
+        Team teamC = new Team("CACHED C");
+        transactionTemplate.executeWithoutResult(status -> em.persist(teamC));
+
+        MemberSearchCondition byUsername = new MemberSearchCondition("cachedYoon", null);
+        MemberSearchCondition byTeam = new MemberSearchCondition();
+        byTeam.setTeamName("CACHED C");
+        MemberSearchCondition otherTeam = new MemberSearchCondition();
+        otherTeam.setTeamName("CACHED D");
+        MemberSearchCondition sameAge = new MemberSearchCondition();
+        sameAge.setAgeGoe(31);
+        sameAge.setAgeLoe(31);
+        MemberSearchCondition otherAge = new MemberSearchCondition();
+        otherAge.setAgeGoe(77);
+        otherAge.setAgeLoe(77);
+        for (MemberSearchCondition condition : new MemberSearchCondition[]{byUsername, byTeam, otherTeam, sameAge, otherAge}) {
+            memberSearchCache.search(condition);
+        }
+        long size = memberSearchCache.size();
+
+        persist(new Member("cachedYoon", 31, teamC));
+
+        assertThat(memberSearchCache.size()).isEqualTo(size - 3);
+        assertThat(memberSearchCache.search(byTeam)).extracting(MemberDto::getUsername).containsExactly("cachedYoon");
+    }
+
+    @Test
+    void 팀_변경은_변경_전후_팀_이름_key_를_지운다() {
+        Team teamA = new Team("CACHED A");
+        Team teamB = new Team("CACHED B");
+        Member park = new Member("cachedPark", 20, teamA);
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(park);
+        });
+
+        MemberSearchCondition inA = new MemberSearchCondition();
+        inA.setTeamName("CACHED A");
+        MemberSearchCondition inB = new MemberSearchCondition();
+        inB.setTeamName("CACHED B");
+        assertThat(memberSearchCache.search(inA)).hasSize(1);
+        assertThat(memberSearchCache.search(inB)).isEmpty();
+
+        transactionTemplate.executeWithoutResult(status -> em.find(Member.class, park.getId())
+                .changeTeam(em.find(Team.class, teamB.getId())));
+
+        assertThat(memberSearchCache.search(inA)).isEmpty();
+        assertThat(memberSearchCache.search(inB)).extracting(MemberDto::getUsername).containsExactly("cachedPark");
+    }
+
+    @Test
+    void bulk_update_는_커밋_후_전부_지운다() {
+        Member choi = new Member("cachedChoi", 20);
+        persist(choi);
+        MemberSearchCondition condition = new MemberSearchCondition("cachedChoi", null);
+        assertThat(memberSearchCache.search(condition)).extracting(MemberDto::getAge).containsExactly(20);
+
+        memberBulkService.update(member.id.eq(choi.getId()), clause -> clause.set(member.age, 21), false);
+
+        assertThat(memberSearchCache.size()).isZero();
+        assertThat(memberSearchCache.search(condition)).extracting(MemberDto::getAge).containsExactly(21);
+    }
+
+    @Test
+    void 돌려준_DTO_를_바꿔도_캐시는_그대로다() {
+        persist(new Member("cachedJung", 20));
+        MemberSearchCondition condition = new MemberSearchCondition("cachedJung", null);
+
+        memberSearchCache.search(condition).get(0).setAge(99);
+        memberSearchCache.search(condition).get(0).setAge(99);
+
+        assertThat(memberSearchCache.search(condition)).extracting(MemberDto::getAge).containsExactly(20);
+        assertThat(meterRegistry.get("querydsl.search.cache.hit.ratio").gauge().value()).isGreaterThan(0.0);
+        assertThat(meterRegistry.get("querydsl.search.cache.weight").gauge().value()).isGreaterThan(0.0);
+    }
+
+    private void persist(Member created) {
+        transactionTemplate.executeWithoutResult(status -> em.persist(created));
+    }
+}
@@ -0,0 +1,111 @@
+package study.querydsl.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import study.querydsl.dto.UsernameMatch;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsernameIndexTest {
+
+    @Test
+    void prefix_일치가_먼저_그다음_substring_일치() {
+        UsernameIndex index = new UsernameIndex();
+        index.put(1L, "member10");
+        index.put(2L, "Member2");
+        index.put(3L, "teammember");
+        index.put(4L, "other");
+        index.put(5L, "amember");
+
+        assertThat(index.search("MEM", 10)).extracting(UsernameMatch::getUsername)
+                .containsExactly("member10", "Member2", "amember", "teammember");
+        assertThat(index.search("mem", 2)).extracting(UsernameMatch::getMemberId).containsExactly(1L, 2L);
+        assertThat(index.search("ber1", 10)).extracting(UsernameMatch::getMemberId).containsExactly(1L);
+    }
+
+    @Test
+    void 두_글자_이하는_prefix_만_찾는다() {
+        UsernameIndex index = new UsernameIndex();
+        index.put(1L, "member1");
+        index.put(2L, "amember");
+
+        assertThat(index.search("me", 10)).extracting(UsernameMatch::getMemberId).containsExactly(1L);
+        assertThat(index.search(" ", 10)).isEmpty();
+    }
+
+    @Test
+    void 변경과_삭제가_반영된다() {
+        UsernameIndex index = new UsernameIndex();
+        index.put(1L, "member1");
+        index.put(1L, "renamed1");
+        index.put(2L, "member2");
+        index.remove(2L);
+
+        assertThat(index.search("member", 10)).isEmpty();
+        assertThat(index.search("named", 10)).extracting(UsernameMatch::getMemberId).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.maxMemberId()).isEqualTo(1L);
+    }
+
+    @Test
+    void segment_와_log_로_복원된다(@TempDir Path directory) throws Exception {
+        UsernameIndexStore.Snapshot initial = new UsernameIndexStore.Snapshot();
+        initial.usernames.put(1L, "member1");
+        initial.usernames.put(2L, "member2");
+        initial.versions.put(1L, 0L);
+        initial.versions.put(2L, 0L);
+
+        UsernameIndexStore store = UsernameIndexStore.open(directory);
+        store.rotate();
+        store.writeSegment(initial);
+        store.appendPut(3L, "member3", 0L);
+        store.appendRemove(1L);
+        store.appendPut(2L, "renamed2", 1L);
+        store.close();
+
+        UsernameIndexStore reopened = UsernameIndexStore.open(directory);
+        UsernameIndexStore.Snapshot loaded = reopened.load();
+        reopened.close();
+
+        assertThat(loaded.usernames).hasSize(2)
+                .containsEntry(2L, "renamed2")
+                .containsEntry(3L, "member3");
+        assertThat(loaded.versions).hasSize(2)
+                .containsEntry(2L, 1L)
+                .containsEntry(3L, 0L);
+    }
+
+    @Test
+    void compact_가_중간에_끊겨도_log_old_부터_다시_적용한다(@TempDir Path directory) throws Exception {
+        UsernameIndexStore store = UsernameIndexStore.open(directory);
+        UsernameIndexStore.Snapshot initial = new UsernameIndexStore.Snapshot();
+        initial.usernames.put(1L, "member1");
+        store.rotate();
+        store.writeSegment(initial);
+
+        store.appendPut(2L, "member2", 0L);
+        store.rotate();                     //log -> log.old, segment 는 쓰지 못하고 종료
+        store.appendPut(3L, "member3", 0L);
+        store.close();
+
+        assertThat(Files.exists(directory.resolve("usernames.log.old"))).isTrue();
+        UsernameIndexStore reopened = UsernameIndexStore.open(directory);
+        assertThat(reopened.load().usernames).containsOnlyKeys(1L, 2L, 3L);
+        reopened.close();
+    }
+
+    @Test
+    void 같은_디렉토리는_한_인스턴스만_쓴다(@TempDir Path directory) throws Exception {
+        UsernameIndexStore first = UsernameIndexStore.open(directory);
+
+        assertThat(UsernameIndexStore.open(directory)).isNull();
+
+        first.close();
+        UsernameIndexStore second = UsernameIndexStore.open(directory);
+        assertThat(second).isNotNull();
+        second.close();
+    }
+}
@@ -0,0 +1,146 @@
+package study.querydsl.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entities.Member;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+import study.querydsl.service.MemberBulkService;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * 인덱스는 커밋된 뒤에 반영되므로 @Transactional 로 롤백하지 않고 커밋한 뒤 직접 정리한다.
+ * */
+@SpringBootTest(properties = "querydsl.username-index.directory=")
+@AllowRepeatedQueries("같은 검색과 DB 비교를 변경 전후로 반복한다.")
+class UsernameSearchTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    UsernameSearch usernameSearch;
+
+    @Autowired
+    MemberBulkService memberBulkService;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> em
+                .createQuery("select m from Member m where m.username like 'autocomplete%' or m.username like 'renamed%'", Member.class)
+                .getResultList()
+                .forEach(em::remove));
+    }
+
+    @Test
+    void 커밋된_insert_와_delete_가_반영된다() {
+        Long id = transactionTemplate.execute(status -> {
+            Member created = new Member("autocompleteKim", 10);
+            em.persist(created);
+            return created.getId();
+        });
+        assertThat(usernameSearch.search("autocompletek", 10)).extracting(UsernameMatch::getMemberId).containsExactly(id);
+        assertThat(usernameSearch.search("letekim", 10)).extracting(UsernameMatch::getMemberId).containsExactly(id);
+
+        transactionTemplate.executeWithoutResult(status -> em.remove(em.find(Member.class, id)));
+        assertThat(usernameSearch.search("autocompletek", 10)).isEmpty();
+    }
+
+    @Test
+    void 늦게_도착한_이전_변경은_무시하고_삭제된_회원을_되살리지_않는다() {
+        Long id = transactionTemplate.execute(status -> {
+            Member created = new Member("autocompleteLate", 10);
+            em.persist(created);
+            return created.getId();
+        });
+
+        //다른 스레드의 커밋 후 반영이 순서가 바뀌어 들어온 것처럼 직접 호출한다.
+        usernameSearch.put(id, "autocompleteNewer", 5L);
+        usernameSearch.put(id, "autocompleteOlder", 4L);
+        assertThat(usernameSearch.search("autocompleteOlder", 10)).isEmpty();
+        assertThat(usernameSearch.search("autocompleteNewer", 10)).extracting(UsernameMatch::getMemberId).containsExactly(id);
+
+        transactionTemplate.executeWithoutResult(status -> em.remove(em.find(Member.class, id)));
+        usernameSearch.put(id, "autocompleteNewer", 6L);
+        assertThat(usernameSearch.search("autocompleteNewer", 10)).isEmpty();
+    }
+
+    @Test
+    void bulk_update_로_바뀐_username_도_반영된다() {
+        Long id = transactionTemplate.execute(status -> {
+            Member created = new Member("autocompleteLee", 10);
+            em.persist(created);
+            return created.getId();
+        });
+
+        memberBulkService.update(member.id.eq(id), clause -> clause.set(member.username, "renamedLee"), false);
+
+        assertThat(usernameSearch.search("autocompleteLee", 10)).isEmpty();
+        assertThat(usernameSearch.search("renamedlee", 10)).extracting(UsernameMatch::getMemberId).containsExactly(id);
+    }
+
+    @Test
+    void 롤백된_insert_는_반영되지_않는다() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("autocompleteRollback", 10));
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        assertThat(usernameSearch.search("autocompleteRollback", 10)).isEmpty();
+    }
+
+    @Test
+    void bulk_delete_도_반영된다() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("autocompleteBulk1", 10));
+            em.persist(new Member("autocompleteBulk2", 10));
+        });
+        assertThat(usernameSearch.search("autocompleteBulk", 10)).hasSize(2);
+
+        memberBulkService.delete(member.username.startsWith("autocompleteBulk"), false);
+
+        assertThat(usernameSearch.search("autocompleteBulk", 10)).isEmpty();
+    }
+
+    @Test
+    void 인덱스_밖에서_바뀐_username_은_version_으로_찾아서_다시_읽는다() {
+        Long id = transactionTemplate.execute(status -> {
+            Member created = new Member("autocompleteDown", 10);
+            em.persist(created);
+            return created.getId();
+        });
+
+        //꺼져 있는 동안 바뀐 것처럼 리스너를 거치지 않고 username 만 바꾼다. (회원 수, 최대 id 는 그대로)
+        transactionTemplate.executeWithoutResult(status -> em
+                .createNativeQuery("update member set username = 'renamedDown', version = version + 1 where member_id = ?1")
+                .setParameter(1, id)
+                .executeUpdate());
+        assertThat(usernameSearch.matchesDatabase()).isFalse();
+
+        usernameSearch.resync();
+
+        assertThat(usernameSearch.matchesDatabase()).isTrue();
+        assertThat(usernameSearch.search("autocompleteDown", 10)).isEmpty();
+        assertThat(usernameSearch.search("renameddown", 10)).extracting(UsernameMatch::getMemberId).containsExactly(id);
+    }
+
+    @Test
+    void DB_에서_다시_만들_수_있다() {
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Member("autocompleteRebuild", 10)));
+
+        usernameSearch.rebuild();
+
+        assertThat(usernameSearch.search("autocompleteRebuild", 10)).hasSize(1);
+    }
+}
@@ -0,0 +1,131 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberOverviewDto;
+import study.querydsl.dto.TeamAgeStatsDto;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * 작업은 다른 스레드의 다른 트랜잭션에서 실행되므로 @Transactional 로 롤백하지 않고 커밋한 뒤 직접 정리한다.
+ * */
+@SpringBootTest(properties = "querydsl.async.max-concurrency=2")
+class AsyncQueryExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    AsyncQueryExecutor asyncQueryExecutor;
+
+    @Autowired
+    MemberOverviewService memberOverviewService;
+
+    @BeforeEach
+    void init() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = new Team("ASYNC TEAM");
+            em.persist(team);
+            em.persist(new Member("async1", 10, team));
+            em.persist(new Member("async2", 20, team));
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("select m from Member m where m.username like 'async%'", Member.class)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.createQuery("select t from Team t where t.name = 'ASYNC TEAM'", Team.class)
+                    .getResultList()
+                    .forEach(em::remove);
+        });
+    }
+
+    @Test
+    void 조회는_별도_스레드의_읽기전용_트랜잭션에서_실행된다() throws Exception {
+        String caller = Thread.currentThread().getName();
+
+        CompletableFuture<List<String>> future = asyncQueryExecutor.query(queryFactory -> {
+            assertThat(Thread.currentThread().getName()).isNotEqualTo(caller);
+            assertThat(TransactionSynchronizationManager.isCurrentTransactionReadOnly()).isTrue();
+
+            return queryFactory
+                    .select(member.username)
+                    .from(member)
+                    .where(member.username.startsWith("async"))
+                    .orderBy(member.username.asc())
+                    .fetch();
+        });
+
+        assertThat(future.get()).containsExactly("async1", "async2");
+    }
+
+    @Test
+    void 회원_페이지와_팀_통계를_동시에_읽어서_합친다() throws Exception {
+        MemberOverviewDto overview = memberOverviewService.overview(null, 100).get();
+
+        assertThat(overview.getMembers()).extracting("username").contains("async1", "async2");
+        assertThat(overview.getTeamStats())
+                .filteredOn(stats -> stats.getTeamName().equals("ASYNC TEAM"))
+                .extracting(TeamAgeStatsDto::getMemberCount, TeamAgeStatsDto::getAvgAge)
+                .containsExactly(tuple(2L, 15.0));
+    }
+
+    @Test
+    void 동시에_실행되는_작업은_maxConcurrency_를_넘지_않는다() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(asyncQueryExecutor.query(queryFactory -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(50);
+                    return queryFactory.select(member.count()).from(member).fetchOne();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void 조회_중_예외는_future_로_전달된다() {
+        CompletableFuture<Object> future = asyncQueryExecutor.query(queryFactory -> {
+            throw new IllegalArgumentException("boom");
+        });
+
+        assertThatThrownBy(future::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+}
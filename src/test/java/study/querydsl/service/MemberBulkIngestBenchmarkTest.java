@@ -0,0 +1,80 @@
+package study.querydsl.service;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberIngestRecord;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 테스트 fixture 처럼 한 건씩 persist 하는 방식 vs MemberBulkIngestService
+ * - ./gradlew benchmark -Dbenchmark.rows=100000 -Dbenchmark.teams=100
+ * - 같은 입력(고정된 순서)으로 각각 별도 트랜잭션에서 실행하고 rows/sec 를 비교한다.
+ * - 한 건씩 persist 하는 쪽은 JDBC batch 없이 (hibernate.jdbc.batch_size 미설정) 실행한다.
+ * */
+@Tag("benchmark")
+@SpringBootTest
+class MemberBulkIngestBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 20_000);
+    private static final int TEAMS = Integer.getInteger("benchmark.teams", 100);
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberBulkIngestService memberBulkIngestService;
+
+    @Test
+    void rowByRowVsBulkIngest() {
+        long rowByRow = measure(() -> transactionTemplate.executeWithoutResult(status -> {
+            //fixture 방식 : hibernate.jdbc.batch_size 를 설정하지 않은 것처럼 한 건씩 insert 하고, 영속성 컨텍스트를 비우지 않는다.
+            //팀은 이름별로 한 번만 만든다. (매번 JPQL 로 조회하면 auto flush 비용까지 더해져서 비교가 공정하지 않다.)
+            em.unwrap(Session.class).setJdbcBatchSize(1);
+            Map<String, Team> teams = new HashMap<>();
+            records().forEach(record -> {
+                Team team = teams.computeIfAbsent(record.getTeamName(), name -> {
+                    Team newTeam = new Team(name);
+                    em.persist(newTeam);
+                    return newTeam;
+                });
+                em.persist(new Member(record.getUsername(), record.getAge(), team));
+            });
+            status.setRollbackOnly();
+        }));
+
+        long bulk = measure(() -> transactionTemplate.executeWithoutResult(status -> {
+            memberBulkIngestService.ingest(records());
+            status.setRollbackOnly();
+        }));
+
+        System.out.println("rows = " + ROWS + ", teams = " + TEAMS);
+        System.out.println("row by row : " + rowByRow + " ms, " + (ROWS * 1000L / Math.max(rowByRow, 1)) + " rows/sec");
+        System.out.println("bulk ingest : " + bulk + " ms, " + (ROWS * 1000L / Math.max(bulk, 1)) + " rows/sec");
+        System.out.println("speedup = " + String.format("%.1f", (double) rowByRow / Math.max(bulk, 1)) + "x");
+    }
+
+    private Stream<MemberIngestRecord> records() {
+        return IntStream.range(0, ROWS)
+                .mapToObj(i -> new MemberIngestRecord("member" + i, i % 100, "TEAM " + (i % TEAMS)));
+    }
+
+    private long measure(Runnable ingest) {
+        long start = System.nanoTime();
+        ingest.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
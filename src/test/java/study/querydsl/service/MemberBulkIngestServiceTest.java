@@ -0,0 +1,50 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberIngestRecord;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberBulkIngestServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberBulkIngestService memberBulkIngestService;
+
+    @Test
+    void 팀은_이름당_한번만_만들어진다() {
+        em.persist(new Team("TEAM A"));
+        em.flush();
+        em.clear();
+
+        long count = memberBulkIngestService.ingest(Stream.of(
+                new MemberIngestRecord("member1", 10, "TEAM A"),
+                new MemberIngestRecord("member2", 20, "TEAM B"),
+                new MemberIngestRecord("member3", 30, "TEAM B"),
+                new MemberIngestRecord("member4", 40, null)
+        ));
+
+        assertThat(count).isEqualTo(4L);
+
+        List<Team> teams = em.createQuery("select t from Team t order by t.name", Team.class).getResultList();
+        assertThat(teams).extracting("name").containsExactly("TEAM A", "TEAM B");
+        assertThat(teams.get(1).getMembers()).extracting("username").containsExactlyInAnyOrder("member2", "member3");
+
+        Member member4 = em.createQuery("select m from Member m where m.username = 'member4'", Member.class)
+                .getSingleResult();
+        assertThat(member4.getTeam()).isNull();
+    }
+}
@@ -0,0 +1,151 @@
+package study.querydsl.service;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.BulkResult;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+import study.querydsl.search.MemberSearchCache;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entities.QMember.member;
+
+/**
+ * 2차 캐시는 커밋된 데이터만 올라가므로 @Transactional 로 롤백하지 않고 직접 정리한다.
+ * chunk 를 회원 하나씩으로 나눠서 parallel 실행도 확인한다. (트랜잭션 밖에서 호출하므로 chunk 들이 동시에 실행된다.)
+ * */
+@SpringBootTest(properties = "querydsl.bulk.chunk-size=1")
+@AllowRepeatedQueries("chunk 마다 같은 쿼리로 대상 id 를 읽는다.")
+class MemberBulkServiceCacheTest {
+
+    private static final String TEAM_MEMBERS = Team.class.getName() + ".members";
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberBulkService memberBulkService;
+
+    @Autowired
+    MemberSearchCache memberSearchCache;
+
+    Cache cache;
+    Long teamA;
+    Long teamB;
+    Long changed;
+    Long sameTeam;
+    Long otherTeam;
+
+    @BeforeEach
+    void init() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team a = new Team("BULK CACHE A");
+            Team b = new Team("BULK CACHE B");
+            em.persist(a);
+            em.persist(b);
+
+            Member member1 = new Member("bulkCache1", 10, a);
+            Member member2 = new Member("bulkCache2", 20, a);
+            Member member3 = new Member("bulkCache3", 30, b);
+            em.persist(member1);
+            em.persist(member2);
+            em.persist(member3);
+            em.flush();
+
+            teamA = a.getId();
+            teamB = b.getId();
+            changed = member1.getId();
+            sameTeam = member2.getId();
+            otherTeam = member3.getId();
+        });
+
+        //회원과 Team.members 를 2차 캐시에 올린다.
+        transactionTemplate.executeWithoutResult(status -> {
+            em.find(Member.class, changed);
+            em.find(Member.class, sameTeam);
+            em.find(Member.class, otherTeam);
+            em.find(Team.class, teamA).getMembers().size();
+            em.find(Team.class, teamB).getMembers().size();
+        });
+
+        cache = emf.unwrap(SessionFactory.class).getCache();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'bulkCache%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'BULK CACHE%'").executeUpdate();
+        });
+    }
+
+    @Test
+    void bulk_update_는_바뀐_회원과_그_팀의_members_만_2차캐시에서_지운다() {
+        assertThat(cache.contains(Member.class, otherTeam)).isTrue();
+        assertThat(cache.containsCollection(TEAM_MEMBERS, teamB)).isTrue();
+
+        memberBulkService.update(member.username.eq("bulkCache1"), clause -> clause.set(member.age, 11), false);
+
+        assertThat(cache.contains(Member.class, changed)).isFalse();
+        assertThat(cache.containsCollection(TEAM_MEMBERS, teamA)).isFalse();
+
+        assertThat(cache.contains(Member.class, sameTeam)).isTrue();
+        assertThat(cache.contains(Member.class, otherTeam)).isTrue();
+        assertThat(cache.containsCollection(TEAM_MEMBERS, teamB)).isTrue();
+
+        Integer age = transactionTemplate.execute(status -> em.find(Member.class, changed).getAge());
+        assertThat(age).isEqualTo(11);
+    }
+
+    @Test
+    void bulk_delete_도_지운_회원과_그_팀의_members_만_2차캐시에서_지운다() {
+        memberBulkService.delete(member.username.eq("bulkCache3"), false);
+
+        assertThat(cache.contains(Member.class, otherTeam)).isFalse();
+        assertThat(cache.containsCollection(TEAM_MEMBERS, teamB)).isFalse();
+
+        assertThat(cache.contains(Member.class, changed)).isTrue();
+        assertThat(cache.containsCollection(TEAM_MEMBERS, teamA)).isTrue();
+    }
+
+    @Test
+    void parallel_로_실행한_chunk_들도_각자_행_수를_세고_캐시를_지운다() {
+        MemberSearchCondition condition = new MemberSearchCondition("bulkCache3", null);
+        assertThat(memberSearchCache.search(condition)).extracting(MemberDto::getAge).containsExactly(30);
+
+        BulkResult result = memberBulkService.update(member.username.startsWith("bulkCache"),
+                clause -> clause.set(member.age, member.age.add(1)), true);
+
+        assertThat(result.getTotalRows()).isEqualTo(3L);
+        assertThat(result.getChunks()).extracting("fromId", "toId", "rows").containsExactly(
+                tuple(changed, changed, 1L),
+                tuple(sameTeam, sameTeam, 1L),
+                tuple(otherTeam, otherTeam, 1L));
+
+        assertThat(cache.contains(Member.class, changed)).isFalse();
+        assertThat(cache.contains(Member.class, sameTeam)).isFalse();
+        assertThat(cache.contains(Member.class, otherTeam)).isFalse();
+        assertThat(cache.containsCollection(TEAM_MEMBERS, teamA)).isFalse();
+        assertThat(cache.containsCollection(TEAM_MEMBERS, teamB)).isFalse();
+        assertThat(memberSearchCache.search(condition)).extracting(MemberDto::getAge).containsExactly(31);
+    }
+}
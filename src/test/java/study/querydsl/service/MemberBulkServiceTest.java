@@ -0,0 +1,78 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.BulkResult;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entities.QMember.member;
+
+@SpringBootTest(properties = "querydsl.bulk.chunk-size=2")
+@Transactional
+@AllowRepeatedQueries("chunk 마다 같은 쿼리로 대상 id 를 읽는다.")
+class MemberBulkServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberBulkService memberBulkService;
+
+    Member member1;
+    Member member2;
+    Member member3;
+    Member member4;
+
+    @BeforeEach
+    void init() {
+        Team teamA = new Team("BULK A");
+        em.persist(teamA);
+
+        member1 = new Member("bulk1", 10, teamA);
+        member2 = new Member("bulk2", 20, teamA);
+        member3 = new Member("bulk3", 30, teamA);
+        member4 = new Member("bulk4", 40, teamA);
+
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+    }
+
+    @Test
+    void chunk_별로_실행하고_변경된_엔티티만_detach_한다() {
+        BulkResult result = memberBulkService.update(
+                member.username.startsWith("bulk").and(member.age.lt(35)),
+                clause -> clause.set(member.username, "비회원"),
+                false);
+
+        //대상 id 를 2개씩 나눈다. (bulk1, bulk2) (bulk3)
+        assertThat(result.getTotalRows()).isEqualTo(3L);
+        assertThat(result.getChunks()).extracting("fromId", "toId", "rows").containsExactly(
+                tuple(member1.getId(), member2.getId(), 2L),
+                tuple(member3.getId(), member3.getId(), 1L));
+
+        //변경된 member1 은 detach 되어 다시 조회하면 DB 값을 읽고, 변경되지 않은 member4 는 그대로 관리된다.
+        assertThat(em.contains(member1)).isFalse();
+        assertThat(em.contains(member4)).isTrue();
+        assertThat(em.find(Member.class, member1.getId()).getUsername()).isEqualTo("비회원");
+    }
+
+    @Test
+    void 삭제된_엔티티는_영속성_컨텍스트에서_빠진다() {
+        BulkResult result = memberBulkService.delete(member.username.startsWith("bulk").and(member.age.lt(20)), false);
+
+        assertThat(result.getTotalRows()).isEqualTo(1L);
+        assertThat(em.contains(member1)).isFalse();
+        assertThat(em.find(Member.class, member1.getId())).isNull();
+    }
+}
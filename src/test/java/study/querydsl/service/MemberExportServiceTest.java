@@ -0,0 +1,68 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberExportServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberExportService memberExportService;
+
+    @BeforeEach
+    void init() {
+        Team teamA = new Team("EXPORT A");
+        em.persist(teamA);
+
+        em.persist(new Member("export1", 10, teamA));
+        em.persist(new Member("export2", 20, teamA));
+        em.persist(new Member("export3", 30));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void cursor_로_읽은_순서대로_dto_를_넘겨준다() {
+        List<MemberDto> exported = new ArrayList<>();
+
+        long count = memberExportService.streamMembers(exported::add);
+
+        //공유 DB 에 다른 테스트가 남긴 회원이 있을 수 있으므로 이 테스트가 넣은 회원만 본다.
+        assertThat(count).isEqualTo(exported.size());
+        assertThat(exported).extracting("username")
+                .filteredOn(username -> ((String) username).startsWith("export"))
+                .containsExactly("export1", "export2", "export3");
+        assertThat(em.unwrap(org.hibernate.Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    void 검색_조건에_맞는_회원만_cursor_로_넘겨준다() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setTeamName("EXPORT A");
+        List<MemberDto> exported = new ArrayList<>();
+
+        long count = memberExportService.streamMembers(condition, exported::add);
+
+        assertThat(count).isEqualTo(1L);
+        assertThat(exported).extracting("username").containsExactly("export2");
+    }
+}
@@ -0,0 +1,111 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.TeamAgeStatsDto;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.entities.TeamStats;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+import study.querydsl.repository.TeamStatsRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamStatsServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamStatsRepository teamStatsRepository;
+
+    @Autowired
+    MemberBulkService memberBulkService;
+
+    Team teamA;
+    Team teamB;
+    Member member1;
+    Member member4;
+
+    @BeforeEach
+    void init() {
+        teamA = new Team("STATS A");
+        teamB = new Team("STATS B");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        member1 = new Member("member1", 10, teamA);
+        member4 = new Member("member4", 40, teamB);
+
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(member4);
+    }
+
+    @Test
+    void 회원_등록은_증분으로_반영된다() {
+        List<TeamAgeStatsDto> stats = teamStatsRepository.findTeamAgeStats("STATS%");
+
+        assertStats(stats.get(0), "STATS A", 2, 15.0, 10, 20);
+        assertStats(stats.get(1), "STATS B", 2, 35.0, 30, 40);
+    }
+
+    @Test
+    void 팀_변경과_삭제도_반영된다() {
+        member4.changeTeam(teamA);
+        em.remove(member1);
+
+        List<TeamAgeStatsDto> stats = teamStatsRepository.findTeamAgeStats("STATS%");
+
+        assertStats(stats.get(0), "STATS A", 2, 30.0, 20, 40);
+        assertStats(stats.get(1), "STATS B", 1, 30.0, 30, 30);
+    }
+
+    @Test
+    @AllowRepeatedQueries("bulk 연산이 chunk 마다 같은 쿼리로 대상 id 를 읽는다.")
+    void bulk_연산_후에는_전체를_다시_계산한다() {
+        memberBulkService.addAge(1);
+        memberBulkService.deleteByAgeLessThan(20);
+        em.clear();
+
+        List<TeamAgeStatsDto> stats = teamStatsRepository.findTeamAgeStats("STATS%");
+
+        assertStats(stats.get(0), "STATS A", 1, 21.0, 21, 21);
+        assertStats(stats.get(1), "STATS B", 2, 36.0, 31, 41);
+    }
+
+    @Test
+    void 팀을_저장하면_회원이_없어도_통계_row_가_만들어진다() {
+        Team empty = new Team("STATS EMPTY");
+        em.persist(empty);
+        em.flush();
+
+        TeamStats stats = em.find(TeamStats.class, empty.getId());
+        assertThat(stats).isNotNull();
+        assertThat(stats.getMemberCount()).isZero();
+        assertThat(stats.getMinAge()).isNull();
+
+        //이후의 회원 추가는 row 를 새로 만들지 않고 증분으로 반영된다.
+        em.persist(new Member("member5", 50, empty));
+        List<TeamAgeStatsDto> result = teamStatsRepository.findTeamAgeStats("STATS EMPTY");
+        assertStats(result.get(0), "STATS EMPTY", 1, 50.0, 50, 50);
+    }
+
+    private void assertStats(TeamAgeStatsDto actual, String teamName, long count, double avg, int min, int max) {
+        assertThat(actual.getTeamName()).isEqualTo(teamName);
+        assertThat(actual.getMemberCount()).isEqualTo(count);
+        assertThat(actual.getAvgAge()).isEqualTo(avg);
+        assertThat(actual.getMinAge()).isEqualTo(min);
+        assertThat(actual.getMaxAge()).isEqualTo(max);
+    }
+}
@@ -0,0 +1,195 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamAgeStatsDto;
+import study.querydsl.dto.TransferResult;
+import study.querydsl.entities.Member;
+import study.querydsl.entities.Team;
+import study.querydsl.monitoring.AllowRepeatedQueries;
+import study.querydsl.repository.TeamStatsRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.RollbackException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 동시 실행은 스레드마다 다른 트랜잭션이어야 하므로 @Transactional 로 롤백하지 않고 커밋한 뒤 직접 정리한다.
+ * */
+@SpringBootTest(properties = "querydsl.transfer.max-attempts=50")
+@AllowRepeatedQueries("같은 회원과 팀을 트랜잭션마다 다시 읽는다.")
+class TeamTransferServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    TeamTransferService teamTransferService;
+
+    @Autowired
+    TeamStatsRepository teamStatsRepository;
+
+    Long memberId;
+    List<Long> teamIds = new ArrayList<>();
+
+    @BeforeEach
+    void init() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 4; i++) {
+                Team team = new Team("TRANSFER " + i);
+                em.persist(team);
+                teamIds.add(team.getId());
+            }
+            Member member = new Member("transfer1", 10, em.find(Team.class, teamIds.get(0)));
+            em.persist(member);
+            memberId = member.getId();
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("select m from Member m where m.username like 'transfer%'", Member.class)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.createQuery("select t from Team t where t.name like 'TRANSFER %'", Team.class)
+                    .getResultList()
+                    .forEach(em::remove);
+        });
+    }
+
+    @Test
+    void 같은_회원을_동시에_수정하면_나중에_커밋하는_쪽이_실패한다() {
+        EntityManager first = emf.createEntityManager();
+        EntityManager second = emf.createEntityManager();
+        try {
+            first.getTransaction().begin();
+            second.getTransaction().begin();
+            first.find(Member.class, memberId).changeTeam(first.find(Team.class, teamIds.get(1)));
+            second.find(Member.class, memberId).changeTeam(second.find(Team.class, teamIds.get(2)));
+
+            first.getTransaction().commit();
+            assertThatThrownBy(() -> second.getTransaction().commit()).isInstanceOf(RollbackException.class);
+        } finally {
+            first.close();
+            second.close();
+        }
+
+        Member member = em.find(Member.class, memberId);
+        assertThat(member.getTeam().getId()).isEqualTo(teamIds.get(1));
+    }
+
+    @Test
+    void 충돌하면_다시_읽어서_재시도한다() throws Exception {
+        int threads = 8;
+        int transfersPerThread = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            Long toTeamId = teamIds.get(t % teamIds.size());
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                await(start);
+                int attempts = 0;
+                for (int i = 0; i < transfersPerThread; i++) {
+                    TransferResult result = teamTransferService.transfer(memberId, toTeamId);
+                    attempts += result.getAttempts();
+                }
+                return attempts;
+            }, executor));
+        }
+        start.countDown();
+
+        int attempts = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            attempts += future.get();
+        }
+        executor.shutdown();
+
+        //팀이 실제로 바뀐 이동마다 version 이 하나씩 올라간다. (등록 시 0, 이미 그 팀이면 update 가 없다.)
+        Member member = transactionTemplate.execute(status -> em.find(Member.class, memberId));
+        assertThat(member.getVersion()).isBetween(1L, (long) threads * transfersPerThread);
+        assertThat(attempts).isGreaterThanOrEqualTo(threads * transfersPerThread);
+    }
+
+    @Test
+    void 다른_회원을_반대_방향으로_동시에_옮겨도_둘_다_끝난다() throws Exception {
+        Long otherMemberId = transactionTemplate.execute(status -> {
+            Member member = new Member("transfer2", 20, em.find(Team.class, teamIds.get(1)));
+            em.persist(member);
+            return member.getId();
+        });
+
+        //transfer1 은 0 -> 1 -> 0 ..., transfer2 는 1 -> 0 -> 1 ... 로 두 팀의 통계 row 를 서로 반대 방향으로 갱신한다.
+        int rounds = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        CompletableFuture<Void> forward = CompletableFuture.runAsync(() -> {
+            await(start);
+            for (int i = 0; i < rounds; i++) {
+                teamTransferService.transfer(memberId, teamIds.get((i + 1) % 2));
+            }
+        }, executor);
+        CompletableFuture<Void> backward = CompletableFuture.runAsync(() -> {
+            await(start);
+            for (int i = 0; i < rounds; i++) {
+                teamTransferService.transfer(otherMemberId, teamIds.get(i % 2));
+            }
+        }, executor);
+        start.countDown();
+
+        forward.get(30, TimeUnit.SECONDS);
+        backward.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        List<TeamAgeStatsDto> stats = transactionTemplate.execute(status -> teamStatsRepository.findTeamAgeStats("TRANSFER %"));
+        assertThat(stats.get(0).getMemberCount()).isEqualTo(1);
+        assertThat(stats.get(0).getMinAge()).isEqualTo(10);
+        assertThat(stats.get(1).getMemberCount()).isEqualTo(1);
+        assertThat(stats.get(1).getMinAge()).isEqualTo(20);
+    }
+
+    @Test
+    void 회원이_들어와도_팀의_version_은_그대로다() {
+        Long before = transactionTemplate.execute(status -> em.find(Team.class, teamIds.get(3)).getVersion());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = em.find(Team.class, teamIds.get(3));
+            team.getMembers().size();       //members 를 로딩한 상태에서도
+            teamTransferService.transfer(memberId, team.getId());
+        });
+
+        Long after = transactionTemplate.execute(status -> em.find(Team.class, teamIds.get(3)).getVersion());
+        assertThat(after).isEqualTo(before);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}